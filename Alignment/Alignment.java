@@ -1,36 +1,90 @@
 package alignment;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The Alignment class encapsulates the attributes of a real-world sequence
  * alignment, and has methods that simulate the typical actions on a multiple
  * sequence alignment. It implements the Iterable interface to enable access to
  * genomes in the map without exposing its internal implementation.
+ *
+ * The genomes are kept in an array in the order of the alignment, and found by
+ * the key of their identifier in the GenomeDictionary of the alignment through
+ * a SlotTable, so no lookup hashes or compares identifiers.
  */
 public abstract class Alignment implements Iterable<Genome> {
-	// Stores the genomes that make up the alignment.
-	Map<String, Genome> genomes;
+	// Stores the genomes that make up the alignment, in their order. A removed
+	// genome leaves an empty (null) slot until the array is compacted.
+	private Genome[] genomes;
+	// The key of the identifier of the genome in each slot of 'genomes'.
+	private int[] keys;
+	// The number of slots of 'genomes' in use, including the empty ones.
+	private int slotCount;
+	// The number of genomes in the alignment.
+	private int size;
+	// The keys of the identifiers of the genomes of this alignment.
+	private final GenomeDictionary dictionary;
+	// The slot of each genome by the key of its identifier.
+	private SlotTable slots;
+	// Keeps the difference scores up to date while the genomes are edited.
+	ScoreCache scoreCache;
+	// An optional k-mer index used to answer searches; may be null.
+	KmerIndex index;
 
 	/**
 	 * The default constructor that creates an empty alignment.
 	 */
 	public Alignment() {
-		genomes = new LinkedHashMap<>();
+		genomes = new Genome[16];
+		keys = new int[16];
+		dictionary = new GenomeDictionary();
+		slots = new SlotTable();
+		scoreCache = new ScoreCache(this);
 	}
 
 	/**
-	 * A copy constructor to construct a copy of the given alignment.
+	 * A copy constructor to construct a copy of the given alignment. The genomes
+	 * of the copy share their nucleotides with the given alignment until either
+	 * side changes them (see Genome(Genome)), and the cached scores and k-mer
+	 * index are carried over, so a copy costs O(genomes) instead of O(bases).
 	 * 
 	 * @param alignment the alignment from which to create this alignment.
 	 */
 	public Alignment(Alignment alignment) {
-		this();
-		genomes = new LinkedHashMap<>();
-		for (Map.Entry<String, Genome> entry : genomes.entrySet()) {
-			genomes.put(entry.getKey(), entry.getValue().clone());
+		scoreCache = new ScoreCache(this);
+		genomes = new Genome[Math.max(16, alignment.slotCount)];
+		keys = Arrays.copyOf(alignment.keys, genomes.length);
+		slotCount = alignment.slotCount;
+		size = alignment.size;
+		dictionary = new GenomeDictionary(alignment.dictionary);
+		slots = new SlotTable(alignment.slots);
+		IdentityHashMap<Genome, Genome> clones = new IdentityHashMap<>();
+		for (int i = 0; i < slotCount; i++) {
+			Genome genome = alignment.genomes[i];
+			if (genome != null) {
+				Genome clone = genome.clone();
+				clones.put(genome, clone);
+				genomes[i] = clone;
+				clone.addListener(scoreCache);
+			}
+		}
+		scoreCache.copyScores(alignment.scoreCache, clones);
+
+		KmerIndex sourceIndex = alignment.index;
+		if (sourceIndex != null) {
+			index = sourceIndex.copy(clones);
+			for (Genome genome : this) {
+				genome.addListener(index);
+			}
 		}
 	}
 
@@ -40,8 +94,120 @@ public abstract class Alignment implements Iterable<Genome> {
 	 * @return the topmost genome in this alignment.
 	 */
 	public Genome getTopGenome() {
-		Map.Entry<String, Genome> entry = genomes.entrySet().iterator().next();
-		return entry.getValue();
+		return iterator().next();
+	}
+
+	/**
+	 * Returns the genome with the given identifier.
+	 * 
+	 * @param genomeId - the identifier of the genome.
+	 * @return the genome, or null if the alignment has no genome with that identifier.
+	 */
+	public Genome getGenome(String genomeId) {
+		return getGenome(dictionary.lookup(genomeId));
+	}
+
+	/**
+	 * Returns the genome whose identifier has the given key in the dictionary of
+	 * this alignment.
+	 * 
+	 * @param key - the key of the identifier of the genome.
+	 * @return the genome, or null if the alignment has no genome with that key.
+	 */
+	public Genome getGenome(int key) {
+		int slot = slots.get(key);
+		return slot < 0 ? null : genomes[slot];
+	}
+
+	/**
+	 * Returns the dictionary that holds the keys of the identifiers of the
+	 * genomes of this alignment, e.g. to map the keys of a SearchResult to
+	 * identifiers.
+	 * 
+	 * @return the dictionary of this alignment.
+	 */
+	public GenomeDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns the number of genomes in this alignment.
+	 * 
+	 * @return the number of genomes.
+	 */
+	public int size() {
+		return size;
+	}
+
+	// Returns the genomes of this alignment in order, without empty slots.
+	private Genome[] toArray() {
+		Genome[] array = new Genome[size];
+		int i = 0;
+		for (Genome genome : this) {
+			array[i++] = genome;
+		}
+		return array;
+	}
+
+	// Returns the keys of the genomes of this alignment, in the order of toArray.
+	private int[] toKeys() {
+		int[] array = new int[size];
+		int i = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (genomes[slot] != null) {
+				array[i++] = keys[slot];
+			}
+		}
+		return array;
+	}
+
+	// Puts a genome in the slot of its key, or in a new slot at the end when the
+	// alignment has no genome with that key yet, and returns the genome it replaced.
+	private Genome put(Genome genome) {
+		int key = dictionary.intern(genome.getId());
+		int slot = slots.get(key);
+		if (slot >= 0) {
+			Genome previous = genomes[slot];
+			genomes[slot] = genome;
+			return previous;
+		}
+		if (slotCount == genomes.length) {
+			genomes = Arrays.copyOf(genomes, slotCount * 2);
+			keys = Arrays.copyOf(keys, slotCount * 2);
+		}
+		slots.put(key, slotCount);
+		keys[slotCount] = key;
+		genomes[slotCount++] = genome;
+		size++;
+		return null;
+	}
+
+	// Takes the genome with the given key out of its slot, and returns it.
+	private Genome remove(int key) {
+		int slot = slots.get(key);
+		if (slot < 0) {
+			return null;
+		}
+		Genome genome = genomes[slot];
+		genomes[slot] = null;
+		slots.remove(key);
+		size--;
+
+		// Compact the slots once more than half of them are empty.
+		if (slotCount > 16 && size < slotCount / 2) {
+			int used = 0;
+			for (int i = 0; i < slotCount; i++) {
+				Genome kept = genomes[i];
+				if (kept != null) {
+					slots.put(keys[i], used);
+					keys[used] = keys[i];
+					genomes[used++] = kept;
+				}
+			}
+			Arrays.fill(genomes, used, slotCount, null);
+			slotCount = used;
+		}
+		return genome;
 	}
 
 	/**
@@ -50,29 +216,175 @@ public abstract class Alignment implements Iterable<Genome> {
 	 * @param genome - the new genome to add.
 	 */
 	public void addGenome(Genome genome) {
-		genomes.put(genome.getId(), genome);
+		Genome previous = put(genome);
+		if (previous != null) {
+			previous.removeListener(scoreCache);
+			scoreCache.genomeRemoved(previous);
+		}
+		genome.addListener(scoreCache);
+		scoreCache.genomeAdded(genome);
+
+		if (index != null) {
+			if (previous != null) {
+				previous.removeListener(index);
+				index.genomeRemoved(previous);
+			}
+			genome.addListener(index);
+			index.genomeAdded(genome);
+		}
+	}
+
+	/**
+	 * Builds a k-mer index over the genomes of this alignment, which is then used
+	 * by searches and kept up to date as genomes are added, edited or removed.
+	 * 
+	 * @param k - the length of the k-mers to index.
+	 * @return the new index.
+	 * @throws IllegalArgumentException when k is out of range.
+	 */
+	public KmerIndex buildIndex(int k) throws IllegalArgumentException {
+		KmerIndex newIndex = new KmerIndex(k);
+		setIndex(newIndex);
+		newIndex.refresh();
+		return newIndex;
+	}
+
+	/**
+	 * Attaches the given k-mer index to this alignment, replacing any previous
+	 * index. Genomes that the index does not yet cover are indexed lazily.
+	 * 
+	 * @param newIndex - the index to attach, or null to search without an index.
+	 */
+	public void setIndex(KmerIndex newIndex) {
+		for (Genome genome : this) {
+			if (index != null) {
+				genome.removeListener(index);
+			}
+			if (newIndex != null) {
+				genome.addListener(newIndex);
+				newIndex.genomeAdded(genome);
+			}
+		}
+		index = newIndex;
+	}
+
+	/**
+	 * Returns the k-mer index attached to this alignment.
+	 * 
+	 * @return the index, or null if searches scan the genomes.
+	 */
+	public KmerIndex getIndex() {
+		return index;
 	}
 
 	/**
 	 * Searches through the genomes in the entire alignment for a specific sequence
-	 * of characters such as AACAAATG, and returns an ArrayList in which each
-	 * element is a string that represent the name/identifier for each genome in
-	 * which the sequence can be found.
-	 */
-	public ArrayList<String> searchSequence(String sequence) {
-		ArrayList<String> matchedGenomeIds = new ArrayList<>();
-		if (sequence != null && !sequence.isEmpty()) {
-			String id = null;
-			Genome genome;
-			for (Map.Entry<String, Genome> entry : genomes.entrySet()) {
-				genome = entry.getValue();
-				id = genome.getIdWithSequence(sequence);
-				if (id != null) {
-					matchedGenomeIds.add(id);
+	 * of characters such as AACAAATG, and returns the genomes in which the
+	 * sequence can be found as the single pattern of a SearchResult. The result
+	 * holds the keys of the genomes; their identifiers are in the dictionary of
+	 * this alignment (see SearchResult.getGenomeIds).
+	 */
+	public SearchResult searchSequence(String sequence) {
+		return searchSequence(sequence, null);
+	}
+
+	/**
+	 * Searches through the genomes in the entire alignment for a specific
+	 * sequence, as searchSequence(sequence) does, scanning the genomes on the
+	 * given pool.
+	 * 
+	 * @param sequence - the sequence to search for.
+	 * @param pool - the pool on which to scan the genomes; when null they are
+	 * scanned on the calling thread.
+	 * @return the genomes in which the sequence occurs, in the order of the
+	 * alignment; none if the sequence is null or empty.
+	 */
+	public SearchResult searchSequence(String sequence, ForkJoinPool pool) {
+		if (sequence == null || sequence.isEmpty()) {
+			return new SearchResult(Collections.singletonList(sequence), dictionary);
+		}
+		return searchSequences(Collections.singletonList(sequence), pool);
+	}
+
+	/**
+	 * Searches through the genomes in the entire alignment for a batch of
+	 * sequences (e.g. a primer panel) in a single pass per genome, and returns
+	 * for each sequence the genomes in which it occurs and the positions of its
+	 * occurrences. When the alignment has a k-mer index, the sequences it
+	 * supports are answered from the index and only the others are scanned.
+	 * 
+	 * @param sequences - the sequences to search for.
+	 * @return the genomes and positions at which each sequence occurs.
+	 */
+	public SearchResult searchSequences(List<String> sequences) {
+		return searchSequences(sequences, null);
+	}
+
+	/**
+	 * Searches through the genomes in the entire alignment for a batch of
+	 * sequences, as searchSequences(sequences) does, scanning the genomes on the
+	 * given pool. The hits of each genome are collected separately and added to
+	 * the result in the order of the alignment, so the result is the same as
+	 * the one of a sequential search.
+	 * 
+	 * @param sequences - the sequences to search for.
+	 * @param pool - the pool on which to scan the genomes; when null they are
+	 * scanned on the calling thread.
+	 * @return the genomes and positions at which each sequence occurs.
+	 */
+	public SearchResult searchSequences(List<String> sequences, ForkJoinPool pool) {
+		SearchResult result = new SearchResult(new ArrayList<>(sequences), dictionary);
+		int[] genomeKeys = toKeys();
+
+		// The indexes of the sequences that must be found by scanning.
+		ArrayList<Integer> scanned = new ArrayList<>();
+		for (int i = 0; i < sequences.size(); i++) {
+			String sequence = sequences.get(i);
+			if (index == null || !index.supports(sequence)) {
+				scanned.add(i);
+				continue;
+			}
+			int g = 0;
+			for (Genome genome : this) {
+				for (int position : index.search(genome, sequence)) {
+					result.addHit(i, genomeKeys[g], position);
 				}
+				g++;
 			}
 		}
-		return matchedGenomeIds;
+		if (scanned.isEmpty()) {
+			return result;
+		}
+
+		ArrayList<String> patterns = new ArrayList<>(scanned.size());
+		for (int i : scanned) {
+			patterns.add(sequences.get(i));
+		}
+		MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+
+		// The hits of each genome as pairs of (pattern, position).
+		Genome[] scannedGenomes = toArray();
+		int[][] hits = new int[scannedGenomes.length][];
+		forEachGenome(scannedGenomes, pool, (g, genome) -> {
+			int[][] pairs = { new int[16] };
+			int[] count = { 0 };
+			matcher.scan(genome, (pattern, position) -> {
+				if (count[0] == pairs[0].length) {
+					pairs[0] = Arrays.copyOf(pairs[0], count[0] * 2);
+				}
+				pairs[0][count[0]++] = pattern;
+				pairs[0][count[0]++] = position;
+				return true;
+			});
+			hits[g] = Arrays.copyOf(pairs[0], count[0]);
+		});
+
+		for (int g = 0; g < scannedGenomes.length; g++) {
+			for (int i = 0; i < hits[g].length; i += 2) {
+				result.addHit(scanned.get(hits[g][i]), genomeKeys[g], hits[g][i + 1]);
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -81,7 +393,7 @@ public abstract class Alignment implements Iterable<Genome> {
 	 * that was not part of the initial FASTA file.
 	 */
 	public void replaceGenome(String genomeId, String newSequence) throws IllegalArgumentException {
-		Genome genome = genomes.get(genomeId);
+		Genome genome = getGenome(genomeId);
 		genome.replaceEntireSequence(newSequence);
 	}
 
@@ -96,18 +408,10 @@ public abstract class Alignment implements Iterable<Genome> {
 	 */
 	public void replaceSequencesById(String sequence, String newSequence, String genomeId)
 			throws IllegalArgumentException {
-		if (sequence == null || newSequence == null || genomeId == null || sequence.isEmpty() || newSequence.isEmpty()
-				|| genomeId.isEmpty()) {
+		if (genomeId == null) {
 			throw new IllegalArgumentException("Invalid arguments.");
 		}
-
-		if (!genomeId.startsWith(">")) {
-			genomeId = ">" + genomeId;
-		}
-		Genome genome = genomes.get(genomeId);
-		if (genome != null) {
-			genome.replaceSubSequences(sequence, newSequence);
-		}
+		applyEdits(Collections.singletonList(new EditRule(sequence, newSequence, genomeId)));
 	}
 
 	/**
@@ -119,48 +423,234 @@ public abstract class Alignment implements Iterable<Genome> {
 	 * @throws IllegalArgumentException thrown when invalid arguments are provided.
 	 */
 	public void replaceAllSequences(String sequence, String newSequence) throws IllegalArgumentException {
-		if (sequence == null || newSequence == null || sequence.isEmpty() || newSequence.isEmpty()) {
-			throw new IllegalArgumentException("Invalid arguments.");
+		applyEdits(Collections.singletonList(new EditRule(sequence, newSequence)));
+	}
+
+	/**
+	 * Replaces, in the entire alignment, all occurrences of a sequence, as
+	 * replaceAllSequences(sequence, newSequence) does, editing the genomes on the
+	 * given pool.
+	 * 
+	 * @param sequence - the sequence to search
+	 * @param newSequence - the sequence that will replace the occurrences.
+	 * @param pool - the pool on which to edit the genomes; when null they are
+	 * edited on the calling thread.
+	 * @throws IllegalArgumentException thrown when invalid arguments are provided.
+	 */
+	public void replaceAllSequences(String sequence, String newSequence, ForkJoinPool pool)
+			throws IllegalArgumentException {
+		applyEdits(Collections.singletonList(new EditRule(sequence, newSequence)), pool);
+	}
+
+	/**
+	 * Applies a batch of substitutions (e.g. a curation session) in a single pass
+	 * per genome. The occurrences of all rules are found together by a
+	 * MultiPatternMatcher, in the original nucleotides of the genome, and are
+	 * then replaced from left to right without overlapping: the leftmost
+	 * occurrence is replaced first, an occurrence that overlaps one already
+	 * replaced is skipped, and of several rules that match at the same position
+	 * the one that comes first in the list wins. For a single rule this is the
+	 * same as replaceAllSequences.
+	 * 
+	 * @param rules - the substitutions to apply.
+	 * @return the number of occurrences replaced by each rule, in the order of
+	 * the rules.
+	 */
+	public int[] applyEdits(List<EditRule> rules) {
+		return applyEdits(rules, null);
+	}
+
+	/**
+	 * Applies a batch of substitutions, as applyEdits(rules) does, editing the
+	 * genomes on the given pool. Every genome is edited on its own, so the
+	 * result is the same as the one of a sequential run.
+	 * 
+	 * @param rules - the substitutions to apply.
+	 * @param pool - the pool on which to edit the genomes; when null they are
+	 * edited on the calling thread.
+	 * @return the number of occurrences replaced by each rule, in the order of
+	 * the rules.
+	 */
+	public int[] applyEdits(List<EditRule> rules, ForkJoinPool pool) {
+		int[] counts = new int[rules.size()];
+		ArrayList<String> patterns = new ArrayList<>(rules.size());
+		char[][] replacements = new char[rules.size()][];
+		for (int i = 0; i < rules.size(); i++) {
+			patterns.add(rules.get(i).getSequence());
+			replacements[i] = rules.get(i).getNewSequence().toCharArray();
+		}
+		MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+
+		// The top genome is edited first, on the calling thread, so that the
+		// other genomes are edited against its final nucleotides. Each of them
+		// adds up the change of its score as it is edited, and the listeners (the
+		// score cache and the k-mer index) are notified once per edited genome
+		// with that change, instead of once per nucleotide from every thread of
+		// the pool.
+		Genome[] targets = toArray();
+		if (targets.length == 0) {
+			return counts;
+		}
+		int[] targetKeys = toKeys();
+		// The key of the genome of each rule; only looked up, so that a rule for
+		// a genome that does not exist does not add its identifier.
+		int[] ruleKeys = new int[rules.size()];
+		for (int i = 0; i < rules.size(); i++) {
+			ruleKeys[i] = dictionary.lookup(rules.get(i).getGenomeId());
+		}
+		Genome reference = targets[0];
+		int[] scoreDeltas = new int[targets.length];
+		boolean[] edited = new boolean[targets.length];
+		GenomeTask.Work work = (g, genome) -> {
+			boolean[] applies = new boolean[rules.size()];
+			boolean any = false;
+			for (int i = 0; i < rules.size(); i++) {
+				applies[i] = rules.get(i).getGenomeId() == null || ruleKeys[i] == targetKeys[g];
+				any |= applies[i];
+			}
+			if (!any) {
+				return;
+			}
+			int[] genomeCounts = new int[rules.size()];
+			int[] scoreDelta = new int[1];
+			edited[g] = applyEdits(genome, matcher, applies, replacements, genomeCounts,
+					g == 0 ? null : reference, scoreDelta);
+			scoreDeltas[g] = scoreDelta[0];
+			synchronized (counts) {
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] += genomeCounts[i];
+				}
+			}
+		};
+		work.run(0, reference);
+		if (edited[0]) {
+			reference.fireSequenceChanged();
 		}
+		forEachGenome(Arrays.copyOfRange(targets, 1, targets.length), pool, (g, genome) -> work.run(g + 1, genome));
+		for (int g = 1; g < targets.length; g++) {
+			if (edited[g]) {
+				targets[g].fireNucleotidesChanged(reference, scoreDeltas[g]);
+			}
+		}
+		return counts;
+	}
 
-		Genome genome;
-		for (Map.Entry<String, Genome> entry : genomes.entrySet()) {
-			genome = entry.getValue();
-			genome.replaceSubSequences(sequence, newSequence);
+	// Runs the work on every genome, on the pool when one is given.
+	private static void forEachGenome(Genome[] genomes, ForkJoinPool pool, GenomeTask.Work work) {
+		if (pool != null && genomes.length > 1) {
+			pool.invoke(new GenomeTask(genomes, work, 0, genomes.length));
+		} else {
+			for (int i = 0; i < genomes.length; i++) {
+				work.run(i, genomes[i]);
+			}
 		}
+	}
 
+	// Replaces the leftmost non-overlapping occurrences of the rules in a genome,
+	// without notifying its listeners, and adds the change of its score against
+	// the reference to scoreDelta[0]; returns whether a nucleotide changed.
+	private static boolean applyEdits(Genome genome, MultiPatternMatcher matcher, boolean[] applies,
+			char[][] replacements, int[] counts, Genome reference, int[] scoreDelta) {
+		// Each occurrence as (start << 32 | rule), so that sorting orders them by
+		// start and then by rule.
+		long[][] matches = { new long[16] };
+		int[] count = { 0 };
+		matcher.scan(genome, (rule, position) -> {
+			if (applies[rule]) {
+				if (count[0] == matches[0].length) {
+					matches[0] = Arrays.copyOf(matches[0], count[0] * 2);
+				}
+				matches[0][count[0]++] = ((long) position << 32) | rule;
+			}
+			return true;
+		});
+		Arrays.sort(matches[0], 0, count[0]);
+
+		int next = 0;
+		boolean changed = false;
+		for (int i = 0; i < count[0]; i++) {
+			int position = (int) (matches[0][i] >>> 32);
+			int rule = (int) matches[0][i];
+			if (position >= next) {
+				changed |= genome.changeSequenceQuietly(position, replacements[rule], reference, scoreDelta);
+				counts[rule]++;
+				next = position + replacements[rule].length;
+			}
+		}
+		return changed;
 	}
 
 	/**
-	 * Removes the entry identified by the given genome id from the LinkedHashMap
-	 * "genome".
+	 * Removes the genome identified by the given genome id from this alignment.
 	 */
 	public void removeGenome(String genomeId) {
-		genomes.remove(genomeId);
+		Genome genome = remove(dictionary.lookup(genomeId));
+		if (genome != null) {
+			genome.removeListener(scoreCache);
+			scoreCache.genomeRemoved(genome);
+			if (index != null) {
+				genome.removeListener(index);
+				index.genomeRemoved(genome);
+			}
+		}
 	}
 
 	/**
 	 * Returns an integer that represent the difference score of this alignment.
+	 * The scores of the genomes are cached and kept up to date as the genomes
+	 * are edited, so only genomes that changed since the last call are rescored.
 	 * 
 	 * @return the difference score of this alignment.
 	 * @throws ArrayIndexOutOfBoundsException when there is a variance in the lengths
 	 * of some the genomes in this alignment.
 	 */
 	public int calculateScore() throws ArrayIndexOutOfBoundsException {
-		int diffScore = 0;
-		Genome referenceGenome = getTopGenome();
-		AlignmentIterator iterator = iterator();
+		return scoreCache.getTotalScore(null);
+	}
 
-		if (iterator.hasNext()) {
-			// Skip the reference genome (the first/topmost genome).
-			iterator.next();
+	/**
+	 * Returns the difference score of this alignment. When the cached scores are
+	 * no longer valid (e.g. after the reference genome changed) the full rescan
+	 * runs on the given ForkJoinPool: the genomes are split across the workers
+	 * of the pool, and very long genomes are further split into column ranges.
+	 * The result is the same as the one of {@link #calculateScore()}.
+	 * 
+	 * @param pool - the pool on which to compute the score; when null the score
+	 * is computed on the calling thread.
+	 * @return the difference score of this alignment.
+	 * @throws ArrayIndexOutOfBoundsException when there is a variance in the lengths
+	 * of some the genomes in this alignment.
+	 */
+	public int calculateScore(ForkJoinPool pool) throws ArrayIndexOutOfBoundsException {
+		return scoreCache.getTotalScore(pool);
+	}
 
-			while (iterator.hasNext()) {
-				Genome genome = iterator.next();
-				diffScore += genome.getScore(referenceGenome);
-			}
-		}
-		return diffScore;
+	/**
+	 * Returns the difference score of a single genome in this alignment.
+	 * 
+	 * @param genomeId - the identifier of the genome.
+	 * @return the difference score of the genome, or 0 for the reference genome
+	 * or an unknown identifier.
+	 * @throws ArrayIndexOutOfBoundsException when there is a variance in the lengths
+	 * of some the genomes in this alignment.
+	 */
+	public int getGenomeScore(String genomeId) throws ArrayIndexOutOfBoundsException {
+		return getGenomeScore(dictionary.lookup(genomeId));
+	}
+
+	/**
+	 * Returns the difference score of a single genome in this alignment.
+	 * 
+	 * @param key - the key of the identifier of the genome in the dictionary of
+	 * this alignment.
+	 * @return the difference score of the genome, or 0 for the reference genome
+	 * or a key that is not in this alignment.
+	 * @throws ArrayIndexOutOfBoundsException when there is a variance in the lengths
+	 * of some the genomes in this alignment.
+	 */
+	public int getGenomeScore(int key) throws ArrayIndexOutOfBoundsException {
+		Genome genome = getGenome(key);
+		return genome == null ? 0 : scoreCache.getGenomeScore(genome);
 	}
 
 	/**
@@ -169,7 +659,7 @@ public abstract class Alignment implements Iterable<Genome> {
 	 */
 	@Override
 	public AlignmentIterator iterator() {
-		return new AlignmentIterator(genomes);
+		return new AlignmentIterator(genomes, slotCount);
 	}
 
 	/**
@@ -178,11 +668,26 @@ public abstract class Alignment implements Iterable<Genome> {
 	 */
 	@Override
 	public String toString() {
-		String str = "";
-		for (Map.Entry<String, Genome> entry : genomes.entrySet()) {
-			str += ((Genome) entry.getValue()).toString() + "\n";
+		StringWriter writer = new StringWriter();
+		try {
+			writeTo(writer);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Writes this alignment in the same form as toString, one genome at a time.
+	 * 
+	 * @param writer - the writer that receives the alignment.
+	 * @throws IOException when the writer fails.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		for (Genome genome : this) {
+			genome.writeTo(writer);
+			writer.write('\n');
 		}
-		return str;
 	}
 	
 	
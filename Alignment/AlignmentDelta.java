@@ -0,0 +1,154 @@
+package alignment;
+
+import java.util.ArrayList;
+
+/**
+ * The AlignmentDelta class describes an alignment as a set of changes to a base
+ * alignment, e.g. a user's personal alignment against the optimal alignment.
+ * The delta lists the genomes of the alignment in order; a genome that also
+ * occurs in the base with the same length is described by the nucleotides that
+ * differ from the base genome, any other genome is stored whole. Genomes of the
+ * base that are not listed have been removed.
+ */
+public class AlignmentDelta {
+	// A genome with more edits than this share of its length is stored whole.
+	private static final int MAX_EDIT_RATIO = 4;
+
+	private final ArrayList<String> ids = new ArrayList<>();
+	// For each genome: the edited positions, or null when it is stored whole.
+	private final ArrayList<int[]> positions = new ArrayList<>();
+	// For each genome: the nucleotides at the edited positions.
+	private final ArrayList<char[]> symbols = new ArrayList<>();
+	// For each genome: the genome itself when it is stored whole.
+	private final ArrayList<Genome> genomes = new ArrayList<>();
+
+	/**
+	 * Computes the delta that turns the base alignment into the target alignment.
+	 *
+	 * @param base - the base alignment.
+	 * @param target - the alignment to describe.
+	 * @return the delta of the target against the base.
+	 */
+	public static AlignmentDelta compute(Alignment base, Alignment target) {
+		AlignmentDelta delta = new AlignmentDelta();
+		for (Genome genome : target) {
+			Genome baseGenome = base.getGenome(genome.getId());
+			if (baseGenome == null || baseGenome.size() != genome.size()) {
+				delta.addGenome(genome);
+				continue;
+			}
+
+			int[] edits = SNPIndex.differencePositions(genome, baseGenome);
+			if (edits.length > genome.size() / MAX_EDIT_RATIO) {
+				delta.addGenome(genome);
+				continue;
+			}
+			char[] nucleotides = new char[edits.length];
+			for (int i = 0; i < edits.length; i++) {
+				nucleotides[i] = genome.getNucleotide(edits[i]);
+			}
+			delta.addEdited(genome.getId(), edits, nucleotides);
+		}
+		return delta;
+	}
+
+	/**
+	 * Appends a genome that is described by its edits against the base genome
+	 * with the same identifier.
+	 *
+	 * @param id - the identifier of the genome.
+	 * @param editPositions - the edited positions, in increasing order.
+	 * @param editSymbols - the nucleotides at the edited positions.
+	 */
+	public void addEdited(String id, int[] editPositions, char[] editSymbols) {
+		ids.add(id);
+		positions.add(editPositions);
+		symbols.add(editSymbols);
+		genomes.add(null);
+	}
+
+	/**
+	 * Appends a genome that is stored whole.
+	 *
+	 * @param genome - the genome.
+	 */
+	public void addGenome(Genome genome) {
+		ids.add(genome.getId());
+		positions.add(null);
+		symbols.add(null);
+		genomes.add(genome);
+	}
+
+	/**
+	 * Returns the number of genomes of the described alignment.
+	 *
+	 * @return the number of genomes.
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	public String getId(int index) {
+		return ids.get(index);
+	}
+
+	/**
+	 * Returns the genome at the given index if it is stored whole.
+	 *
+	 * @param index - the index of the genome.
+	 * @return the genome, or null when it is described by edits.
+	 */
+	public Genome getGenome(int index) {
+		return genomes.get(index);
+	}
+
+	/**
+	 * Returns the edited positions of the genome at the given index.
+	 *
+	 * @param index - the index of the genome.
+	 * @return the positions in increasing order, or null when the genome is
+	 * stored whole.
+	 */
+	public int[] getEditPositions(int index) {
+		return positions.get(index);
+	}
+
+	public char[] getEditSymbols(int index) {
+		return symbols.get(index);
+	}
+
+	/**
+	 * Builds the described alignment from its base. The base is not changed.
+	 *
+	 * @param base - the base alignment the delta was computed against.
+	 * @return the described alignment.
+	 * @throws IllegalArgumentException when the delta does not fit the base, i.e.
+	 * an edited genome is missing from the base or an edit is out of range.
+	 */
+	public Alignment apply(Alignment base) throws IllegalArgumentException {
+		Alignment alignment = new StandardAlignment();
+		for (int i = 0; i < ids.size(); i++) {
+			if (genomes.get(i) != null) {
+				alignment.addGenome(genomes.get(i));
+				continue;
+			}
+
+			Genome baseGenome = base.getGenome(ids.get(i));
+			if (baseGenome == null) {
+				throw new IllegalArgumentException("The base alignment has no genome " + ids.get(i));
+			}
+			Genome genome = new Genome(baseGenome);
+			int[] editPositions = positions.get(i);
+			char[] editSymbols = symbols.get(i);
+			try {
+				for (int k = 0; k < editPositions.length; k++) {
+					genome.setNucleotide(editPositions[k], editSymbols[k]);
+				}
+			} catch (ArrayIndexOutOfBoundsException ex) {
+				throw new IllegalArgumentException("An edit of " + ids.get(i) + " is out of range.");
+			}
+			alignment.addGenome(genome);
+		}
+		return alignment;
+	}
+}
@@ -1,27 +1,51 @@
 package alignment;
 
 import java.util.Iterator;
-import java.util.Map;
+import java.util.NoSuchElementException;
 
 public class AlignmentIterator implements Iterator<Genome> {
-	private Iterator<Map.Entry<String, Genome>> iterator;
+	private final Genome[] genomes;
+	private final int count;
+	private int next;
 
-	public AlignmentIterator(Map<String, Genome> genomes) {
-		iterator = genomes.entrySet().iterator();
+	/**
+	 * Creates an iterator over the first 'count' slots of the given array,
+	 * skipping empty (null) slots.
+	 * 
+	 * @param genomes - the genomes, in order.
+	 * @param count - the number of slots to iterate over.
+	 */
+	public AlignmentIterator(Genome[] genomes, int count) {
+		this.genomes = genomes;
+		this.count = count;
+		this.next = skip(0);
 	}
 
 	@Override
 	public boolean hasNext() {
-		return iterator.hasNext();
+		return next < count;
 	}
 
 	@Override
 	public Genome next() {
-		return iterator.next().getValue();
+		if (next >= count) {
+			throw new NoSuchElementException();
+		}
+		Genome genome = genomes[next];
+		next = skip(next + 1);
+		return genome;
 	}
 	
 	public void remove() {
 		//
 	}
 
+	// Returns the first slot from the given one that holds a genome.
+	private int skip(int slot) {
+		while (slot < count && genomes[slot] == null) {
+			slot++;
+		}
+		return slot;
+	}
+
 }
@@ -0,0 +1,88 @@
+package alignment;
+
+import java.util.Arrays;
+
+/**
+ * The ArraySequence class stores one character per nucleotide. This is the
+ * original layout of a genome and costs two bytes per base.
+ */
+public class ArraySequence implements ISequence {
+	private char[] nucleotides;
+
+	public ArraySequence(char[] nucleotides) {
+		this.nucleotides = nucleotides;
+	}
+
+	@Override
+	public int length() {
+		return nucleotides.length;
+	}
+
+	@Override
+	public char getNucleotide(int index) throws ArrayIndexOutOfBoundsException {
+		return nucleotides[index];
+	}
+
+	@Override
+	public void setNucleotide(int index, char nucleotide) throws ArrayIndexOutOfBoundsException {
+		nucleotides[index] = nucleotide;
+	}
+
+	@Override
+	public ArraySequence copy() {
+		return new ArraySequence(nucleotides.clone());
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return false;
+	}
+
+	@Override
+	public char[] toCharArray() {
+		return nucleotides.clone();
+	}
+
+	@Override
+	public void getNucleotides(int from, int to, char[] destination, int offset)
+			throws ArrayIndexOutOfBoundsException {
+		System.arraycopy(nucleotides, from, destination, offset, to - from);
+	}
+
+	/**
+	 * Counts the positions in the range [from, to) at which this sequence and
+	 * the other sequence hold different nucleotides.
+	 *
+	 * @param other - the sequence to compare with.
+	 * @param from - the first position to compare (inclusive).
+	 * @param to - the last position to compare (exclusive).
+	 * @return the number of differing positions.
+	 * @throws ArrayIndexOutOfBoundsException when the range exceeds either sequence.
+	 */
+	public int countDifferences(ArraySequence other, int from, int to) throws ArrayIndexOutOfBoundsException {
+		char[] theirs = other.nucleotides;
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			if (nucleotides[i] != theirs[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof ArraySequence)) {
+			return false;
+		}
+		return Arrays.equals(nucleotides, ((ArraySequence) other).nucleotides);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(nucleotides);
+	}
+}
@@ -0,0 +1,73 @@
+package alignment;
+
+/**
+ * The EditRule class describes one substitution of a batch edit: every
+ * occurrence of a sequence is replaced by a new sequence of the same length,
+ * either in all genomes of an alignment or in a single genome.
+ */
+public class EditRule {
+	private final String sequence;
+	private final String newSequence;
+	private final String genomeId;
+
+	/**
+	 * Creates a rule that applies to all genomes of the alignment.
+	 *
+	 * @param sequence - the sequence to search.
+	 * @param newSequence - the sequence that will replace the occurrences.
+	 * @throws IllegalArgumentException thrown when invalid arguments are provided.
+	 */
+	public EditRule(String sequence, String newSequence) throws IllegalArgumentException {
+		this(sequence, newSequence, null);
+	}
+
+	/**
+	 * Creates a rule that applies to a single genome.
+	 *
+	 * @param sequence - the sequence to search.
+	 * @param newSequence - the sequence that will replace the occurrences.
+	 * @param genomeId - the identifier of the genome in which to replace
+	 * sequences, with or without the leading '>'; null for all genomes.
+	 * @throws IllegalArgumentException thrown when invalid arguments are provided.
+	 */
+	public EditRule(String sequence, String newSequence, String genomeId) throws IllegalArgumentException {
+		if (sequence == null || newSequence == null || sequence.isEmpty() || newSequence.isEmpty()
+				|| (genomeId != null && genomeId.isEmpty())) {
+			throw new IllegalArgumentException("Invalid arguments.");
+		}
+		if (sequence.length() != newSequence.length()) {
+			throw new IllegalArgumentException("The lengths of the old and new sequences do not match.");
+		}
+
+		this.sequence = sequence;
+		this.newSequence = newSequence;
+		this.genomeId = genomeId == null || genomeId.startsWith(">") ? genomeId : ">" + genomeId;
+	}
+
+	public String getSequence() {
+		return sequence;
+	}
+
+	public String getNewSequence() {
+		return newSequence;
+	}
+
+	/**
+	 * Returns the identifier of the genome this rule applies to.
+	 *
+	 * @return the identifier, with the leading '>', or null for all genomes.
+	 */
+	public String getGenomeId() {
+		return genomeId;
+	}
+
+	/**
+	 * Returns true if this rule applies to the given genome.
+	 *
+	 * @param genome - a genome of the alignment.
+	 * @return true if the rule applies to the genome; otherwise false.
+	 */
+	public boolean appliesTo(Genome genome) {
+		return genomeId == null || genomeId.equals(genome.getId());
+	}
+}
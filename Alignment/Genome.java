@@ -1,24 +1,44 @@
 package alignment;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 
 import exceptions.BioinformaticsException;
 
 public class Genome {
 	private String id;
-	private char[] nucleotides;
+	private ISequence nucleotides;
+	// Whether the nucleotides may be shared with a copy of this genome, in which
+	// case they are copied before they are changed.
+	private boolean shared;
+	// The objects to notify when the nucleotides change; null when there are none.
+	private ArrayList<IGenomeListener> listeners;
+
+	// The number of nucleotides copied at a time when a genome is written.
+	static final int WRITE_BUFFER_SIZE = 8192;
 
 	public Genome(String id) {
-		this.id = id;
+		setId(id);
 		this.nucleotides = null;
 	}
 
+	/**
+	 * Creates a copy of the given genome. The copy shares the nucleotides of the
+	 * genome until either of them is changed, at which point the changed genome
+	 * copies them first (copy-on-write), so a copy costs O(1) instead of O(bases).
+	 * 
+	 * @param genome - the genome to copy.
+	 */
 	public Genome(Genome genome) {
-		this.id = genome.getId();
-		this.nucleotides = new char[genome.size()];
-		for (int i = 0; i < genome.size(); i++) {
-			this.nucleotides[i] = genome.getNucleotide(i);
-		}
+		this.id = genome.id;
+		this.nucleotides = genome.nucleotides;
+		this.shared = true;
+		genome.shared = true;
 	}
 
 	public String getId() {
@@ -29,76 +49,218 @@ public class Genome {
 		this.id = id;
 	}
 
+	/**
+	 * Returns a copy of the nucleotides of this genome as a character array.
+	 * 
+	 * @return the nucleotides of this genome, or null if none were set.
+	 */
 	public char[] getNucleotides() {
+		return nucleotides == null ? null : nucleotides.toCharArray();
+	}
+
+	/**
+	 * Returns the storage that holds the nucleotides of this genome.
+	 * 
+	 * @return the sequence storage of this genome.
+	 */
+	public ISequence getSequence() {
 		return nucleotides;
 	}
 
 	public char getNucleotide(int index) throws ArrayIndexOutOfBoundsException {
-		return nucleotides[index];
+		return nucleotides.getNucleotide(index);
 	}
 
 	public void setNucleotide(int index, char nucleotide) throws ArrayIndexOutOfBoundsException {
-		if (index >= this.nucleotides.length)
+		if (index >= this.nucleotides.length())
 			throw new ArrayIndexOutOfBoundsException();
 
-		this.nucleotides[index] = nucleotide;
+		store(index, nucleotide);
 	}
 
 	public void setNucleotides(char[] nucleotides) {
-		this.nucleotides = nucleotides;
+		setNucleotides(new ArraySequence(nucleotides));
 	}
 
 	public void setNucleotides(String nucleotides) throws BioinformaticsException {
-		int len = nucleotides.length();
-		
-		this.nucleotides = new char[len];
-		for (int i = 0; i < len; i++) {
-			this.nucleotides[i] = nucleotides.charAt(i);
+		setNucleotides(new ArraySequence(nucleotides.toCharArray()));
+	}
+
+	/**
+	 * Sets the nucleotides of this genome to the given sequence storage, e.g. a
+	 * PackedSequence to keep the bases with two bits each.
+	 * 
+	 * @param nucleotides - the sequence storage with the nucleotides.
+	 */
+	public void setNucleotides(ISequence nucleotides) {
+		this.nucleotides = nucleotides;
+		this.shared = false;
+		fireSequenceChanged();
+	}
+
+	/**
+	 * Registers a listener that is notified whenever the nucleotides of this
+	 * genome change.
+	 * 
+	 * @param listener - the listener to register.
+	 */
+	public void addListener(IGenomeListener listener) {
+		if (listeners == null) {
+			listeners = new ArrayList<>(1);
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregisters a listener that was registered with addListener.
+	 * 
+	 * @param listener - the listener to unregister.
+	 */
+	public void removeListener(IGenomeListener listener) {
+		if (listeners != null) {
+			listeners.remove(listener);
+			if (listeners.isEmpty()) {
+				listeners = null;
+			}
 		}
 	}
 
+	/**
+	 * Stores a nucleotide and notifies the listeners if the stored value changed.
+	 */
+	private void store(int index, char nucleotide) {
+		if (listeners == null) {
+			replace(index, nucleotide);
+			return;
+		}
+
+		char oldNucleotide = replace(index, nucleotide);
+		if (oldNucleotide != nucleotide) {
+			for (IGenomeListener listener : listeners) {
+				listener.nucleotideChanged(this, index, oldNucleotide, nucleotide);
+			}
+		}
+	}
+
+	/**
+	 * Stores a nucleotide without notifying the listeners.
+	 * 
+	 * @return the nucleotide that was stored before.
+	 */
+	private char replace(int index, char nucleotide) {
+		if (nucleotides.isReadOnly()) {
+			// Copy a read-only (e.g. memory-mapped) sequence before the first change.
+			nucleotides = new PackedSequence(nucleotides.toCharArray());
+			shared = false;
+		} else if (shared) {
+			// Copy the nucleotides shared with a copy of this genome.
+			nucleotides = nucleotides.copy();
+			shared = false;
+		}
+		char oldNucleotide = nucleotides.getNucleotide(index);
+		nucleotides.setNucleotide(index, nucleotide);
+		return oldNucleotide;
+	}
+
 	public void changeSequence(int start, char[] nucleotides) throws ArrayIndexOutOfBoundsException {
 		int len = nucleotides.length;
-		if (start + len > this.nucleotides.length) {
+		if (start + len > this.nucleotides.length()) {
 			throw new ArrayIndexOutOfBoundsException();
 		}
 
 		for (int i = 0; i < len; i++) {
-			this.nucleotides[i + start] = nucleotides[i];
+			store(i + start, nucleotides[i]);
 		}
 	}
 
-	public String getIdWithSequence(String sequence) {
-		int i = 0, j;
-		int matched;
-		while (i < nucleotides.length - 1) {
-			j = 0;
-			matched = 0;
-			while (j < sequence.length() && i < nucleotides.length) {
-				if (nucleotides[i] == sequence.charAt(j)) {
-					matched++;
-				} else {
-					i++;
-					break;
+	/**
+	 * Changes nucleotides as changeSequence does, but without notifying the
+	 * listeners, so that a batch of edits (e.g. on several threads) does not
+	 * call them once per nucleotide. The change of the difference score of this
+	 * genome against the reference genome is added to scoreDelta[0]; the caller
+	 * must pass it to fireNucleotidesChanged when the batch is complete if this
+	 * returned true.
+	 * 
+	 * @param start - the position of the first nucleotide to change.
+	 * @param nucleotides - the new nucleotides.
+	 * @param reference - the genome to score against; null to keep no score,
+	 * e.g. for the reference genome itself.
+	 * @param scoreDelta - the change of the score is added to its first element.
+	 * @return true if a stored nucleotide changed.
+	 * @throws ArrayIndexOutOfBoundsException when the nucleotides do not fit.
+	 */
+	boolean changeSequenceQuietly(int start, char[] nucleotides, Genome reference, int[] scoreDelta)
+			throws ArrayIndexOutOfBoundsException {
+		int len = nucleotides.length;
+		if (start + len > this.nucleotides.length()) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+
+		int referenceLength = reference == null ? 0 : reference.size();
+		boolean changed = false;
+		for (int i = 0; i < len; i++) {
+			char oldNucleotide = replace(i + start, nucleotides[i]);
+			if (oldNucleotide != nucleotides[i]) {
+				changed = true;
+				if (i + start < referenceLength) {
+					char expected = reference.getNucleotide(i + start);
+					scoreDelta[0] += (nucleotides[i] != expected ? 1 : 0) - (oldNucleotide != expected ? 1 : 0);
 				}
-				j++;
-				i++;
 			}
-			if (matched == sequence.length()) {
-				return id;
+		}
+		return changed;
+	}
+
+	/**
+	 * Notifies the listeners that the nucleotides of this genome changed, after
+	 * a batch of changeSequenceQuietly calls.
+	 */
+	void fireSequenceChanged() {
+		if (listeners != null) {
+			for (IGenomeListener listener : listeners) {
+				listener.sequenceChanged(this);
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listeners that some nucleotides of this genome changed, after
+	 * a batch of changeSequenceQuietly calls, with the change of its score.
+	 * 
+	 * @param reference - the genome against which the score was computed.
+	 * @param scoreDelta - the change of the score of this genome.
+	 */
+	void fireNucleotidesChanged(Genome reference, int scoreDelta) {
+		if (listeners != null) {
+			for (IGenomeListener listener : listeners) {
+				listener.nucleotidesChanged(this, reference, scoreDelta);
 			}
-			i -= j;
 		}
-		return null;
+	}
+
+	/**
+	 * Returns the identifier of this genome if the given sequence occurs in it;
+	 * otherwise returns null. The empty sequence occurs in every genome.
+	 * 
+	 * @param sequence - the sequence to search for.
+	 * @return the identifier of this genome, or null.
+	 */
+	public String getIdWithSequence(String sequence) {
+		if (sequence.isEmpty()) {
+			return id;
+		}
+		MultiPatternMatcher matcher = new MultiPatternMatcher(Collections.singletonList(sequence));
+		return matcher.occursIn(this) ? id : null;
 	}
 
 	public void replaceEntireSequence(String newSequence) throws IllegalArgumentException {
-		if (nucleotides.length != newSequence.length()) {
+		int length = nucleotides.length();
+		if (length != newSequence.length()) {
 			throw new IllegalArgumentException("The length of the new sequence is not valid.");
 		}
 
-		for (int i = 0; i < nucleotides.length; i++) {
-			nucleotides[i] = newSequence.charAt(i);
+		for (int i = 0; i < length; i++) {
+			store(i, newSequence.charAt(i));
 		}
 	}
 
@@ -109,11 +271,12 @@ public class Genome {
 
 		int i = 0, j;
 		int matched;
-		while (i < nucleotides.length) {
+		int length = nucleotides.length();
+		while (i < length) {
 			j = 0;
 			matched = 0;
-			while (j < sequence.length() && i < nucleotides.length) {
-				if (nucleotides[i] == sequence.charAt(j)) {
+			while (j < sequence.length() && i < length) {
+				if (nucleotides.getNucleotide(i) == sequence.charAt(j)) {
 					matched++;
 				} else {
 					i++;
@@ -124,10 +287,10 @@ public class Genome {
 			}
 			if (matched == sequence.length()) {
 				for (int k = 0; k < j; k++) {
-					nucleotides[i - j + k] = newSequence.charAt(k);
+					store(i - j + k, newSequence.charAt(k));
 				}
 			} else {
-				if (i >= nucleotides.length)
+				if (i >= length)
 					break;
 				else
 					i -= j;
@@ -136,7 +299,7 @@ public class Genome {
 	}
 
 	public int size() {
-		return nucleotides.length;
+		return nucleotides.length();
 	}
 	
 	public Genome clone() {
@@ -150,11 +313,11 @@ public class Genome {
 			return false;
 		}
 		
-		return Arrays.equals(this.nucleotides, other.nucleotides);
+		return ISequence.contentEquals(this.nucleotides, other.nucleotides);
 	}
 	
 	public boolean equalsBySequence(char[] nucleotides) {
-		return Arrays.equals(this.nucleotides, nucleotides);
+		return Arrays.equals(getNucleotides(), nucleotides);
 	}
 	
 	/**
@@ -171,16 +334,50 @@ public class Genome {
 			return true;			
 		}
 		
-		String thisSequence = Arrays.toString(this.nucleotides);
+		String thisSequence = Arrays.toString(getNucleotides());
 		
 		return thisSequence.equals(sequence);
 	}
 	
 	
-	public int getScore(Genome referenceGenome) {
+	/**
+	 * Returns the number of positions at which this genome differs from the given
+	 * reference genome. When both genomes use the same storage the comparison is
+	 * done directly on that storage, which for packed sequences compares 32
+	 * bases per operation.
+	 * 
+	 * @param referenceGenome - the genome to compare with.
+	 * @return the difference score of this genome.
+	 * @throws ArrayIndexOutOfBoundsException when this genome is shorter than the
+	 * reference genome.
+	 */
+	public int getScore(Genome referenceGenome) throws ArrayIndexOutOfBoundsException {
+		return getScore(referenceGenome, 0, referenceGenome.size());
+	}
+
+	/**
+	 * Returns the number of positions in the column range [from, to) at which
+	 * this genome differs from the given reference genome.
+	 * 
+	 * @param referenceGenome - the genome to compare with.
+	 * @param from - the first column to compare (inclusive).
+	 * @param to - the last column to compare (exclusive).
+	 * @return the difference score of this genome over the given columns.
+	 * @throws ArrayIndexOutOfBoundsException when the range exceeds either genome.
+	 */
+	public int getScore(Genome referenceGenome, int from, int to) throws ArrayIndexOutOfBoundsException {
+		ISequence reference = referenceGenome.nucleotides;
+		if (to <= size() && to <= reference.length()) {
+			if (nucleotides instanceof PackedSequence && reference instanceof PackedSequence) {
+				return ((PackedSequence) nucleotides).countDifferences((PackedSequence) reference, from, to);
+			}
+			if (nucleotides instanceof ArraySequence && reference instanceof ArraySequence) {
+				return ((ArraySequence) nucleotides).countDifferences((ArraySequence) reference, from, to);
+			}
+		}
+
 		int diffScore = 0;
-		int referenceLength = referenceGenome.size();
-		for (int i = 0; i < referenceLength; i++) {
+		for (int i = from; i < to; i++) {
 			if (this.getNucleotide(i) != referenceGenome.getNucleotide(i)) {
 				diffScore++;					
 			}
@@ -188,13 +385,36 @@ public class Genome {
 		return diffScore;
 	}
 
+	/**
+	 * Writes the identifier of this genome followed by its nucleotides, in the
+	 * same form as toString. The nucleotides are copied through a fixed-size
+	 * buffer, so the output is never held in memory as a whole.
+	 * 
+	 * @param writer - the writer that receives the genome.
+	 * @throws IOException when the writer fails.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		writer.write(id);
+		writer.write('\n');
+
+		int length = nucleotides.length();
+		char[] buffer = new char[Math.min(WRITE_BUFFER_SIZE, length)];
+		for (int from = 0; from < length; from += buffer.length) {
+			int to = Math.min(from + buffer.length, length);
+			nucleotides.getNucleotides(from, to, buffer, 0);
+			writer.write(buffer, 0, to - from);
+		}
+	}
+
 	@Override
 	public String toString() {
-		String str = id + "\n";
-		for (int i = 0; i < nucleotides.length; i++) {
-			str += nucleotides[i];
+		StringWriter writer = new StringWriter(id.length() + 1 + nucleotides.length());
+		try {
+			writeTo(writer);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
 		}
-		return str;
+		return writer.toString();
 	}
 
 }
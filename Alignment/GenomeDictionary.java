@@ -0,0 +1,114 @@
+package alignment;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The GenomeDictionary class maps the identifiers (FASTA headers) of genomes to
+ * dense integer keys: the first identifier seen gets key 0, the next one key 1,
+ * and so on. An alignment keeps the key of each of its genomes, so it finds
+ * its genomes by key, and searches and edits compare keys instead of hashing
+ * and comparing header strings. Only genomes added to the alignment add
+ * identifiers; identifiers typed by users are looked up (see lookup), so the
+ * dictionary does not grow with identifiers that no genome has.
+ *
+ * Every alignment has a dictionary of its own, and a copy of an alignment
+ * starts with a copy of it, so the same genome has the same key in both and
+ * the identifiers are released together with the alignments that use them.
+ * Keys are not reused within a dictionary.
+ */
+public final class GenomeDictionary {
+	private final ConcurrentHashMap<String, Integer> keys;
+	// The identifier of each key; only written while holding the lock of this object.
+	private volatile String[] identifiers;
+	private int size;
+
+	/**
+	 * Creates an empty dictionary.
+	 */
+	public GenomeDictionary() {
+		keys = new ConcurrentHashMap<>();
+		identifiers = new String[16];
+		size = 0;
+	}
+
+	/**
+	 * Creates a copy of the given dictionary, in which every identifier has the
+	 * same key as in the given one.
+	 *
+	 * @param dictionary - the dictionary to copy.
+	 */
+	public GenomeDictionary(GenomeDictionary dictionary) {
+		synchronized (dictionary) {
+			keys = new ConcurrentHashMap<>(dictionary.keys);
+			identifiers = Arrays.copyOf(dictionary.identifiers, dictionary.identifiers.length);
+			size = dictionary.size;
+		}
+	}
+
+	/**
+	 * Returns the key of an identifier, adding the identifier when it is new.
+	 *
+	 * @param id - the identifier of a genome.
+	 * @return the key of the identifier, or -1 when the identifier is null.
+	 */
+	public int intern(String id) {
+		if (id == null) {
+			return -1;
+		}
+		Integer key = keys.get(id);
+		if (key != null) {
+			return key;
+		}
+		synchronized (this) {
+			key = keys.get(id);
+			if (key != null) {
+				return key;
+			}
+			if (size == identifiers.length) {
+				identifiers = Arrays.copyOf(identifiers, size * 2);
+			}
+			identifiers[size] = id;
+			keys.put(id, size);
+			return size++;
+		}
+	}
+
+	/**
+	 * Returns the key of an identifier without adding it.
+	 *
+	 * @param id - the identifier of a genome.
+	 * @return the key of the identifier, or -1 when it is null or has no key.
+	 */
+	public int lookup(String id) {
+		Integer key = id == null ? null : keys.get(id);
+		return key == null ? -1 : key;
+	}
+
+	/**
+	 * Returns the identifier of a key.
+	 *
+	 * @param key - the key of an identifier.
+	 * @return the identifier, or null when the key is -1.
+	 * @throws ArrayIndexOutOfBoundsException when the key was never given out.
+	 */
+	public String getId(int key) throws ArrayIndexOutOfBoundsException {
+		if (key == -1) {
+			return null;
+		}
+		if (key < 0 || key >= keys.size()) {
+			throw new ArrayIndexOutOfBoundsException(key);
+		}
+		return identifiers[key];
+	}
+
+	/**
+	 * Returns the number of identifiers in the dictionary, which is also the
+	 * next key to be given out.
+	 *
+	 * @return the number of identifiers.
+	 */
+	public int size() {
+		return keys.size();
+	}
+}
@@ -0,0 +1,54 @@
+package alignment;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The GenomeTask class runs an independent piece of work on every genome of a
+ * set on a ForkJoinPool, e.g. the scan of a search or a batch of replacements.
+ * A task splits its genomes in halves until the remaining work is small. The
+ * work must only touch the genome it is given and results it stores at the
+ * genome's index, so that the caller can combine them in the order of the
+ * alignment afterwards.
+ */
+class GenomeTask extends RecursiveAction {
+	/**
+	 * A default serial version ID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The Work interface is the work done for a single genome.
+	 */
+	interface Work {
+		void run(int index, Genome genome);
+	}
+
+	private final Genome[] genomes;
+	private final Work work;
+	private final int low;
+	private final int high;
+
+	/**
+	 * Creates a task for the genomes in [low, high).
+	 */
+	GenomeTask(Genome[] genomes, Work work, int low, int high) {
+		this.genomes = genomes;
+		this.work = work;
+		this.low = low;
+		this.high = high;
+	}
+
+	@Override
+	protected void compute() {
+		int count = high - low;
+		if (count > 1 && (long) count * genomes[low].size() > ScoreTask.SEQUENTIAL_THRESHOLD) {
+			int middle = (low + high) >>> 1;
+			invokeAll(new GenomeTask(genomes, work, low, middle), new GenomeTask(genomes, work, middle, high));
+			return;
+		}
+
+		for (int i = low; i < high; i++) {
+			work.run(i, genomes[i]);
+		}
+	}
+}
@@ -1,7 +1,22 @@
 package alignment;
 
+import java.io.IOException;
+import java.io.Writer;
+
 public interface IAlignment {
 	
 	public String alignmentToString(Alignment alignment) throws ArrayIndexOutOfBoundsException;
 
+	/**
+	 * Writes the same representation of an alignment as alignmentToString,
+	 * without building it in memory first.
+	 * 
+	 * @param alignment - the alignment to write.
+	 * @param writer - the writer that receives the representation.
+	 * @throws IOException when the writer fails.
+	 * @throws ArrayIndexOutOfBoundsException when a genome is shorter than the
+	 * reference genome.
+	 */
+	public void writeAlignment(Alignment alignment, Writer writer) throws IOException, ArrayIndexOutOfBoundsException;
+
 }
@@ -0,0 +1,42 @@
+package alignment;
+
+/**
+ * The IGenomeListener interface is implemented by objects that need to know
+ * when the nucleotides of a genome change, e.g. to keep derived data such as
+ * difference scores up to date without rescanning the whole genome.
+ */
+public interface IGenomeListener {
+
+	/**
+	 * Called after a single nucleotide of the genome was changed to a different
+	 * value.
+	 *
+	 * @param genome - the genome that changed.
+	 * @param index - the position of the nucleotide that changed.
+	 * @param oldNucleotide - the nucleotide before the change.
+	 * @param newNucleotide - the nucleotide after the change.
+	 */
+	public void nucleotideChanged(Genome genome, int index, char oldNucleotide, char newNucleotide);
+
+	/**
+	 * Called after the entire sequence of the genome was set to a new one, which
+	 * may have a different length.
+	 *
+	 * @param genome - the genome that changed.
+	 */
+	public void sequenceChanged(Genome genome);
+
+	/**
+	 * Called after a batch of nucleotides of the genome was changed at once
+	 * (e.g. by Alignment.applyEdits), instead of once per nucleotide. By default
+	 * this is handled as a change of the entire sequence.
+	 *
+	 * @param genome - the genome that changed.
+	 * @param referenceGenome - the genome against which scoreDelta was computed.
+	 * @param scoreDelta - the change of the difference score of the genome
+	 * against referenceGenome.
+	 */
+	public default void nucleotidesChanged(Genome genome, Genome referenceGenome, int scoreDelta) {
+		sequenceChanged(genome);
+	}
+}
@@ -0,0 +1,104 @@
+package alignment;
+
+/**
+ * The ISequence interface describes the storage behind the nucleotides of a
+ * genome. It lets a Genome keep its bases in different memory layouts (e.g. a
+ * plain character array or a 2-bit packed array) without changing the way the
+ * rest of the system reads or edits them.
+ */
+public interface ISequence {
+
+	/**
+	 * Returns the number of nucleotides in this sequence.
+	 *
+	 * @return the length of this sequence.
+	 */
+	public int length();
+
+	/**
+	 * Returns the nucleotide at the given position.
+	 *
+	 * @param index - the zero-based position of the nucleotide.
+	 * @return the nucleotide at the given position.
+	 * @throws ArrayIndexOutOfBoundsException when the index is out of range.
+	 */
+	public char getNucleotide(int index) throws ArrayIndexOutOfBoundsException;
+
+	/**
+	 * Replaces the nucleotide at the given position.
+	 *
+	 * @param index - the zero-based position of the nucleotide.
+	 * @param nucleotide - the new nucleotide.
+	 * @throws ArrayIndexOutOfBoundsException when the index is out of range.
+	 */
+	public void setNucleotide(int index, char nucleotide) throws ArrayIndexOutOfBoundsException;
+
+	/**
+	 * Returns true if the nucleotides of this sequence cannot be changed, e.g.
+	 * because they are read from a memory-mapped file.
+	 *
+	 * @return true if setNucleotide is not supported; otherwise false.
+	 */
+	public boolean isReadOnly();
+
+	/**
+	 * Returns an independent copy of this sequence.
+	 *
+	 * @return a copy of this sequence.
+	 */
+	public ISequence copy();
+
+	/**
+	 * Returns the nucleotides of this sequence as a new character array.
+	 *
+	 * @return the nucleotides of this sequence.
+	 */
+	public char[] toCharArray();
+
+	/**
+	 * Copies the nucleotides in the range [from, to) into a character array.
+	 *
+	 * @param from - the first position to copy (inclusive).
+	 * @param to - the last position to copy (exclusive).
+	 * @param destination - the array that receives the nucleotides.
+	 * @param offset - the position in the array of the first nucleotide.
+	 * @throws ArrayIndexOutOfBoundsException when a range is out of bounds.
+	 */
+	public default void getNucleotides(int from, int to, char[] destination, int offset)
+			throws ArrayIndexOutOfBoundsException {
+		for (int i = from; i < to; i++) {
+			destination[offset + i - from] = getNucleotide(i);
+		}
+	}
+
+	/**
+	 * Returns true if both sequences hold the same nucleotides, regardless of
+	 * the memory layout used by each of them.
+	 *
+	 * @param first - the first sequence, may be null.
+	 * @param second - the second sequence, may be null.
+	 * @return true if the sequences are equal; otherwise false.
+	 */
+	public static boolean contentEquals(ISequence first, ISequence second) {
+		if (first == second) {
+			return true;
+		}
+		if (first == null || second == null) {
+			return false;
+		}
+		if (first.getClass() == second.getClass()) {
+			return first.equals(second);
+		}
+
+		int len = first.length();
+		if (len != second.length()) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (first.getNucleotide(i) != second.getNucleotide(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,408 @@
+package alignment;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The KmerIndex class is an optional index over the genomes of an alignment
+ * that records, for every genome, the positions of each k-mer (a run of k
+ * nucleotides made of A, C, G and T). A search for a sequence of at least k
+ * nucleotides then only verifies the positions of the rarest k-mer of the
+ * sequence instead of scanning every base of every genome.
+ *
+ * The index listens to the genomes of the alignment: a genome that is edited
+ * or added is re-indexed lazily on the next search, and a removed genome is
+ * dropped. The index can be written to and read from a stream, so that it
+ * does not need to be rebuilt every time the alignment is loaded.
+ */
+public class KmerIndex implements IGenomeListener {
+	// Identifies a serialized k-mer index ("KMER").
+	private static final int MAGIC = 0x4B4D4552;
+	private static final int VERSION = 3;
+	// The largest k for which a k-mer code fits in an int.
+	public static final int MAX_K = 15;
+
+	private final int k;
+	// The postings of every indexed genome; null values mark genomes that must
+	// be re-indexed.
+	private final IdentityHashMap<Genome, Postings> postings;
+
+	/**
+	 * The positions of the k-mers of one genome, stored as a sorted array of
+	 * distinct k-mer codes with the offsets of their positions.
+	 */
+	private static class Postings {
+		int length;
+		int[] kmers;
+		// The positions of kmers[i] are positions[offsets[i] .. offsets[i + 1]).
+		int[] offsets;
+		int[] positions;
+
+		int count(int kmer) {
+			int slot = Arrays.binarySearch(kmers, kmer);
+			return slot < 0 ? 0 : offsets[slot + 1] - offsets[slot];
+		}
+	}
+
+	/**
+	 * Creates an empty index for k-mers of the given length.
+	 *
+	 * @param k - the length of the k-mers, between 1 and MAX_K.
+	 * @throws IllegalArgumentException when k is out of range.
+	 */
+	public KmerIndex(int k) throws IllegalArgumentException {
+		if (k < 1 || k > MAX_K) {
+			throw new IllegalArgumentException("The k-mer length must be between 1 and " + MAX_K + ".");
+		}
+		this.k = k;
+		this.postings = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Returns the length of the k-mers in this index.
+	 *
+	 * @return the k-mer length.
+	 */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * Returns true if this index can answer a search for the given sequence,
+	 * i.e. the sequence is at least k long and consists of A, C, G and T.
+	 *
+	 * @param sequence - the sequence to search for.
+	 * @return true if the sequence can be searched through this index.
+	 */
+	public boolean supports(String sequence) {
+		if (sequence == null || sequence.length() < k) {
+			return false;
+		}
+		for (int i = 0; i < sequence.length(); i++) {
+			if (PackedSequence.encode(sequence.charAt(i)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the start positions of all occurrences of the sequence in the
+	 * given genome, in increasing order.
+	 *
+	 * @param genome - the genome in which to search.
+	 * @param sequence - the sequence to search for; see {@link #supports(String)}.
+	 * @return the start positions of the occurrences.
+	 */
+	synchronized List<Integer> search(Genome genome, String sequence) {
+		Postings entry = postingsOf(genome);
+		ArrayList<Integer> starts = new ArrayList<>();
+		if (entry == null) {
+			return starts;
+		}
+
+		// Use the k-mer of the sequence with the fewest positions in this genome.
+		int bestOffset = 0;
+		int bestCount = Integer.MAX_VALUE;
+		for (int offset = 0; offset + k <= sequence.length() && bestCount > 0; offset++) {
+			int count = entry.count(encode(sequence, offset));
+			if (count < bestCount) {
+				bestCount = count;
+				bestOffset = offset;
+			}
+		}
+		if (bestCount == 0) {
+			return starts;
+		}
+
+		int slot = Arrays.binarySearch(entry.kmers, encode(sequence, bestOffset));
+		for (int p = entry.offsets[slot]; p < entry.offsets[slot + 1]; p++) {
+			int start = entry.positions[p] - bestOffset;
+			if (start >= 0 && start + sequence.length() <= entry.length && matches(genome, start, sequence)) {
+				starts.add(start);
+			}
+		}
+		return starts;
+	}
+
+	/**
+	 * Indexes a genome that was added to the alignment.
+	 */
+	synchronized void genomeAdded(Genome genome) {
+		postings.put(genome, null);
+	}
+
+	/**
+	 * Returns a copy of this index for an alignment whose genomes are copies of
+	 * those of this index. The postings of a genome never change once built, so
+	 * the copy shares them.
+	 *
+	 * @param clones - maps each indexed genome to its copy.
+	 * @return the copy of this index.
+	 */
+	synchronized KmerIndex copy(Map<Genome, Genome> clones) {
+		KmerIndex copy = new KmerIndex(k);
+		for (Map.Entry<Genome, Postings> entry : postings.entrySet()) {
+			Genome clone = clones.get(entry.getKey());
+			if (clone != null) {
+				copy.postings.put(clone, entry.getValue());
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Drops a genome that was removed from the alignment.
+	 */
+	synchronized void genomeRemoved(Genome genome) {
+		postings.remove(genome);
+	}
+
+	@Override
+	public synchronized void nucleotideChanged(Genome genome, int index, char oldNucleotide, char newNucleotide) {
+		if (postings.containsKey(genome)) {
+			postings.put(genome, null);
+		}
+	}
+
+	@Override
+	public synchronized void sequenceChanged(Genome genome) {
+		if (postings.containsKey(genome)) {
+			postings.put(genome, null);
+		}
+	}
+
+	/**
+	 * Brings the postings of every genome up to date.
+	 */
+	public synchronized void refresh() {
+		for (Genome genome : new ArrayList<>(postings.keySet())) {
+			postingsOf(genome);
+		}
+	}
+
+	/**
+	 * Writes this index to the given stream. The checksum of the contents of
+	 * the alignment file the index belongs to is checked again when the index
+	 * is read, so an index is never used for another version of the file, even
+	 * one of the same size and modification time.
+	 *
+	 * @param out - the stream to write to.
+	 * @param alignment - the alignment this index belongs to.
+	 * @param checksum - the checksum of the alignment file.
+	 * @throws IOException when writing fails.
+	 */
+	public synchronized void writeTo(DataOutputStream out, Alignment alignment, long checksum) throws IOException {
+		refresh();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(k);
+		out.writeLong(checksum);
+
+		ArrayList<Genome> indexed = new ArrayList<>();
+		for (Genome genome : alignment) {
+			if (postings.get(genome) != null) {
+				indexed.add(genome);
+			}
+		}
+		out.writeInt(indexed.size());
+
+		for (Genome genome : indexed) {
+			Postings entry = postings.get(genome);
+			out.writeUTF(genome.getId());
+			out.writeInt(entry.length);
+			writeGaps(out, entry.kmers);
+			writeGaps(out, entry.offsets);
+			writePositions(out, entry);
+		}
+	}
+
+	/**
+	 * Reads an index written by writeTo and attaches it to the given alignment.
+	 * Genomes that are missing from the stream, or whose length differs, are
+	 * re-indexed on the next search.
+	 *
+	 * @param in - the stream to read from.
+	 * @param alignment - the alignment the index belongs to.
+	 * @param checksum - the checksum of the alignment file.
+	 * @return the index, or null when the stream holds an index for another
+	 * version of the alignment file or was written in another format version.
+	 * @throws IOException when reading fails or the stream is not an index.
+	 */
+	public static KmerIndex readFrom(DataInputStream in, Alignment alignment, long checksum) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a k-mer index file.");
+		}
+		if (in.readInt() != VERSION) {
+			// Written by another version, which is rebuilt like a stale index.
+			return null;
+		}
+		int k = in.readInt();
+		if (in.readLong() != checksum) {
+			return null;
+		}
+
+		KmerIndex index = new KmerIndex(k);
+		int count = in.readInt();
+		IdentityHashMap<Genome, Postings> loaded = new IdentityHashMap<>();
+		for (int i = 0; i < count; i++) {
+			String id = in.readUTF();
+			Postings entry = new Postings();
+			entry.length = in.readInt();
+			entry.kmers = readGaps(in);
+			entry.offsets = readGaps(in);
+			entry.positions = readPositions(in, entry.offsets);
+
+			Genome genome = alignment.getGenome(id);
+			if (genome != null && genome.size() == entry.length) {
+				loaded.put(genome, entry);
+			}
+		}
+
+		alignment.setIndex(index);
+		index.postings.putAll(loaded);
+		return index;
+	}
+
+	// Returns the up-to-date postings of a genome, re-indexing it if needed.
+	private Postings postingsOf(Genome genome) {
+		Postings entry = postings.get(genome);
+		if (entry == null && postings.containsKey(genome)) {
+			entry = build(genome);
+			postings.put(genome, entry);
+		}
+		return entry;
+	}
+
+	// Collects the positions of every k-mer of the genome.
+	private Postings build(Genome genome) {
+		int length = genome.size();
+		long[] pairs = new long[Math.max(0, length - k + 1)];
+		int count = 0;
+		int mask = (1 << (2 * k)) - 1;
+		int code = 0;
+		int run = 0;
+
+		for (int i = 0; i < length; i++) {
+			int base = PackedSequence.encode(genome.getNucleotide(i));
+			if (base < 0) {
+				run = 0;
+				continue;
+			}
+			code = ((code << 2) | base) & mask;
+			if (++run >= k) {
+				pairs[count++] = ((long) code << 32) | (i - k + 1);
+			}
+		}
+		Arrays.sort(pairs, 0, count);
+
+		Postings entry = new Postings();
+		entry.length = length;
+		entry.positions = new int[count];
+		int[] kmers = new int[count];
+		int[] offsets = new int[count + 1];
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			int kmer = (int) (pairs[i] >>> 32);
+			if (distinct == 0 || kmers[distinct - 1] != kmer) {
+				kmers[distinct] = kmer;
+				offsets[distinct] = i;
+				distinct++;
+			}
+			entry.positions[i] = (int) pairs[i];
+		}
+		offsets[distinct] = count;
+		entry.kmers = Arrays.copyOf(kmers, distinct);
+		entry.offsets = Arrays.copyOf(offsets, distinct + 1);
+		return entry;
+	}
+
+	private int encode(String sequence, int offset) {
+		int code = 0;
+		for (int i = offset; i < offset + k; i++) {
+			code = (code << 2) | PackedSequence.encode(sequence.charAt(i));
+		}
+		return code;
+	}
+
+	private static boolean matches(Genome genome, int start, String sequence) {
+		for (int i = 0; i < sequence.length(); i++) {
+			if (genome.getNucleotide(start + i) != sequence.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// The k-mer codes and offsets of the postings are increasing and their
+	// positions increase per k-mer, so they are written as the differences
+	// between consecutive values, 7 bits per byte. This keeps an index file at
+	// about two and a half times the size of its FASTA file instead of seven.
+
+	private static void writeGaps(DataOutputStream out, int[] values) throws IOException {
+		writeVarInt(out, values.length);
+		int previous = 0;
+		for (int value : values) {
+			writeVarInt(out, value - previous);
+			previous = value;
+		}
+	}
+
+	private static int[] readGaps(DataInputStream in) throws IOException {
+		int[] values = new int[readVarInt(in)];
+		int previous = 0;
+		for (int i = 0; i < values.length; i++) {
+			previous += readVarInt(in);
+			values[i] = previous;
+		}
+		return values;
+	}
+
+	private static void writePositions(DataOutputStream out, Postings entry) throws IOException {
+		for (int i = 0; i + 1 < entry.offsets.length; i++) {
+			int previous = 0;
+			for (int p = entry.offsets[i]; p < entry.offsets[i + 1]; p++) {
+				writeVarInt(out, entry.positions[p] - previous);
+				previous = entry.positions[p];
+			}
+		}
+	}
+
+	private static int[] readPositions(DataInputStream in, int[] offsets) throws IOException {
+		int[] positions = new int[offsets.length == 0 ? 0 : offsets[offsets.length - 1]];
+		for (int i = 0; i + 1 < offsets.length; i++) {
+			int previous = 0;
+			for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+				previous += readVarInt(in);
+				positions[p] = previous;
+			}
+		}
+		return positions;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed k-mer index file.");
+	}
+}
@@ -0,0 +1,118 @@
+package alignment;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The MappedSequence class reads nucleotides straight from a region of a
+ * memory-mapped FASTA file, without decoding them into characters first. The
+ * sequence may span several lines as long as every line but the last has the
+ * same width, so that the byte offset of a nucleotide can be computed.
+ *
+ * A mapped sequence is read-only: a Genome that is about to change one of its
+ * nucleotides first copies the sequence into a writable storage.
+ */
+public class MappedSequence implements ISequence {
+	private final ByteBuffer buffer;
+	// The offset of the first nucleotide in the buffer.
+	private final int offset;
+	private final int length;
+	// The number of nucleotides per line, or 0 when the sequence is on one line.
+	private final int lineWidth;
+	// The number of bytes that end a line ("\n" or "\r\n").
+	private final int lineBreak;
+
+	/**
+	 * Creates a sequence over a region of a mapped file.
+	 *
+	 * @param buffer - the mapped region.
+	 * @param offset - the offset of the first nucleotide in the buffer.
+	 * @param length - the number of nucleotides.
+	 * @param lineWidth - the number of nucleotides per line, or 0 for one line.
+	 * @param lineBreak - the number of bytes that end each line.
+	 */
+	public MappedSequence(ByteBuffer buffer, int offset, int length, int lineWidth, int lineBreak) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+		this.lineWidth = lineWidth;
+		this.lineBreak = lineBreak;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char getNucleotide(int index) throws ArrayIndexOutOfBoundsException {
+		if (index < 0 || index >= length) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		int position = offset + index;
+		if (lineWidth > 0) {
+			position += (index / lineWidth) * lineBreak;
+		}
+		return (char) (buffer.get(position) & 0xFF);
+	}
+
+	/**
+	 * A mapped sequence cannot be changed.
+	 *
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void setNucleotide(int index, char nucleotide) throws ArrayIndexOutOfBoundsException {
+		throw new UnsupportedOperationException("A mapped sequence is read-only.");
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	/**
+	 * Returns this sequence: since it cannot change, it can be shared.
+	 */
+	@Override
+	public MappedSequence copy() {
+		return this;
+	}
+
+	@Override
+	public char[] toCharArray() {
+		char[] nucleotides = new char[length];
+		for (int i = 0; i < length; i++) {
+			nucleotides[i] = getNucleotide(i);
+		}
+		return nucleotides;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof MappedSequence)) {
+			return false;
+		}
+		MappedSequence that = (MappedSequence) other;
+		if (length != that.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (getNucleotide(i) != that.getNucleotide(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = length;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + getNucleotide(i);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,212 @@
+package alignment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The MultiPatternMatcher class finds all occurrences of many patterns in a
+ * genome in a single pass, using the Aho-Corasick algorithm. The patterns are
+ * compiled once into a deterministic automaton whose transitions already
+ * include the failure links, so every nucleotide of the genome costs one table
+ * lookup no matter how many patterns are searched.
+ */
+public class MultiPatternMatcher {
+	// The number of ASCII symbols that can be mapped to the automaton alphabet.
+	private static final int ASCII = 128;
+
+	/**
+	 * The MatchHandler interface receives the occurrences found by a scan.
+	 */
+	public interface MatchHandler {
+
+		/**
+		 * Called for every occurrence of a pattern.
+		 *
+		 * @param pattern - the index of the pattern in the list given to the matcher.
+		 * @param position - the position of the first nucleotide of the occurrence.
+		 * @return true to continue scanning, or false to stop the scan.
+		 */
+		public boolean match(int pattern, int position);
+	}
+
+	private final List<String> patterns;
+	// Maps an ASCII symbol to its index in the automaton alphabet, or -1.
+	private final int[] symbols;
+	private final int alphabetSize;
+	// The transition table: state * alphabetSize + symbol -> next state.
+	private int[] transitions;
+	// The indexes of the patterns recognised in each state (including suffixes).
+	private int[][] outputs;
+
+	/**
+	 * Compiles the given patterns. Null and empty patterns never match.
+	 *
+	 * @param patterns - the patterns to search for.
+	 */
+	public MultiPatternMatcher(List<String> patterns) {
+		this.patterns = new ArrayList<>(patterns);
+		this.symbols = new int[ASCII];
+		Arrays.fill(symbols, -1);
+
+		int size = 0;
+		for (String pattern : this.patterns) {
+			if (pattern == null) {
+				continue;
+			}
+			for (int i = 0; i < pattern.length(); i++) {
+				char symbol = pattern.charAt(i);
+				if (symbol < ASCII && symbols[symbol] < 0) {
+					symbols[symbol] = size++;
+				}
+			}
+		}
+		this.alphabetSize = Math.max(size, 1);
+		build();
+	}
+
+	/**
+	 * Returns the patterns searched by this matcher.
+	 *
+	 * @return the patterns, in the order they were given.
+	 */
+	public List<String> getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * Scans the nucleotides of the given genome and reports every occurrence of
+	 * every pattern to the handler, in the order in which the occurrences end.
+	 *
+	 * @param genome - the genome to scan.
+	 * @param handler - receives the occurrences.
+	 */
+	public void scan(Genome genome, MatchHandler handler) {
+		ISequence sequence = genome.getSequence();
+		if (sequence == null) {
+			return;
+		}
+
+		int state = 0;
+		int length = sequence.length();
+		for (int i = 0; i < length; i++) {
+			char nucleotide = sequence.getNucleotide(i);
+			int symbol = nucleotide < ASCII ? symbols[nucleotide] : -1;
+			state = symbol < 0 ? 0 : transitions[state * alphabetSize + symbol];
+
+			int[] found = outputs[state];
+			if (found != null) {
+				for (int pattern : found) {
+					if (!handler.match(pattern, i - patterns.get(pattern).length() + 1)) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if any of the patterns occurs in the given genome.
+	 *
+	 * @param genome - the genome to scan.
+	 * @return true if a pattern occurs in the genome; otherwise false.
+	 */
+	public boolean occursIn(Genome genome) {
+		boolean[] found = { false };
+		scan(genome, (pattern, position) -> {
+			found[0] = true;
+			return false;
+		});
+		return found[0];
+	}
+
+	// Builds the trie of the patterns and turns it into a complete automaton.
+	private void build() {
+		int capacity = 1;
+		for (String pattern : patterns) {
+			capacity += pattern == null ? 0 : pattern.length();
+		}
+
+		int[] table = new int[capacity * alphabetSize];
+		Arrays.fill(table, -1);
+		ArrayList<ArrayList<Integer>> terminals = new ArrayList<>();
+		terminals.add(null);
+		int states = 1;
+
+		for (int p = 0; p < patterns.size(); p++) {
+			String pattern = patterns.get(p);
+			if (pattern == null || pattern.isEmpty()) {
+				continue;
+			}
+			int state = 0;
+			for (int i = 0; i < pattern.length(); i++) {
+				char symbol = pattern.charAt(i);
+				if (symbol >= ASCII) {
+					// A pattern with a symbol outside ASCII can never be matched.
+					state = -1;
+					break;
+				}
+				int slot = state * alphabetSize + symbols[symbol];
+				if (table[slot] < 0) {
+					table[slot] = states++;
+					terminals.add(null);
+				}
+				state = table[slot];
+			}
+			if (state > 0) {
+				if (terminals.get(state) == null) {
+					terminals.set(state, new ArrayList<>());
+				}
+				terminals.get(state).add(p);
+			}
+		}
+
+		// Breadth-first pass: fill the missing transitions through the failure
+		// links and collect the patterns that end at each state.
+		int[] failure = new int[states];
+		outputs = new int[states][];
+		outputs[0] = null;
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (int s = 0; s < alphabetSize; s++) {
+			int next = table[s];
+			if (next < 0) {
+				table[s] = 0;
+			} else {
+				failure[next] = 0;
+				queue.add(next);
+			}
+		}
+
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			outputs[state] = merge(terminals.get(state), outputs[failure[state]]);
+			for (int s = 0; s < alphabetSize; s++) {
+				int slot = state * alphabetSize + s;
+				int next = table[slot];
+				if (next < 0) {
+					table[slot] = table[failure[state] * alphabetSize + s];
+				} else {
+					failure[next] = table[failure[state] * alphabetSize + s];
+					queue.add(next);
+				}
+			}
+		}
+
+		transitions = Arrays.copyOf(table, states * alphabetSize);
+	}
+
+	private static int[] merge(ArrayList<Integer> own, int[] inherited) {
+		if (own == null) {
+			return inherited;
+		}
+		int[] merged = new int[own.size() + (inherited == null ? 0 : inherited.length)];
+		for (int i = 0; i < own.size(); i++) {
+			merged[i] = own.get(i);
+		}
+		if (inherited != null) {
+			System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+		}
+		return merged;
+	}
+}
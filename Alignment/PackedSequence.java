@@ -0,0 +1,473 @@
+package alignment;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The PackedSequence class stores nucleotides with two bits per base for A, C,
+ * G and T, so that 32 bases fit into a single long. Any other symbol (gaps, N
+ * and the IUPAC ambiguity codes) is kept in a sorted side-table of positions
+ * and symbols; the packed bits of such a position are left as zero. Since most
+ * columns of an alignment hold one of the four bases, the side-table stays
+ * sparse and a base costs about a quarter of a byte.
+ */
+public class PackedSequence implements ISequence {
+	// The number of bases that are packed into one long.
+	static final int BASES_PER_WORD = 32;
+
+	// Maps a 2-bit code back to its nucleotide.
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+
+	// Maps an ASCII nucleotide to its 2-bit code, or to -1 for the side-table.
+	private static final byte[] CODES = new byte[128];
+
+	static {
+		Arrays.fill(CODES, (byte) -1);
+		for (int code = 0; code < BASES.length; code++) {
+			CODES[BASES[code]] = (byte) code;
+		}
+	}
+
+	// The low bit of every 2-bit lane of a word.
+	private static final long LOW_LANE_BITS = 0x5555555555555555L;
+
+	private final int length;
+	// The 2-bit codes of the nucleotides, 32 bases per word.
+	long[] words;
+	// The sorted positions of the symbols that are not A, C, G or T.
+	int[] exceptionPositions;
+	// The symbols stored at the corresponding exceptionPositions.
+	char[] exceptionSymbols;
+	// The number of used entries in the side-table.
+	int exceptionCount;
+
+	/**
+	 * Creates a packed sequence holding the given nucleotides.
+	 *
+	 * @param nucleotides - the nucleotides to pack.
+	 */
+	public PackedSequence(CharSequence nucleotides) {
+		this(nucleotides.length());
+		for (int i = 0; i < length; i++) {
+			store(i, nucleotides.charAt(i));
+		}
+	}
+
+	/**
+	 * Creates a packed sequence holding the given nucleotides.
+	 *
+	 * @param nucleotides - the nucleotides to pack.
+	 */
+	public PackedSequence(char[] nucleotides) {
+		this(nucleotides.length);
+		for (int i = 0; i < length; i++) {
+			store(i, nucleotides[i]);
+		}
+	}
+
+	/**
+	 * Creates a packed sequence holding the nucleotides stored as ASCII bytes in
+	 * the given range of a byte array.
+	 *
+	 * @param nucleotides - the array with the nucleotides.
+	 * @param offset - the position of the first nucleotide in the array.
+	 * @param length - the number of nucleotides.
+	 */
+	public PackedSequence(byte[] nucleotides, int offset, int length) {
+		this(length);
+		// Each word is assembled in a local variable before it is stored.
+		for (int word = 0; word < words.length; word++) {
+			int start = word * BASES_PER_WORD;
+			int end = Math.min(start + BASES_PER_WORD, length);
+			long bits = 0;
+			for (int i = start; i < end; i++) {
+				char nucleotide = (char) (nucleotides[offset + i] & 0xFF);
+				int code = encode(nucleotide);
+				if (code < 0) {
+					insertException(exceptionCount, i, nucleotide);
+				} else {
+					bits |= (long) code << ((i - start) << 1);
+				}
+			}
+			words[word] = bits;
+		}
+	}
+
+	/**
+	 * Creates a packed sequence with the given length in which every base is an
+	 * 'A' (the all-zero code).
+	 *
+	 * @param length - the number of nucleotides.
+	 */
+	PackedSequence(int length) {
+		this(length, new long[(length + BASES_PER_WORD - 1) / BASES_PER_WORD]);
+	}
+
+	private PackedSequence(int length, long[] words) {
+		this.length = length;
+		this.words = words;
+		this.exceptionPositions = new int[0];
+		this.exceptionSymbols = new char[0];
+		this.exceptionCount = 0;
+	}
+
+	/**
+	 * Returns the 2-bit code of the given nucleotide, or -1 when it must be stored
+	 * in the side-table.
+	 */
+	static int encode(char nucleotide) {
+		return nucleotide < CODES.length ? CODES[nucleotide] : -1;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char getNucleotide(int index) throws ArrayIndexOutOfBoundsException {
+		if (index < 0 || index >= length) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		int code = code(index);
+		// Side-table positions are always stored with the zero code.
+		if (code == 0 && exceptionCount > 0) {
+			int slot = Arrays.binarySearch(exceptionPositions, 0, exceptionCount, index);
+			if (slot >= 0) {
+				return exceptionSymbols[slot];
+			}
+		}
+		return BASES[code];
+	}
+
+	@Override
+	public void setNucleotide(int index, char nucleotide) throws ArrayIndexOutOfBoundsException {
+		if (index < 0 || index >= length) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		int slot = exceptionCount > 0 ? Arrays.binarySearch(exceptionPositions, 0, exceptionCount, index) : -1;
+		int code = encode(nucleotide);
+
+		if (code < 0) {
+			if (slot >= 0) {
+				exceptionSymbols[slot] = nucleotide;
+			} else {
+				insertException(-(slot + 1), index, nucleotide);
+			}
+			setCode(index, 0);
+		} else {
+			if (slot >= 0) {
+				removeException(slot);
+			}
+			setCode(index, code);
+		}
+	}
+
+	@Override
+	public PackedSequence copy() {
+		PackedSequence copy = new PackedSequence(length, words.clone());
+		copy.exceptionPositions = Arrays.copyOf(exceptionPositions, exceptionCount);
+		copy.exceptionSymbols = Arrays.copyOf(exceptionSymbols, exceptionCount);
+		copy.exceptionCount = exceptionCount;
+		return copy;
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return false;
+	}
+
+	@Override
+	public char[] toCharArray() {
+		char[] nucleotides = new char[length];
+		for (int i = 0; i < length; i++) {
+			nucleotides[i] = BASES[code(i)];
+		}
+		for (int k = 0; k < exceptionCount; k++) {
+			nucleotides[exceptionPositions[k]] = exceptionSymbols[k];
+		}
+		return nucleotides;
+	}
+
+	@Override
+	public void getNucleotides(int from, int to, char[] destination, int offset)
+			throws ArrayIndexOutOfBoundsException {
+		if (from < 0 || to > length || from > to) {
+			throw new ArrayIndexOutOfBoundsException("Range [" + from + ", " + to + ") of " + length);
+		}
+		for (int i = from; i < to; i++) {
+			destination[offset + i - from] = BASES[code(i)];
+		}
+		int slot = exceptionCount > 0 ? Arrays.binarySearch(exceptionPositions, 0, exceptionCount, from) : 0;
+		for (slot = slot < 0 ? -(slot + 1) : slot; slot < exceptionCount && exceptionPositions[slot] < to; slot++) {
+			destination[offset + exceptionPositions[slot] - from] = exceptionSymbols[slot];
+		}
+	}
+
+	/**
+	 * Counts the positions in the range [from, to) at which this sequence and
+	 * the other sequence hold different nucleotides. Whole words are compared
+	 * 32 bases at a time with an XOR and a population count; the few positions
+	 * found in either side-table are then corrected one by one.
+	 *
+	 * @param other - the sequence to compare with.
+	 * @param from - the first position to compare (inclusive).
+	 * @param to - the last position to compare (exclusive).
+	 * @return the number of differing positions.
+	 * @throws ArrayIndexOutOfBoundsException when the range exceeds either sequence.
+	 */
+	public int countDifferences(PackedSequence other, int from, int to) throws ArrayIndexOutOfBoundsException {
+		if (from < 0 || to > length || to > other.length) {
+			throw new ArrayIndexOutOfBoundsException(to);
+		}
+		if (from >= to) {
+			return 0;
+		}
+
+		int count = 0;
+		int firstWord = from >>> 5;
+		int lastWord = (to - 1) >>> 5;
+		long[] otherWords = other.words;
+
+		for (int w = firstWord; w <= lastWord; w++) {
+			long diff = words[w] ^ otherWords[w];
+			// Fold each 2-bit lane onto its low bit: one bit per differing base.
+			long lanes = (diff | (diff >>> 1)) & LOW_LANE_BITS;
+			if (w == firstWord) {
+				lanes &= LOW_LANE_BITS << ((from & 31) << 1);
+			}
+			if (w == lastWord && (to & 31) != 0) {
+				lanes &= LOW_LANE_BITS >>> ((32 - (to & 31)) << 1);
+			}
+			count += Long.bitCount(lanes);
+		}
+
+		if (exceptionCount > 0 || other.exceptionCount > 0) {
+			count += correctExceptions(other, from, to);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the positions in [0, to) at which this sequence and the other
+	 * sequence hold different nucleotides. Like countDifferences, whole words are
+	 * compared at once; only the bits of the differing bases are visited.
+	 *
+	 * @param other - the sequence to compare with.
+	 * @param to - the last position to compare (exclusive).
+	 * @return the differing positions in increasing order.
+	 * @throws ArrayIndexOutOfBoundsException when the range exceeds either sequence.
+	 */
+	int[] differencePositions(PackedSequence other, int to) throws ArrayIndexOutOfBoundsException {
+		if (to > length || to > other.length) {
+			throw new ArrayIndexOutOfBoundsException(to);
+		}
+		if (to <= 0) {
+			return new int[0];
+		}
+		int[] positions = new int[16];
+		int count = 0;
+		int lastWord = (to - 1) >>> 5;
+		long[] otherWords = other.words;
+
+		for (int w = 0; w <= lastWord; w++) {
+			long diff = words[w] ^ otherWords[w];
+			long lanes = (diff | (diff >>> 1)) & LOW_LANE_BITS;
+			if (w == lastWord && (to & 31) != 0) {
+				lanes &= LOW_LANE_BITS >>> ((32 - (to & 31)) << 1);
+			}
+			while (lanes != 0) {
+				if (count == positions.length) {
+					positions = Arrays.copyOf(positions, count * 2);
+				}
+				positions[count++] = (w << 5) | (Long.numberOfTrailingZeros(lanes) >>> 1);
+				lanes &= lanes - 1;
+			}
+		}
+		if (exceptionCount == 0 && other.exceptionCount == 0) {
+			return Arrays.copyOf(positions, count);
+		}
+
+		// Merge the packed differences with the real comparison of the positions
+		// found in either side-table.
+		int[] merged = new int[count + exceptionCount + other.exceptionCount];
+		int size = 0;
+		int k = 0;
+		int i = 0;
+		int j = 0;
+		while (true) {
+			int mine = i < exceptionCount ? exceptionPositions[i] : Integer.MAX_VALUE;
+			int theirs = j < other.exceptionCount ? other.exceptionPositions[j] : Integer.MAX_VALUE;
+			int exception = Math.min(mine, theirs);
+			if (exception >= to) {
+				exception = Integer.MAX_VALUE;
+			}
+			while (k < count && positions[k] < exception) {
+				merged[size++] = positions[k++];
+			}
+			if (exception == Integer.MAX_VALUE) {
+				break;
+			}
+			if (k < count && positions[k] == exception) {
+				k++;
+			}
+			char a = exception == mine ? exceptionSymbols[i++] : BASES[code(exception)];
+			char b = exception == theirs ? other.exceptionSymbols[j++] : BASES[other.code(exception)];
+			if (a != b) {
+				merged[size++] = exception;
+			}
+		}
+		return Arrays.copyOf(merged, size);
+	}
+
+	// Replaces the packed comparison of every side-table position in [from, to)
+	// with the comparison of the real symbols.
+	private int correctExceptions(PackedSequence other, int from, int to) {
+		int correction = 0;
+		int i = lowerBound(exceptionPositions, exceptionCount, from);
+		int j = lowerBound(other.exceptionPositions, other.exceptionCount, from);
+
+		while (true) {
+			int mine = i < exceptionCount ? exceptionPositions[i] : Integer.MAX_VALUE;
+			int theirs = j < other.exceptionCount ? other.exceptionPositions[j] : Integer.MAX_VALUE;
+			int position = Math.min(mine, theirs);
+			if (position >= to) {
+				break;
+			}
+
+			char a = position == mine ? exceptionSymbols[i++] : BASES[code(position)];
+			char b = position == theirs ? other.exceptionSymbols[j++] : BASES[other.code(position)];
+			int packed = code(position) != other.code(position) ? 1 : 0;
+			correction += (a != b ? 1 : 0) - packed;
+		}
+		return correction;
+	}
+
+	private static int lowerBound(int[] positions, int count, int position) {
+		int slot = Arrays.binarySearch(positions, 0, count, position);
+		return slot >= 0 ? slot : -(slot + 1);
+	}
+
+	/**
+	 * Returns the number of symbols held in the side-table.
+	 *
+	 * @return the number of nucleotides that are not A, C, G or T.
+	 */
+	public int getExceptionCount() {
+		return exceptionCount;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof PackedSequence)) {
+			return false;
+		}
+		PackedSequence that = (PackedSequence) other;
+		return length == that.length && exceptionCount == that.exceptionCount
+				&& Arrays.equals(words, that.words)
+				&& Arrays.equals(exceptionPositions, 0, exceptionCount, that.exceptionPositions, 0, exceptionCount)
+				&& Arrays.equals(exceptionSymbols, 0, exceptionCount, that.exceptionSymbols, 0, exceptionCount);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(words) + length;
+	}
+
+	/**
+	 * Writes this sequence in its packed form: the length, the side-table and the
+	 * packed words.
+	 *
+	 * @param out - the stream to write to.
+	 * @throws IOException when the sequence cannot be written.
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(length);
+		out.writeInt(exceptionCount);
+		for (int i = 0; i < exceptionCount; i++) {
+			out.writeInt(exceptionPositions[i]);
+			out.writeChar(exceptionSymbols[i]);
+		}
+		for (long word : words) {
+			out.writeLong(word);
+		}
+	}
+
+	/**
+	 * Reads a sequence written by writeTo.
+	 *
+	 * @param in - the stream to read from.
+	 * @return the sequence that was read.
+	 * @throws IOException when the sequence cannot be read or is malformed.
+	 */
+	public static PackedSequence readFrom(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		int exceptionCount = in.readInt();
+		if (length < 0 || exceptionCount < 0 || exceptionCount > length) {
+			throw new IOException("Malformed packed sequence.");
+		}
+
+		PackedSequence sequence = new PackedSequence(length);
+		sequence.exceptionPositions = new int[exceptionCount];
+		sequence.exceptionSymbols = new char[exceptionCount];
+		int previous = -1;
+		for (int i = 0; i < exceptionCount; i++) {
+			int position = in.readInt();
+			if (position <= previous || position >= length) {
+				throw new IOException("Malformed packed sequence.");
+			}
+			sequence.exceptionPositions[i] = position;
+			sequence.exceptionSymbols[i] = in.readChar();
+			previous = position;
+		}
+		sequence.exceptionCount = exceptionCount;
+		for (int i = 0; i < sequence.words.length; i++) {
+			sequence.words[i] = in.readLong();
+		}
+		return sequence;
+	}
+
+	// Stores a nucleotide while the sequence is being built from left to right.
+	private void store(int index, char nucleotide) {
+		int code = encode(nucleotide);
+		if (code < 0) {
+			insertException(exceptionCount, index, nucleotide);
+		} else {
+			setCode(index, code);
+		}
+	}
+
+	int code(int index) {
+		return (int) (words[index >>> 5] >>> ((index & 31) << 1)) & 3;
+	}
+
+	private void setCode(int index, int code) {
+		int shift = (index & 31) << 1;
+		int word = index >>> 5;
+		words[word] = (words[word] & ~(3L << shift)) | ((long) code << shift);
+	}
+
+	private void insertException(int slot, int index, char nucleotide) {
+		if (exceptionCount == exceptionPositions.length) {
+			int capacity = Math.max(4, exceptionCount * 2);
+			exceptionPositions = Arrays.copyOf(exceptionPositions, capacity);
+			exceptionSymbols = Arrays.copyOf(exceptionSymbols, capacity);
+		}
+		System.arraycopy(exceptionPositions, slot, exceptionPositions, slot + 1, exceptionCount - slot);
+		System.arraycopy(exceptionSymbols, slot, exceptionSymbols, slot + 1, exceptionCount - slot);
+		exceptionPositions[slot] = index;
+		exceptionSymbols[slot] = nucleotide;
+		exceptionCount++;
+	}
+
+	private void removeException(int slot) {
+		System.arraycopy(exceptionPositions, slot + 1, exceptionPositions, slot, exceptionCount - slot - 1);
+		System.arraycopy(exceptionSymbols, slot + 1, exceptionSymbols, slot, exceptionCount - slot - 1);
+		exceptionCount--;
+	}
+}
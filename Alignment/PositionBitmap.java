@@ -0,0 +1,165 @@
+package alignment;
+
+import java.util.Arrays;
+
+/**
+ * The PositionBitmap class is an immutable, compressed set of non-negative
+ * positions in the style of a roaring bitmap. Positions are grouped by their
+ * upper 16 bits into chunks of 65536; a sparse chunk stores the lower 16 bits
+ * of its positions in a sorted char array, while a dense chunk stores them in
+ * a 65536-bit bitmap. A chunk thus never costs more than 8 KB, and a chunk with
+ * a handful of positions costs a few bytes.
+ */
+public class PositionBitmap {
+	// A chunk with more positions than this is stored as a bitmap.
+	static final int ARRAY_LIMIT = 4096;
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	// The upper 16 bits of the positions in each chunk, in increasing order.
+	private final int[] keys;
+	// The sorted lower 16 bits of a sparse chunk, or null for a dense chunk.
+	private final char[][] arrays;
+	// The bitmap of a dense chunk, or null for a sparse chunk.
+	private final long[][] bitmaps;
+	// The number of positions before each chunk, to compute ranks.
+	private final int[] offsets;
+	private final int cardinality;
+
+	private PositionBitmap(int[] keys, char[][] arrays, long[][] bitmaps, int[] offsets, int cardinality) {
+		this.keys = keys;
+		this.arrays = arrays;
+		this.bitmaps = bitmaps;
+		this.offsets = offsets;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * Creates a bitmap holding the given positions.
+	 *
+	 * @param positions - the positions, in strictly increasing order.
+	 * @param count - the number of positions to take from the array.
+	 * @return the bitmap with the positions.
+	 */
+	public static PositionBitmap of(int[] positions, int count) {
+		int chunks = 0;
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || (positions[i] >>> CHUNK_BITS) != (positions[i - 1] >>> CHUNK_BITS)) {
+				chunks++;
+			}
+		}
+
+		int[] keys = new int[chunks];
+		char[][] arrays = new char[chunks][];
+		long[][] bitmaps = new long[chunks][];
+		int[] offsets = new int[chunks];
+
+		int start = 0;
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			int key = positions[start] >>> CHUNK_BITS;
+			int end = start;
+			while (end < count && (positions[end] >>> CHUNK_BITS) == key) {
+				end++;
+			}
+
+			keys[chunk] = key;
+			offsets[chunk] = start;
+			if (end - start > ARRAY_LIMIT) {
+				long[] bitmap = new long[(1 << CHUNK_BITS) / Long.SIZE];
+				for (int i = start; i < end; i++) {
+					int low = positions[i] & CHUNK_MASK;
+					bitmap[low >>> 6] |= 1L << low;
+				}
+				bitmaps[chunk] = bitmap;
+			} else {
+				char[] array = new char[end - start];
+				for (int i = start; i < end; i++) {
+					array[i - start] = (char) (positions[i] & CHUNK_MASK);
+				}
+				arrays[chunk] = array;
+			}
+			start = end;
+		}
+		return new PositionBitmap(keys, arrays, bitmaps, offsets, count);
+	}
+
+	/**
+	 * Returns the number of positions in this bitmap.
+	 *
+	 * @return the number of positions.
+	 */
+	public int cardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * Returns true if this bitmap holds the given position.
+	 *
+	 * @param position - the position to look up.
+	 * @return true if the position is in this bitmap; otherwise false.
+	 */
+	public boolean contains(int position) {
+		return rank(position) >= 0;
+	}
+
+	/**
+	 * Returns the number of positions in this bitmap that are smaller than the
+	 * given position, if the bitmap holds it.
+	 *
+	 * @param position - the position to look up.
+	 * @return the rank of the position, or -1 if the bitmap does not hold it.
+	 */
+	public int rank(int position) {
+		if (position < 0) {
+			return -1;
+		}
+		int chunk = Arrays.binarySearch(keys, position >>> CHUNK_BITS);
+		if (chunk < 0) {
+			return -1;
+		}
+		int low = position & CHUNK_MASK;
+
+		if (arrays[chunk] != null) {
+			int slot = Arrays.binarySearch(arrays[chunk], (char) low);
+			return slot < 0 ? -1 : offsets[chunk] + slot;
+		}
+
+		long[] bitmap = bitmaps[chunk];
+		if ((bitmap[low >>> 6] & (1L << low)) == 0) {
+			return -1;
+		}
+		int rank = offsets[chunk];
+		for (int w = 0; w < low >>> 6; w++) {
+			rank += Long.bitCount(bitmap[w]);
+		}
+		return rank + Long.bitCount(bitmap[low >>> 6] & ((1L << low) - 1));
+	}
+
+	/**
+	 * Returns the positions in this bitmap.
+	 *
+	 * @return the positions in increasing order.
+	 */
+	public int[] toArray() {
+		int[] positions = new int[cardinality];
+		int next = 0;
+		for (int chunk = 0; chunk < keys.length; chunk++) {
+			int high = keys[chunk] << CHUNK_BITS;
+			if (arrays[chunk] != null) {
+				for (char low : arrays[chunk]) {
+					positions[next++] = high | low;
+				}
+			} else {
+				long[] bitmap = bitmaps[chunk];
+				for (int w = 0; w < bitmap.length; w++) {
+					long bits = bitmap[w];
+					while (bits != 0) {
+						positions[next++] = high | (w << 6) | Long.numberOfTrailingZeros(bits);
+						bits &= bits - 1;
+					}
+				}
+			}
+		}
+		return positions;
+	}
+}
@@ -1,45 +1,77 @@
 package alignment;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
 public class SNPAdapter implements IAlignment{
 
 	public String alignmentToString(Alignment alignment) throws ArrayIndexOutOfBoundsException {
-			
-		String alignmentStr = "";
-		
-		Genome referenceGenome = alignment.getTopGenome();
-		alignmentStr += referenceGenome.toString();
-		
-		AlignmentIterator iterator = alignment.iterator();
-		iterator.next();
-
-		while (iterator.hasNext()) {
-			Genome genome = iterator.next();
-			alignmentStr += genome.getId() + "\n";
-			alignmentStr += genomeToSNPString(genome, referenceGenome)  + "\n";			
+		StringWriter writer = new StringWriter();
+		try {
+			writeAlignment(alignment, writer);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
 		}
-		
-		return alignmentStr;
+		return writer.toString();
 	}
-	
+
 	/**
+	 * Writes the SNP view of an alignment from its SNPIndex, so that only the
+	 * variable columns are visited.
+	 */
+	@Override
+	public void writeAlignment(Alignment alignment, Writer writer) throws IOException, ArrayIndexOutOfBoundsException {
+		writeIndex(alignment, writer);
+	}
+
+	/**
+	 * Writes the SNP view of an alignment, as writeAlignment does, and returns
+	 * the SNPIndex it was written from, which also answers the difference score
+	 * and the per-column queries of the alignment without comparing the genomes
+	 * again.
 	 * 
-	 * @param genome
-	 * @param referenceGenome
+	 * @param alignment - the alignment to write.
+	 * @param writer - the writer that receives the SNP view.
+	 * @return the SNP index of the alignment.
+	 * @throws IOException when the writer fails.
+	 * @throws ArrayIndexOutOfBoundsException when a genome is shorter than the
+	 * reference genome.
 	 */
-	private String genomeToSNPString(Genome genome, Genome referenceGenome) {
-		String str = "";
-		int referenceLength = referenceGenome.size();
-		for (int i = 0; i < referenceLength; i++) {
-			if (genome.getNucleotide(i) == referenceGenome.getNucleotide(i)) {
-				str += ".";
-			}else {
-				str += genome.getNucleotide(i);					
-			}
-		}
-		str += "\n";
-		
-		return str;
+	public SNPIndex writeIndex(Alignment alignment, Writer writer) throws IOException, ArrayIndexOutOfBoundsException {
+		SNPIndex index = new SNPIndex(alignment);
+		index.writeTo(writer);
+		return index;
 	}
 
+	/**
+	 * Returns the SNP view of a single genome, i.e. its identifier followed by
+	 * its nucleotides where every nucleotide equal to the reference is a dot.
+	 * 
+	 * @param genome - the genome to convert.
+	 * @param referenceGenome - the reference genome of the alignment.
+	 * @return the SNP view of the genome as it appears in alignmentToString.
+	 */
+	public String genomeToString(Genome genome, Genome referenceGenome) {
+		StringWriter writer = new StringWriter();
+		try {
+			writeGenome(genome, referenceGenome, writer);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return writer.toString();
+	}
 
+	/**
+	 * Writes the SNP view of a single genome, as returned by genomeToString.
+	 * 
+	 * @param genome - the genome to write.
+	 * @param referenceGenome - the reference genome of the alignment.
+	 * @param writer - the writer that receives the SNP view.
+	 * @throws IOException when the writer fails.
+	 */
+	public void writeGenome(Genome genome, Genome referenceGenome, Writer writer) throws IOException {
+		SNPIndex.writeGenome(genome, referenceGenome, writer);
+	}
 }
@@ -0,0 +1,283 @@
+package alignment;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The SNPIndex class is a columnar view of the differences between the genomes
+ * of an alignment and its reference (topmost) genome. It is computed once: for
+ * every genome, the columns at which it differs from the reference are kept in
+ * a compressed PositionBitmap together with the nucleotides found there, and
+ * for every variable column (a column at which some genome differs) the genomes
+ * that differ at it are listed.
+ *
+ * Since most columns of an alignment are conserved, the SNP view, the
+ * difference score and per-column queries are answered by visiting only the
+ * variable columns. Genomes are found by the key of their identifier in the
+ * dictionary of the alignment. The index is a snapshot: later edits to the
+ * alignment are not reflected in it.
+ */
+public class SNPIndex {
+	private final Genome referenceGenome;
+	private final int referenceLength;
+	private final GenomeDictionary dictionary;
+	// The other genomes, in the order of the alignment, with their keys.
+	private final Genome[] genomes;
+	private final int[] keys;
+	// The index of each genome in 'genomes' by its key.
+	private final SlotTable genomeIndexes;
+	// For each genome: the columns at which it differs from the reference.
+	private final PositionBitmap[] differences;
+	// For each genome: its nucleotides at those columns, in the same order.
+	private final char[][] symbols;
+	private final PositionBitmap variableColumns;
+	// The genomes that differ at each variable column, as indexes into 'genomes':
+	// those of the variable column of rank r are in [columnOffsets[r], columnOffsets[r + 1]).
+	private final int[] columnOffsets;
+	private final int[] columnGenomes;
+	private final int score;
+
+	/**
+	 * Computes the SNP index of an alignment.
+	 *
+	 * @param alignment - the alignment to index.
+	 * @throws ArrayIndexOutOfBoundsException when a genome is shorter than the
+	 * reference genome.
+	 */
+	public SNPIndex(Alignment alignment) throws ArrayIndexOutOfBoundsException {
+		referenceGenome = alignment.getTopGenome();
+		referenceLength = referenceGenome.size();
+		dictionary = alignment.getDictionary();
+
+		ArrayList<Genome> others = new ArrayList<>();
+		for (Genome genome : alignment) {
+			if (genome != referenceGenome) {
+				others.add(genome);
+			}
+		}
+
+		int count = others.size();
+		genomes = others.toArray(new Genome[0]);
+		keys = new int[count];
+		genomeIndexes = new SlotTable();
+		differences = new PositionBitmap[count];
+		symbols = new char[count][];
+		int[][] positions = new int[count][];
+		BitSet variable = new BitSet(referenceLength);
+		int total = 0;
+
+		for (int g = 0; g < count; g++) {
+			Genome genome = genomes[g];
+			positions[g] = differencePositions(genome, referenceGenome);
+			keys[g] = dictionary.lookup(genome.getId());
+			genomeIndexes.put(keys[g], g);
+			differences[g] = PositionBitmap.of(positions[g], positions[g].length);
+			symbols[g] = new char[positions[g].length];
+			for (int i = 0; i < positions[g].length; i++) {
+				symbols[g][i] = genome.getNucleotide(positions[g][i]);
+				variable.set(positions[g][i]);
+			}
+			total += positions[g].length;
+		}
+		score = total;
+
+		int[] columns = variable.stream().toArray();
+		variableColumns = PositionBitmap.of(columns, columns.length);
+
+		// Invert the per-genome differences into per-column lists of genomes.
+		columnOffsets = new int[columns.length + 1];
+		for (int[] genomePositions : positions) {
+			for (int position : genomePositions) {
+				columnOffsets[Arrays.binarySearch(columns, position) + 1]++;
+			}
+		}
+		for (int r = 0; r < columns.length; r++) {
+			columnOffsets[r + 1] += columnOffsets[r];
+		}
+		columnGenomes = new int[total];
+		int[] next = Arrays.copyOf(columnOffsets, columns.length);
+		for (int g = 0; g < count; g++) {
+			for (int position : positions[g]) {
+				columnGenomes[next[Arrays.binarySearch(columns, position)]++] = g;
+			}
+		}
+	}
+
+	/**
+	 * Returns the reference genome the other genomes were compared with.
+	 *
+	 * @return the reference genome.
+	 */
+	public Genome getReferenceGenome() {
+		return referenceGenome;
+	}
+
+	/**
+	 * Returns the dictionary of the indexed alignment, which maps the keys
+	 * returned by getGenomesDifferingAt to identifiers.
+	 *
+	 * @return the dictionary of the alignment.
+	 */
+	public GenomeDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns the columns at which at least one genome differs from the
+	 * reference genome.
+	 *
+	 * @return the variable columns.
+	 */
+	public PositionBitmap getVariableColumns() {
+		return variableColumns;
+	}
+
+	/**
+	 * Returns the difference score of the alignment, i.e. the total number of
+	 * nucleotides that differ from the reference genome.
+	 *
+	 * @return the difference score.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Returns the number of nucleotides of a genome that differ from the
+	 * reference genome.
+	 *
+	 * @param genomeId - the identifier of the genome.
+	 * @return the difference score of the genome, or 0 for the reference genome
+	 * or an unknown identifier.
+	 */
+	public int getGenomeScore(String genomeId) {
+		int g = genomeIndexes.get(dictionary.lookup(genomeId));
+		return g < 0 ? 0 : differences[g].cardinality();
+	}
+
+	/**
+	 * Returns the columns at which a genome differs from the reference genome.
+	 *
+	 * @param genomeId - the identifier of the genome.
+	 * @return the differing columns, or null for the reference genome or an
+	 * unknown identifier.
+	 */
+	public PositionBitmap getDifferences(String genomeId) {
+		int g = genomeIndexes.get(dictionary.lookup(genomeId));
+		return g < 0 ? null : differences[g];
+	}
+
+	/**
+	 * Returns the genomes that hold a different nucleotide than the reference
+	 * genome at the given column.
+	 *
+	 * @param column - the zero-based column.
+	 * @return the keys of the genomes in the dictionary of the alignment, in the
+	 * order of the alignment.
+	 */
+	public int[] getGenomesDifferingAt(int column) {
+		int rank = variableColumns.rank(column);
+		if (rank < 0) {
+			return new int[0];
+		}
+		int[] result = new int[columnOffsets[rank + 1] - columnOffsets[rank]];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = keys[columnGenomes[columnOffsets[rank] + i]];
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the SNP view of the alignment, as returned by
+	 * SNPAdapter.alignmentToString.
+	 *
+	 * @param writer - the writer that receives the SNP view.
+	 * @throws IOException when the writer fails.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		referenceGenome.writeTo(writer);
+		for (int g = 0; g < genomes.length; g++) {
+			writeGenome(writer, genomes[g].getId(), referenceLength, differences[g].toArray(), symbols[g]);
+		}
+	}
+
+	/**
+	 * Writes the SNP view of a single genome without building an index, as
+	 * returned by SNPAdapter.genomeToString.
+	 *
+	 * @param genome - the genome to write.
+	 * @param referenceGenome - the reference genome of the alignment.
+	 * @param writer - the writer that receives the SNP view.
+	 * @throws IOException when the writer fails.
+	 * @throws ArrayIndexOutOfBoundsException when the genome is shorter than the
+	 * reference genome.
+	 */
+	public static void writeGenome(Genome genome, Genome referenceGenome, Writer writer)
+			throws IOException, ArrayIndexOutOfBoundsException {
+		int[] positions = differencePositions(genome, referenceGenome);
+		char[] nucleotides = new char[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			nucleotides[i] = genome.getNucleotide(positions[i]);
+		}
+		writeGenome(writer, genome.getId(), referenceGenome.size(), positions, nucleotides);
+	}
+
+	// Writes the identifier of a genome and a row of dots, except for the given
+	// nucleotides at the given positions.
+	private static void writeGenome(Writer writer, String id, int length, int[] positions, char[] nucleotides)
+			throws IOException {
+		writer.write(id);
+		writer.write('\n');
+
+		char[] buffer = new char[Math.min(Genome.WRITE_BUFFER_SIZE, length)];
+		int next = 0;
+		for (int from = 0; from < length; from += buffer.length) {
+			int to = Math.min(from + buffer.length, length);
+			Arrays.fill(buffer, 0, to - from, '.');
+			while (next < positions.length && positions[next] < to) {
+				buffer[positions[next] - from] = nucleotides[next];
+				next++;
+			}
+			writer.write(buffer, 0, to - from);
+		}
+		writer.write("\n\n");
+	}
+
+	/**
+	 * Returns the columns in [0, length of the reference) at which a genome
+	 * differs from the reference genome.
+	 */
+	static int[] differencePositions(Genome genome, Genome referenceGenome) throws ArrayIndexOutOfBoundsException {
+		ISequence sequence = genome.getSequence();
+		ISequence reference = referenceGenome.getSequence();
+		int length = reference.length();
+		if (sequence.length() < length) {
+			throw new ArrayIndexOutOfBoundsException(sequence.length());
+		}
+		if (sequence instanceof PackedSequence && reference instanceof PackedSequence) {
+			return ((PackedSequence) sequence).differencePositions((PackedSequence) reference, length);
+		}
+
+		int[] positions = new int[16];
+		int count = 0;
+		char[] buffer = new char[Math.min(Genome.WRITE_BUFFER_SIZE, length)];
+		char[] referenceBuffer = new char[buffer.length];
+		for (int from = 0; from < length; from += buffer.length) {
+			int to = Math.min(from + buffer.length, length);
+			sequence.getNucleotides(from, to, buffer, 0);
+			reference.getNucleotides(from, to, referenceBuffer, 0);
+			for (int i = 0; i < to - from; i++) {
+				if (buffer[i] != referenceBuffer[i]) {
+					if (count == positions.length) {
+						positions = Arrays.copyOf(positions, count * 2);
+					}
+					positions[count++] = from + i;
+				}
+			}
+		}
+		return Arrays.copyOf(positions, count);
+	}
+}
@@ -0,0 +1,241 @@
+package alignment;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The ScoreCache class keeps the difference score of every genome of an
+ * alignment, and their total, up to date while the genomes are edited. It
+ * listens to the genomes of the alignment: a changed nucleotide adjusts the
+ * score of its genome by at most one, a batch of changed nucleotides by the
+ * change the editor computed along the way, a genome that gets an entirely new
+ * sequence is rescored on the next read, and any change to the reference
+ * (topmost) genome invalidates all scores.
+ */
+class ScoreCache implements IGenomeListener {
+	private final Alignment alignment;
+	// The reference genome against which the cached scores were computed.
+	private Genome referenceGenome;
+	// The cached score of every non-reference genome that is up to date.
+	private final HashMap<Genome, Integer> genomeScores;
+	// The genomes whose score must be recomputed before it can be read.
+	private final HashSet<Genome> staleGenomes;
+	// The sum of the scores in genomeScores.
+	private int totalScore;
+	// Whether the cached scores were computed against the current reference.
+	private boolean valid;
+
+	ScoreCache(Alignment alignment) {
+		this.alignment = alignment;
+		this.genomeScores = new HashMap<>();
+		this.staleGenomes = new HashSet<>();
+		this.valid = false;
+	}
+
+	/**
+	 * Returns the total difference score, computing only the scores that are not
+	 * up to date.
+	 *
+	 * @param pool - the pool on which to compute a full rescan; may be null.
+	 * @return the difference score of the alignment.
+	 * @throws ArrayIndexOutOfBoundsException when there is a variance in the
+	 * lengths of some the genomes in the alignment.
+	 */
+	synchronized int getTotalScore(ForkJoinPool pool) throws ArrayIndexOutOfBoundsException {
+		refresh(pool);
+		return totalScore;
+	}
+
+	/**
+	 * Returns the difference score of a single genome of the alignment.
+	 *
+	 * @param genome - a genome of the alignment.
+	 * @return the difference score of the genome; 0 for the reference genome.
+	 * @throws ArrayIndexOutOfBoundsException when there is a variance in the
+	 * lengths of some the genomes in the alignment.
+	 */
+	synchronized int getGenomeScore(Genome genome) throws ArrayIndexOutOfBoundsException {
+		refresh(null);
+		Integer score = genomeScores.get(genome);
+		return score == null ? 0 : score;
+	}
+
+	@Override
+	public synchronized void nucleotideChanged(Genome genome, int index, char oldNucleotide, char newNucleotide) {
+		if (!valid || staleGenomes.contains(genome)) {
+			return;
+		}
+		if (genome == referenceGenome) {
+			invalidate();
+			return;
+		}
+
+		Integer score = genomeScores.get(genome);
+		if (score == null || index >= referenceGenome.size()) {
+			return;
+		}
+
+		char reference = referenceGenome.getNucleotide(index);
+		int delta = (newNucleotide != reference ? 1 : 0) - (oldNucleotide != reference ? 1 : 0);
+		if (delta != 0) {
+			genomeScores.put(genome, score + delta);
+			totalScore += delta;
+		}
+	}
+
+	@Override
+	public synchronized void nucleotidesChanged(Genome genome, Genome referenceGenome, int scoreDelta) {
+		if (!valid || staleGenomes.contains(genome)) {
+			return;
+		}
+		if (genome == this.referenceGenome || referenceGenome != this.referenceGenome) {
+			sequenceChanged(genome);
+			return;
+		}
+
+		Integer score = genomeScores.get(genome);
+		if (score != null && scoreDelta != 0) {
+			genomeScores.put(genome, score + scoreDelta);
+			totalScore += scoreDelta;
+		}
+	}
+
+	@Override
+	public synchronized void sequenceChanged(Genome genome) {
+		if (!valid) {
+			return;
+		}
+		if (genome == referenceGenome) {
+			invalidate();
+		} else {
+			markStale(genome);
+		}
+	}
+
+	/**
+	 * Takes over the scores of another cache, for an alignment whose genomes are
+	 * copies of those of the other cache's alignment.
+	 *
+	 * @param source - the cache to copy.
+	 * @param clones - maps each genome of the other alignment to its copy.
+	 */
+	void copyScores(ScoreCache source, Map<Genome, Genome> clones) {
+		synchronized (source) {
+			synchronized (this) {
+				invalidate();
+				if (!source.valid) {
+					return;
+				}
+				referenceGenome = clones.get(source.referenceGenome);
+				for (Map.Entry<Genome, Integer> entry : source.genomeScores.entrySet()) {
+					genomeScores.put(clones.get(entry.getKey()), entry.getValue());
+				}
+				for (Genome genome : source.staleGenomes) {
+					staleGenomes.add(clones.get(genome));
+				}
+				totalScore = source.totalScore;
+				valid = true;
+			}
+		}
+	}
+
+	/**
+	 * Called after a genome was added to the alignment.
+	 */
+	synchronized void genomeAdded(Genome genome) {
+		if (!valid) {
+			return;
+		}
+		if (genome == alignment.getTopGenome()) {
+			invalidate();
+		} else {
+			markStale(genome);
+		}
+	}
+
+	/**
+	 * Called after a genome was removed from the alignment.
+	 */
+	synchronized void genomeRemoved(Genome genome) {
+		if (!valid) {
+			return;
+		}
+		if (genome == referenceGenome) {
+			invalidate();
+		} else if (!staleGenomes.remove(genome)) {
+			Integer score = genomeScores.remove(genome);
+			if (score != null) {
+				totalScore -= score;
+			}
+		}
+	}
+
+	private void markStale(Genome genome) {
+		Integer score = genomeScores.remove(genome);
+		if (score != null) {
+			totalScore -= score;
+		}
+		staleGenomes.add(genome);
+	}
+
+	private void invalidate() {
+		valid = false;
+		referenceGenome = null;
+		genomeScores.clear();
+		staleGenomes.clear();
+		totalScore = 0;
+	}
+
+	// Brings all cached scores up to date.
+	private void refresh(ForkJoinPool pool) {
+		if (!valid) {
+			rescan(pool);
+			return;
+		}
+
+		Iterator<Genome> iterator = staleGenomes.iterator();
+		while (iterator.hasNext()) {
+			Genome genome = iterator.next();
+			int score = genome.getScore(referenceGenome);
+			genomeScores.put(genome, score);
+			totalScore += score;
+			iterator.remove();
+		}
+	}
+
+	// Computes the scores of all genomes against the topmost genome.
+	private void rescan(ForkJoinPool pool) {
+		Genome reference = alignment.getTopGenome();
+		Genome[] others = new Genome[alignment.size() - 1];
+		AlignmentIterator iterator = alignment.iterator();
+
+		// Skip the reference genome (the first/topmost genome).
+		iterator.next();
+		for (int i = 0; iterator.hasNext(); i++) {
+			others[i] = iterator.next();
+		}
+
+		int[] scores = new int[others.length];
+		int total = 0;
+		if (pool != null && others.length > 0) {
+			total = pool.invoke(new ScoreTask(others, scores, reference, 0, others.length, 0, reference.size()));
+		} else {
+			for (int i = 0; i < others.length; i++) {
+				scores[i] = others[i].getScore(reference);
+				total += scores[i];
+			}
+		}
+
+		genomeScores.clear();
+		for (int i = 0; i < others.length; i++) {
+			genomeScores.put(others[i], scores[i]);
+		}
+		staleGenomes.clear();
+		referenceGenome = reference;
+		totalScore = total;
+		valid = true;
+	}
+}
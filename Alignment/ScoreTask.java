@@ -0,0 +1,83 @@
+package alignment;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The ScoreTask class computes the difference score of a set of genomes
+ * against a reference genome on a ForkJoinPool. A task splits its genomes in
+ * halves until the remaining work is small; a single genome that is very long
+ * is split further into column ranges. Since the partial scores are integers,
+ * the sum equals the sequential score exactly. When a scores array is given,
+ * the score of each genome is also stored at the genome's index.
+ */
+class ScoreTask extends RecursiveTask<Integer> {
+	/**
+	 * A default serial version ID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	// The number of bases below which a task is computed directly.
+	static final int SEQUENTIAL_THRESHOLD = 1 << 18;
+
+	private final Genome[] genomes;
+	private final Genome referenceGenome;
+	private final int low;
+	private final int high;
+	private final int from;
+	private final int to;
+	// Receives the score of each genome; may be null.
+	private final int[] scores;
+
+	/**
+	 * Creates a task for the genomes in [low, high) over the columns [from, to).
+	 */
+	ScoreTask(Genome[] genomes, int[] scores, Genome referenceGenome, int low, int high, int from, int to) {
+		this.genomes = genomes;
+		this.scores = scores;
+		this.referenceGenome = referenceGenome;
+		this.low = low;
+		this.high = high;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected Integer compute() {
+		int columns = to - from;
+		int count = high - low;
+
+		if (count > 1 && (long) count * columns > SEQUENTIAL_THRESHOLD) {
+			int middle = (low + high) >>> 1;
+			ScoreTask left = new ScoreTask(genomes, scores, referenceGenome, low, middle, from, to);
+			ScoreTask right = new ScoreTask(genomes, scores, referenceGenome, middle, high, from, to);
+			left.fork();
+			return right.compute() + left.join();
+		}
+
+		if (count == 1 && columns > SEQUENTIAL_THRESHOLD) {
+			// Keep the split on a word boundary of packed sequences.
+			int middle = from + (columns / 2 & -PackedSequence.BASES_PER_WORD);
+			ScoreTask left = new ScoreTask(genomes, scores, referenceGenome, low, high, from, middle);
+			ScoreTask right = new ScoreTask(genomes, scores, referenceGenome, low, high, middle, to);
+			left.fork();
+			int diffScore = right.compute() + left.join();
+			record(low, diffScore);
+			return diffScore;
+		}
+
+		int diffScore = 0;
+		for (int i = low; i < high; i++) {
+			int score = genomes[i].getScore(referenceGenome, from, to);
+			record(i, score);
+			diffScore += score;
+		}
+		return diffScore;
+	}
+
+	// Stores the score of a genome when this task covers all of its columns.
+	private void record(int index, int score) {
+		if (scores != null && from == 0 && to == referenceGenome.size()) {
+			scores[index] = score;
+		}
+	}
+}
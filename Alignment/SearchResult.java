@@ -0,0 +1,219 @@
+package alignment;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The SearchResult class holds the outcome of searching an alignment for a
+ * batch of patterns: for every pattern, the genomes in which it occurs (in the
+ * order of the alignment) and the start positions of its occurrences in each
+ * of those genomes. Genomes are recorded by the key of their identifier in a
+ * GenomeDictionary (usually the one of the searched alignment), and the
+ * positions in int arrays, so recording a hit neither hashes a header nor
+ * boxes a position. Keys are mapped to identifiers only when they are read.
+ */
+public class SearchResult {
+	private final List<String> patterns;
+	// The identifiers of the keys of the genomes.
+	private final GenomeDictionary dictionary;
+	// For each pattern: the genomes in which it occurs, with their positions.
+	private final Hits[] hits;
+
+	/**
+	 * The Hits class holds the genomes in which one pattern occurs, in the order
+	 * they were added, each with the start positions of its occurrences.
+	 */
+	private static class Hits {
+		// The keys of the genomes, and of the same genomes as a set.
+		int[] keys = new int[4];
+		final BitSet members = new BitSet();
+		// The positions in each genome, of which the first counts[g] are used.
+		int[][] positions = new int[4][];
+		int[] counts = new int[4];
+		int size;
+
+		void add(int key, int position) {
+			int g;
+			if (size > 0 && keys[size - 1] == key) {
+				// The hits of a genome are usually added together.
+				g = size - 1;
+			} else if (members.get(key)) {
+				g = indexOf(key);
+			} else {
+				g = append(key);
+			}
+			if (counts[g] == positions[g].length) {
+				positions[g] = Arrays.copyOf(positions[g], counts[g] * 2);
+			}
+			positions[g][counts[g]++] = position;
+		}
+
+		int indexOf(int key) {
+			if (key < 0 || !members.get(key)) {
+				return -1;
+			}
+			for (int g = size - 1; g >= 0; g--) {
+				if (keys[g] == key) {
+					return g;
+				}
+			}
+			return -1;
+		}
+
+		private int append(int key) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				positions = Arrays.copyOf(positions, size * 2);
+				counts = Arrays.copyOf(counts, size * 2);
+			}
+			keys[size] = key;
+			positions[size] = new int[4];
+			members.set(key);
+			return size++;
+		}
+	}
+
+	/**
+	 * Creates an empty result for the given patterns.
+	 *
+	 * @param patterns - the patterns that are searched.
+	 * @param dictionary - the dictionary of the keys of the genomes.
+	 */
+	public SearchResult(List<String> patterns, GenomeDictionary dictionary) {
+		this.patterns = patterns;
+		this.dictionary = dictionary;
+		this.hits = new Hits[patterns.size()];
+		for (int i = 0; i < hits.length; i++) {
+			hits[i] = new Hits();
+		}
+	}
+
+	/**
+	 * Records an occurrence of a pattern in a genome.
+	 *
+	 * @param pattern - the index of the pattern.
+	 * @param genomeKey - the key of the identifier of the genome in the dictionary.
+	 * @param position - the start position of the occurrence.
+	 * @throws IndexOutOfBoundsException when the key is negative.
+	 */
+	public void addHit(int pattern, int genomeKey, int position) throws IndexOutOfBoundsException {
+		hits[pattern].add(genomeKey, position);
+	}
+
+	/**
+	 * Returns the patterns that were searched.
+	 *
+	 * @return the patterns, in the order they were given.
+	 */
+	public List<String> getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * Returns the dictionary that maps the keys of the genomes to their
+	 * identifiers.
+	 *
+	 * @return the dictionary of the keys.
+	 */
+	public GenomeDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns the keys of the genomes in which the pattern at the given index
+	 * occurs.
+	 *
+	 * @param pattern - the index of the pattern.
+	 * @return the keys of the matching genomes in the dictionary, in the order
+	 * of the alignment.
+	 */
+	public int[] getGenomeKeys(int pattern) {
+		return Arrays.copyOf(hits[pattern].keys, hits[pattern].size);
+	}
+
+	/**
+	 * Returns the set of keys of the genomes in which the pattern at the given
+	 * index occurs, e.g. to intersect the results of several patterns.
+	 *
+	 * @param pattern - the index of the pattern.
+	 * @return the keys of the matching genomes in the dictionary.
+	 */
+	public BitSet getGenomeSet(int pattern) {
+		return (BitSet) hits[pattern].members.clone();
+	}
+
+	/**
+	 * Returns the identifiers of the genomes in which the pattern at the given
+	 * index occurs.
+	 *
+	 * @param pattern - the index of the pattern.
+	 * @return the matching genome identifiers, in the order of the alignment.
+	 */
+	public ArrayList<String> getGenomeIds(int pattern) {
+		Hits patternHits = hits[pattern];
+		ArrayList<String> ids = new ArrayList<>(patternHits.size);
+		for (int g = 0; g < patternHits.size; g++) {
+			ids.add(dictionary.getId(patternHits.keys[g]));
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the identifiers of the genomes in which the given pattern occurs.
+	 *
+	 * @param pattern - the pattern.
+	 * @return the matching genome identifiers, or an empty list if the pattern
+	 * was not part of the search.
+	 */
+	public ArrayList<String> getGenomeIds(String pattern) {
+		int index = patterns.indexOf(pattern);
+		return index < 0 ? new ArrayList<>() : getGenomeIds(index);
+	}
+
+	/**
+	 * Returns the start positions of the occurrences of a pattern in a genome.
+	 *
+	 * @param pattern - the index of the pattern.
+	 * @param genomeKey - the key of the identifier of the genome in the dictionary.
+	 * @return the start positions in increasing order; empty if there are none.
+	 */
+	public List<Integer> getPositions(int pattern, int genomeKey) {
+		Hits patternHits = hits[pattern];
+		int g = patternHits.indexOf(genomeKey);
+		if (g < 0) {
+			return Collections.emptyList();
+		}
+		int[] positions = patternHits.positions[g];
+		int count = patternHits.counts[g];
+		return new AbstractList<Integer>() {
+			@Override
+			public Integer get(int index) {
+				if (index < 0 || index >= count) {
+					throw new IndexOutOfBoundsException(index);
+				}
+				return positions[index];
+			}
+
+			@Override
+			public int size() {
+				return count;
+			}
+		};
+	}
+
+	/**
+	 * Returns the start positions of the occurrences of a pattern in a genome.
+	 *
+	 * @param pattern - the index of the pattern.
+	 * @param genomeId - the identifier of the genome.
+	 * @return the start positions in increasing order; empty if there are none
+	 * or no genome has the identifier.
+	 */
+	public List<Integer> getPositions(int pattern, String genomeId) {
+		return getPositions(pattern, dictionary.lookup(genomeId));
+	}
+}
@@ -0,0 +1,134 @@
+package alignment;
+
+import java.util.Arrays;
+
+/**
+ * The SlotTable class maps the keys of the genomes of one alignment (see
+ * GenomeDictionary) to their slots in the array of the alignment. It is an
+ * open-addressing hash table of ints with linear probing, so its size depends
+ * on the number of genomes in the alignment rather than on the number of keys
+ * the dictionary has ever given out, and a lookup neither boxes nor follows a
+ * pointer.
+ */
+final class SlotTable {
+	private static final int EMPTY = -1;
+
+	// The keys, or EMPTY; the length is a power of two, at most half full.
+	private int[] keys;
+	// The slot of the key at the same position in 'keys'.
+	private int[] slots;
+	private int size;
+
+	SlotTable() {
+		keys = new int[16];
+		slots = new int[16];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	SlotTable(SlotTable table) {
+		keys = table.keys.clone();
+		slots = table.slots.clone();
+		size = table.size;
+	}
+
+	/**
+	 * Returns the slot of a key.
+	 *
+	 * @param key - a key of the GenomeDictionary.
+	 * @return the slot, or -1 when the table has no slot for the key.
+	 */
+	int get(int key) {
+		if (key < 0) {
+			return -1;
+		}
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return slots[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Sets the slot of a key.
+	 *
+	 * @param key - a key of the GenomeDictionary; negative keys are ignored.
+	 * @param slot - the slot of the key.
+	 */
+	void put(int key, int slot) {
+		if (key < 0) {
+			return;
+		}
+		if (2 * (size + 1) > keys.length) {
+			resize(keys.length * 2);
+		}
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (keys[i] == EMPTY) {
+			keys[i] = key;
+			size++;
+		}
+		slots[i] = slot;
+	}
+
+	/**
+	 * Removes the slot of a key.
+	 *
+	 * @param key - a key of the GenomeDictionary.
+	 */
+	void remove(int key) {
+		if (key < 0) {
+			return;
+		}
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != key) {
+			if (keys[i] == EMPTY) {
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		size--;
+
+		// Move the following entries of the run back, so that every key stays
+		// reachable from its home position without tombstones.
+		int gap = i;
+		for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				slots[gap] = slots[j];
+				gap = j;
+			}
+		}
+		keys[gap] = EMPTY;
+
+		if (keys.length > 16 && 8 * size < keys.length) {
+			resize(keys.length / 2);
+		}
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = new int[capacity];
+		slots = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				put(oldKeys[i], oldSlots[i]);
+			}
+		}
+	}
+
+	// Spreads the keys over the table.
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
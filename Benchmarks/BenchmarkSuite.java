@@ -0,0 +1,127 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import alignment.Alignment;
+import alignment.Genome;
+import alignment.PackedSequence;
+import alignment.SNPAdapter;
+import alignment.StandardAlignment;
+import dataio.DataReader;
+
+/**
+ * Runs the hot paths of the alignment core on a generated alignment. The size
+ * of the alignment is set with the genomes, length and mutationRate
+ * parameters. The JSON results of JMH are the baseline that is compared
+ * between releases:
+ *
+ * mvn -B -Pbenchmarks package
+ * java -jar target/benchmarks.jar BenchmarkSuite -p genomes=1000 -p length=10000
+ * -rf json -rff benchmark-baseline.json
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkSuite {
+	@Param("1000")
+	public int genomes;
+
+	@Param("10000")
+	public int length;
+
+	@Param("0.01")
+	public double mutationRate;
+
+	private Alignment alignment;
+	private Genome referenceGenome;
+	private String pattern;
+	private String newPattern;
+	private File fasta;
+	private DataReader reader;
+	private SNPAdapter snpAdapter;
+
+	@Setup
+	public void setUp() throws IOException {
+		ArrayList<String> sequences = ScoreBenchmark.generate(genomes, length, mutationRate, new Random(42));
+		alignment = new StandardAlignment();
+		for (int i = 0; i < sequences.size(); i++) {
+			Genome genome = new Genome(">genome" + i);
+			genome.setNucleotides(new PackedSequence(sequences.get(i)));
+			alignment.addGenome(genome);
+		}
+		referenceGenome = alignment.getTopGenome();
+		pattern = sequences.get(0).substring(length / 2, length / 2 + Math.min(12, length / 2));
+		newPattern = new StringBuilder(pattern).reverse().toString();
+
+		fasta = File.createTempFile("benchmark-suite", ".fasta");
+		FastaParseBenchmark.write(fasta, sequences);
+		reader = DataReader.getInstance();
+		snpAdapter = new SNPAdapter();
+	}
+
+	@TearDown
+	public void tearDown() {
+		fasta.delete();
+	}
+
+	@Benchmark
+	public long getScore() {
+		long total = 0;
+		for (Genome genome : alignment) {
+			total += genome.getScore(referenceGenome);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long getIdWithSequence() {
+		long found = 0;
+		for (Genome genome : alignment) {
+			found += genome.getIdWithSequence(pattern) == null ? 0 : 1;
+		}
+		return found;
+	}
+
+	// Each operation edits a fresh copy; the copy shares the nucleotides, so
+	// this includes copying the storage of every edited genome.
+	@Benchmark
+	public char replaceSubSequences() {
+		Alignment copy = alignment.clone();
+		for (Genome genome : copy) {
+			genome.replaceSubSequences(pattern, newPattern);
+		}
+		return copy.getTopGenome().getNucleotide(length / 2);
+	}
+
+	// Run from a directory whose config.properties sets 'alignmentcache', this
+	// measures a hit of the alignment cache instead of parsing the file.
+	@Benchmark
+	public int readAlignment() throws Exception {
+		return reader.readAlignment(fasta.getPath()).getTopGenome().size();
+	}
+
+	@Benchmark
+	public int alignmentToString() {
+		return snpAdapter.alignmentToString(alignment).length();
+	}
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import alignment.Alignment;
+import alignment.Genome;
+import alignment.StandardAlignment;
+import dataio.FastaReader;
+import dataio.MappedFastaLoader;
+import dataio.ParallelFastaParser;
+
+/**
+ * Measures the throughput, in MB/s, of the sequential FASTA reader against the
+ * memory-mapped loader and the parallel parser with an increasing number of
+ * threads. Every loader must return the same genomes in the same order.
+ *
+ * Usage: java benchmarks.FastaParseBenchmark [genomes] [length] [maxThreads]
+ */
+public class FastaParseBenchmark {
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int MEASURED_ROUNDS = 5;
+	private static final int LINE_WIDTH = 70;
+
+	public static void main(String[] args) throws IOException {
+		int genomeCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		File file = File.createTempFile("parse-benchmark", ".fasta");
+		file.deleteOnExit();
+		write(file, ScoreBenchmark.generate(genomeCount, length, 0.05, new Random(42)));
+		String filename = file.getPath();
+		double megabytes = file.length() / (1024.0 * 1024.0);
+		System.out.printf("Genomes: %d, length: %d, file: %.1f MB%n", genomeCount, length, megabytes);
+
+		Alignment expected = readSequential(filename);
+		report("FastaReader", megabytes, expected, () -> readSequential(filename));
+		report("MappedFastaLoader", megabytes, expected, () -> new MappedFastaLoader(true).load(filename));
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			ParallelFastaParser parser = new ParallelFastaParser(threads, true);
+			report("ParallelFastaParser x" + threads, megabytes, expected, () -> parser.parse(filename));
+			parser.shutdown();
+		}
+	}
+
+	interface Loader {
+		Alignment load() throws IOException;
+	}
+
+	private static Alignment readSequential(String filename) throws IOException {
+		Alignment alignment = new StandardAlignment();
+		try (FastaReader reader = new FastaReader(new BufferedReader(new FileReader(filename)), true)) {
+			while (reader.hasNext()) {
+				alignment.addGenome(reader.next());
+			}
+		}
+		return alignment;
+	}
+
+	private static void report(String name, double megabytes, Alignment expected, Loader loader) throws IOException {
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			check(name, expected, loader.load());
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			loader.load();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9 / MEASURED_ROUNDS;
+		System.out.printf("%-24s %10.1f MB/s%n", name, megabytes / seconds);
+	}
+
+	private static void check(String name, Alignment expected, Alignment actual) {
+		Iterator<Genome> actualGenomes = actual.iterator();
+		for (Genome genome : expected) {
+			if (!actualGenomes.hasNext()) {
+				throw new IllegalStateException(name + " returned too few genomes");
+			}
+			Genome other = actualGenomes.next();
+			if (!genome.getId().equals(other.getId()) || !genome.equalsBySequence(other)) {
+				throw new IllegalStateException(name + " returned a different " + genome.getId());
+			}
+		}
+		if (actualGenomes.hasNext()) {
+			throw new IllegalStateException(name + " returned too many genomes");
+		}
+	}
+
+	static void write(File file, ArrayList<String> sequences) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			for (int i = 0; i < sequences.size(); i++) {
+				writer.write(">genome" + i);
+				writer.newLine();
+				String sequence = sequences.get(i);
+				for (int start = 0; start < sequence.length(); start += LINE_WIDTH) {
+					writer.write(sequence, start, Math.min(LINE_WIDTH, sequence.length() - start));
+					writer.newLine();
+				}
+			}
+		}
+	}
+}
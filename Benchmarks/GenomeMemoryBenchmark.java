@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import alignment.Genome;
+import alignment.PackedSequence;
+
+/**
+ * Compares the heap used by genomes stored as a char[] with genomes stored as a
+ * PackedSequence. The genomes of a FASTA file are replicated a number of times
+ * to mimic a production-sized alignment.
+ *
+ * Usage: java -Xmx2g benchmarks.GenomeMemoryBenchmark [fastafile] [scale]
+ */
+public class GenomeMemoryBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		String filename = args.length > 0 ? args[0] : "hiv.fasta";
+		int scale = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+		ArrayList<String> ids = new ArrayList<>();
+		ArrayList<String> sequences = new ArrayList<>();
+		readFasta(filename, ids, sequences);
+
+		long bases = 0;
+		for (String sequence : sequences) {
+			bases += sequence.length();
+		}
+		bases *= scale;
+
+		System.out.println("Genomes: " + ids.size() * scale + ", bases: " + bases);
+
+		long charBytes = measure(ids, sequences, scale, false);
+		System.out.println("char[] layout:  " + format(charBytes, bases));
+
+		long packedBytes = measure(ids, sequences, scale, true);
+		System.out.println("packed layout:  " + format(packedBytes, bases));
+
+		System.out.printf("Reduction: %.1fx%n", (double) charBytes / packedBytes);
+	}
+
+	private static long measure(ArrayList<String> ids, ArrayList<String> sequences, int scale, boolean packed) {
+		long before = usedMemory();
+		ArrayList<Genome> genomes = new ArrayList<>(ids.size() * scale);
+
+		for (int copy = 0; copy < scale; copy++) {
+			for (int i = 0; i < ids.size(); i++) {
+				Genome genome = new Genome(ids.get(i));
+				if (packed) {
+					genome.setNucleotides(new PackedSequence(sequences.get(i)));
+				} else {
+					genome.setNucleotides(sequences.get(i).toCharArray());
+				}
+				genomes.add(genome);
+			}
+		}
+
+		long after = usedMemory();
+		// Keep the genomes reachable until the measurement is taken.
+		if (genomes.isEmpty()) {
+			System.out.println("No genomes were read.");
+		}
+		return after - before;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static String format(long bytes, long bases) {
+		return String.format("%,d bytes (%.2f bytes/base)", bytes, (double) bytes / bases);
+	}
+
+	private static void readFasta(String filename, ArrayList<String> ids, ArrayList<String> sequences)
+			throws IOException {
+		try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+			String line;
+			StringBuilder sequence = null;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.startsWith(">")) {
+					if (sequence != null) {
+						sequences.add(sequence.toString());
+					}
+					ids.add(line);
+					sequence = new StringBuilder();
+				} else if (sequence != null) {
+					sequence.append(line);
+				}
+			}
+			if (sequence != null) {
+				sequences.add(sequence.toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import alignment.Alignment;
+import alignment.EditRule;
+import alignment.Genome;
+import alignment.PackedSequence;
+import alignment.SearchResult;
+import alignment.StandardAlignment;
+
+/**
+ * Measures how genome-wide searches and batch replacements scale with the
+ * number of threads of the pool they run on, from a single thread up to one
+ * thread per core. Every parallel run must produce the same search result and
+ * the same edited alignment as the sequential run. Replacements are measured
+ * both on a bare alignment and on one with a k-mer index and cached scores,
+ * whose listeners must not make the edits of the threads wait for each other.
+ *
+ * Usage: java benchmarks.ParallelEditBenchmark [genomes] [length] [patterns]
+ */
+public class ParallelEditBenchmark {
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int MEASURED_ROUNDS = 5;
+	private static final int PATTERN_LENGTH = 8;
+
+	public static void main(String[] args) {
+		int genomeCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int patternCount = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+		Random random = new Random(42);
+		ArrayList<String> sequences = ScoreBenchmark.generate(genomeCount, length, 0.01, random);
+		Alignment alignment = new StandardAlignment();
+		for (int i = 0; i < sequences.size(); i++) {
+			Genome genome = new Genome(">genome" + i);
+			genome.setNucleotides(new PackedSequence(sequences.get(i)));
+			alignment.addGenome(genome);
+		}
+
+		// Patterns taken from the reference, so that most genomes contain them.
+		ArrayList<String> patterns = new ArrayList<>();
+		ArrayList<EditRule> rules = new ArrayList<>();
+		for (int i = 0; i < patternCount; i++) {
+			int start = random.nextInt(length - PATTERN_LENGTH);
+			String pattern = sequences.get(0).substring(start, start + PATTERN_LENGTH);
+			patterns.add(pattern);
+			rules.add(new EditRule(pattern, pattern.substring(1) + pattern.charAt(0)));
+		}
+
+		SearchResult expectedSearch = alignment.searchSequences(patterns);
+		Alignment expectedEdit = alignment.clone();
+		int[] expectedCounts = expectedEdit.applyEdits(rules);
+		String expectedText = expectedEdit.toString();
+		int expectedScore = expectedEdit.calculateScore();
+
+		// An alignment whose genomes have listeners: the index and the scores.
+		Alignment listened = alignment.clone();
+		listened.buildIndex(5);
+		listened.calculateScore();
+		System.out.println("Genomes: " + genomeCount + ", length: " + length + ", patterns: " + patternCount
+				+ ", replacements: " + Arrays.stream(expectedCounts).sum());
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		double sequential = 0;
+		for (int threads = 1; threads <= cores; threads++) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				check("search", same(expectedSearch, alignment.searchSequences(patterns, pool), alignment));
+				Alignment edited = alignment.clone();
+				check("replace", Arrays.equals(expectedCounts, edited.applyEdits(rules, pool))
+						&& expectedText.equals(edited.toString()));
+				Alignment editedListened = listened.clone();
+				check("replace with listeners", Arrays.equals(expectedCounts, editedListened.applyEdits(rules, pool))
+						&& expectedText.equals(editedListened.toString())
+						&& expectedScore == editedListened.calculateScore());
+
+				double search = measure(() -> alignment.searchSequences(patterns, pool));
+				double replace = measure(() -> alignment.clone().applyEdits(rules, pool));
+				double replaceListened = measure(() -> listened.clone().applyEdits(rules, pool));
+				if (threads == 1) {
+					sequential = replaceListened;
+				}
+				System.out.printf("%2d threads: search %10.2f ms/op, replace %10.2f ms/op, "
+						+ "replace with listeners %10.2f ms/op (%.2fx)%n", threads, search, replace, replaceListened,
+						sequential / replaceListened);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	private static double measure(Runnable run) {
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			run.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			run.run();
+		}
+		return (System.nanoTime() - start) / 1e6 / MEASURED_ROUNDS;
+	}
+
+	private static boolean same(SearchResult expected, SearchResult actual, Alignment alignment) {
+		List<String> patterns = expected.getPatterns();
+		for (int p = 0; p < patterns.size(); p++) {
+			if (!expected.getGenomeIds(p).equals(actual.getGenomeIds(p))) {
+				return false;
+			}
+			for (Genome genome : alignment) {
+				if (!expected.getPositions(p, genome.getId()).equals(actual.getPositions(p, genome.getId()))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void check(String name, boolean same) {
+		if (!same) {
+			throw new IllegalStateException("The parallel " + name + " differs from the sequential one");
+		}
+	}
+}
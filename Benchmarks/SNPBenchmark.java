@@ -0,0 +1,106 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Random;
+
+import alignment.Alignment;
+import alignment.Genome;
+import alignment.PackedSequence;
+import alignment.SNPAdapter;
+import alignment.SNPIndex;
+import alignment.StandardAlignment;
+
+/**
+ * Compares the SNP export that compares every base of every genome with the
+ * reference against the export of SNPAdapter from a SNPIndex, which only
+ * visits the differing columns. Both must produce the same text.
+ *
+ * Usage: java benchmarks.SNPBenchmark [genomes] [length] [mutationRate]
+ */
+public class SNPBenchmark {
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		int genomeCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		double mutationRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.005;
+
+		ArrayList<String> sequences = ScoreBenchmark.generate(genomeCount, length, mutationRate, new Random(42));
+		Alignment alignment = new StandardAlignment();
+		for (int i = 0; i < sequences.size(); i++) {
+			Genome genome = new Genome(">genome" + i);
+			genome.setNucleotides(new PackedSequence(sequences.get(i)));
+			alignment.addGenome(genome);
+		}
+
+		StringWriter expected = new StringWriter();
+		loopExport(alignment, expected);
+		System.out.println("Genomes: " + genomeCount + ", length: " + length + ", variable columns: "
+				+ new SNPIndex(alignment).getVariableColumns().cardinality());
+
+		report("per-base export", expected.toString(), writer -> loopExport(alignment, writer));
+		report("SNPIndex export", expected.toString(), writer -> new SNPAdapter().writeAlignment(alignment, writer));
+		report("SNPIndex build", null, writer -> new SNPIndex(alignment));
+	}
+
+	/**
+	 * The SNP export as it was before the SNP index: every nucleotide of every
+	 * genome is compared with the reference.
+	 */
+	static void loopExport(Alignment alignment, Writer writer) throws IOException {
+		Genome referenceGenome = alignment.getTopGenome();
+		referenceGenome.writeTo(writer);
+		int referenceLength = referenceGenome.size();
+		for (Genome genome : alignment) {
+			if (genome == referenceGenome) {
+				continue;
+			}
+			writer.write(genome.getId());
+			writer.write('\n');
+			for (int i = 0; i < referenceLength; i++) {
+				char nucleotide = genome.getNucleotide(i);
+				writer.write(nucleotide == referenceGenome.getNucleotide(i) ? '.' : nucleotide);
+			}
+			writer.write("\n\n");
+		}
+	}
+
+	interface Export {
+		void run(Writer writer) throws IOException;
+	}
+
+	private static void report(String name, String expected, Export export) throws IOException {
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			StringWriter writer = new StringWriter();
+			export.run(writer);
+			if (expected != null && !expected.equals(writer.toString())) {
+				throw new IllegalStateException(name + " produced a different SNP view");
+			}
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			export.run(new NullWriter());
+		}
+		double millis = (System.nanoTime() - start) / 1e6 / MEASURED_ROUNDS;
+		System.out.printf("%-20s %10.2f ms/op%n", name, millis);
+	}
+
+	// Discards its output, so that only the export itself is measured.
+	private static class NullWriter extends Writer {
+		@Override
+		public void write(char[] buffer, int offset, int length) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
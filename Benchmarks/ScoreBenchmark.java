@@ -0,0 +1,157 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import alignment.Alignment;
+import alignment.Genome;
+import alignment.PackedSequence;
+import alignment.StandardAlignment;
+
+/**
+ * Compares the original per-base scoring loop with the word-parallel scoring
+ * of packed genomes. Both must report the same difference score, which is
+ * checked once before the measurements.
+ *
+ * java -jar target/benchmarks.jar ScoreBenchmark -p genomes=2000 -p length=10000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ScoreBenchmark {
+	@Param("2000")
+	public int genomes;
+
+	@Param("10000")
+	public int length;
+
+	@Param("0.05")
+	public double mutationRate;
+
+	private Alignment charAlignment;
+	private Alignment packedAlignment;
+
+	@Setup
+	public void setUp() {
+		ArrayList<String> sequences = generate(genomes, length, mutationRate, new Random(42));
+		charAlignment = new StandardAlignment();
+		packedAlignment = new StandardAlignment();
+		for (int i = 0; i < sequences.size(); i++) {
+			Genome charGenome = new Genome(">genome" + i);
+			charGenome.setNucleotides(sequences.get(i).toCharArray());
+			charAlignment.addGenome(charGenome);
+
+			Genome packedGenome = new Genome(">genome" + i);
+			packedGenome.setNucleotides(new PackedSequence(sequences.get(i)));
+			packedAlignment.addGenome(packedGenome);
+		}
+
+		long expected = loopScore(charAlignment);
+		check("per-base loop (packed)", expected, loopScore(packedAlignment));
+		check("calculateScore (char[])", expected, charAlignment.calculateScore());
+		check("calculateScore (packed)", expected, packedAlignment.calculateScore());
+		check("Genome.getScore (char[])", expected, engineScore(charAlignment));
+		check("Genome.getScore (packed)", expected, engineScore(packedAlignment));
+	}
+
+	@Benchmark
+	public long loopChar() {
+		return loopScore(charAlignment);
+	}
+
+	@Benchmark
+	public long loopPacked() {
+		return loopScore(packedAlignment);
+	}
+
+	// Alignment.calculateScore answers from its ScoreCache after the first
+	// call, so the scoring engine is measured through Genome.getScore.
+	@Benchmark
+	public long getScoreChar() {
+		return engineScore(charAlignment);
+	}
+
+	@Benchmark
+	public long getScorePacked() {
+		return engineScore(packedAlignment);
+	}
+
+	private static long engineScore(Alignment alignment) {
+		long diffScore = 0;
+		Genome referenceGenome = alignment.getTopGenome();
+		for (Genome genome : alignment) {
+			diffScore += genome.getScore(referenceGenome);
+		}
+		return diffScore;
+	}
+
+	/**
+	 * The scoring loop as it was before the word-parallel engine: one
+	 * getNucleotide call per base of every genome.
+	 */
+	static long loopScore(Alignment alignment) {
+		long diffScore = 0;
+		Genome referenceGenome = alignment.getTopGenome();
+		for (Genome genome : alignment) {
+			if (genome == referenceGenome) {
+				continue;
+			}
+			int referenceLength = referenceGenome.size();
+			for (int i = 0; i < referenceLength; i++) {
+				if (genome.getNucleotide(i) != referenceGenome.getNucleotide(i)) {
+					diffScore++;
+				}
+			}
+		}
+		return diffScore;
+	}
+
+	private static void check(String name, long expected, long actual) {
+		if (expected != actual) {
+			throw new IllegalStateException(name + " returned " + actual + " instead of " + expected);
+		}
+	}
+
+	/**
+	 * Generates a reference sequence and mutated copies of it. A small share of
+	 * the mutations are gaps or N's so that the side-table of packed sequences is
+	 * exercised as well.
+	 */
+	static ArrayList<String> generate(int genomeCount, int length, double mutationRate, Random random) {
+		String bases = "ACGT";
+		char[] reference = new char[length];
+		for (int i = 0; i < length; i++) {
+			reference[i] = bases.charAt(random.nextInt(4));
+		}
+
+		ArrayList<String> sequences = new ArrayList<>(genomeCount);
+		sequences.add(new String(reference));
+		for (int g = 1; g < genomeCount; g++) {
+			char[] sequence = reference.clone();
+			for (int i = 0; i < length; i++) {
+				if (random.nextDouble() < mutationRate) {
+					sequence[i] = random.nextInt(20) == 0 ? "-N".charAt(random.nextInt(2))
+							: bases.charAt(random.nextInt(4));
+				}
+			}
+			sequences.add(new String(sequence));
+		}
+		return sequences;
+	}
+}
@@ -0,0 +1,248 @@
+package dataio;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import alignment.Alignment;
+import alignment.Genome;
+import alignment.ISequence;
+import alignment.MappedSequence;
+import alignment.PackedSequence;
+
+/**
+ * The AlignmentCache class keeps the alignments most recently read by the
+ * DataReader, so that a file that was just read or written is not parsed
+ * again. An entry is keyed by the absolute path of the file and only used
+ * while the stamp of the file (see FileStamp) is unchanged; the DataWriter also
+ * drops the entry of every file it writes or deletes, so that a file written
+ * by another means than a rename is not taken for the cached version either.
+ *
+ * The cache is bounded by the approximate memory footprint of its alignments
+ * and evicts the least recently used ones first. It hands out copies, which
+ * share the nucleotides with the cached alignment until either is changed, so
+ * callers may edit what they get.
+ *
+ * Next to the alignments the cache keeps the checksums of the contents of
+ * files (see DataReader.getFileChecksum), under the same stamps and the same
+ * invalidation. They take a few bytes each, so they are bounded by number and
+ * kept even when the cache holds no alignments.
+ */
+final class AlignmentCache {
+	// The estimated overhead of a genome besides its nucleotides, in bytes.
+	private static final long GENOME_OVERHEAD = 96;
+	// The maximum number of checksums kept.
+	private static final int CHECKSUM_ENTRIES = 1024;
+
+	/**
+	 * Stores an instance of this AlignmentCache class to model a singleton.
+	 */
+	private static AlignmentCache alignmentCache = null;
+
+	private static class Entry {
+		final FileStamp stamp;
+		final Alignment alignment;
+		final long footprint;
+
+		Entry(FileStamp stamp, Alignment alignment, long footprint) {
+			this.stamp = stamp;
+			this.alignment = alignment;
+			this.footprint = footprint;
+		}
+	}
+
+	private static class Checksum {
+		final FileStamp stamp;
+		final long value;
+
+		Checksum(FileStamp stamp, long value) {
+			this.stamp = stamp;
+			this.value = value;
+		}
+	}
+
+	// The entries in access order, least recently used first.
+	private final LinkedHashMap<String, Entry> entries;
+	// The checksums in access order, least recently used first.
+	private final LinkedHashMap<String, Checksum> checksums;
+	private long capacity;
+	private long footprint;
+
+	/**
+	 * A private constructor to prevent instantiating an object of this class.
+	 */
+	private AlignmentCache() {
+		entries = new LinkedHashMap<>(16, 0.75f, true);
+		checksums = new LinkedHashMap<String, Checksum>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Checksum> eldest) {
+				return size() > CHECKSUM_ENTRIES;
+			}
+		};
+		capacity = 0;
+		footprint = 0;
+	}
+
+	/**
+	 * Returns an instance of this class.
+	 *
+	 * @return the cache shared by the DataReader and the DataWriter.
+	 */
+	static synchronized AlignmentCache getInstance() {
+		if (alignmentCache == null) {
+			alignmentCache = new AlignmentCache();
+		}
+		return alignmentCache;
+	}
+
+	/**
+	 * Sets the maximum footprint of the cached alignments, evicting alignments
+	 * if they no longer fit.
+	 *
+	 * @param capacity - the maximum footprint in bytes; 0 disables the cache.
+	 */
+	synchronized void setCapacity(long capacity) {
+		this.capacity = Math.max(0, capacity);
+		evict();
+	}
+
+	/**
+	 * Returns the maximum footprint of the cached alignments.
+	 *
+	 * @return the maximum footprint in bytes; 0 when the cache is disabled.
+	 */
+	synchronized long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns a copy of the alignment cached for a file.
+	 *
+	 * @param filename - the path/filename of the file.
+	 * @param stamp - the current stamp of the file; null if it does not exist.
+	 * @return a copy of the cached alignment, or null if the file is not cached
+	 * or has changed since.
+	 */
+	synchronized Alignment get(String filename, FileStamp stamp) {
+		String key = key(filename);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (!entry.stamp.equals(stamp)) {
+			remove(key);
+			return null;
+		}
+		return entry.alignment.clone();
+	}
+
+	/**
+	 * Caches a copy of an alignment that was read from a file.
+	 *
+	 * @param filename - the path/filename of the file.
+	 * @param stamp - the stamp of the file before it was read.
+	 * @param alignment - the alignment read from the file.
+	 */
+	synchronized void put(String filename, FileStamp stamp, Alignment alignment) {
+		String key = key(filename);
+		remove(key);
+		long size = footprint(alignment);
+		if (stamp == null || size > capacity) {
+			return;
+		}
+		entries.put(key, new Entry(stamp, alignment.clone(), size));
+		footprint += size;
+		evict();
+	}
+
+	/**
+	 * Returns the checksum of the contents of a file.
+	 *
+	 * @param filename - the path/filename of the file.
+	 * @param stamp - the current stamp of the file; null if it does not exist.
+	 * @return the checksum, or null if it is not known for this version of the
+	 * file.
+	 */
+	synchronized Long getChecksum(String filename, FileStamp stamp) {
+		String key = key(filename);
+		Checksum checksum = checksums.get(key);
+		if (checksum == null) {
+			return null;
+		}
+		if (!checksum.stamp.equals(stamp)) {
+			checksums.remove(key);
+			return null;
+		}
+		return checksum.value;
+	}
+
+	/**
+	 * Keeps the checksum of the contents of a file.
+	 *
+	 * @param filename - the path/filename of the file.
+	 * @param stamp - the stamp of the file the checksum was computed for.
+	 * @param checksum - the checksum of the contents.
+	 */
+	synchronized void putChecksum(String filename, FileStamp stamp, long checksum) {
+		if (stamp != null) {
+			checksums.put(key(filename), new Checksum(stamp, checksum));
+		}
+	}
+
+	/**
+	 * Drops the alignment and the checksum cached for a file, e.g. because the
+	 * file is rewritten.
+	 *
+	 * @param filename - the path/filename of the file.
+	 */
+	synchronized void invalidate(String filename) {
+		String key = key(filename);
+		remove(key);
+		checksums.remove(key);
+	}
+
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			footprint -= entry.footprint;
+		}
+	}
+
+	// Drops the least recently used alignments until the rest fits.
+	private void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (footprint > capacity && iterator.hasNext()) {
+			footprint -= iterator.next().footprint;
+			iterator.remove();
+		}
+	}
+
+	private static String key(String filename) {
+		return new File(filename).getAbsolutePath();
+	}
+
+	// Estimates the memory held by an alignment: the nucleotides of a packed
+	// sequence take a quarter byte per base, those of an array two bytes and
+	// those of a memory-mapped sequence a byte of the mapped file. A mapping is
+	// only released once its alignment is dropped (and on some platforms keeps
+	// the file from being deleted or replaced until then), so it is bounded by
+	// the capacity like memory on the heap.
+	private static long footprint(Alignment alignment) {
+		long size = 0;
+		for (Genome genome : alignment) {
+			ISequence sequence = genome.getSequence();
+			size += GENOME_OVERHEAD + 2L * genome.getId().length();
+			if (sequence instanceof PackedSequence) {
+				size += sequence.length() / 4;
+			} else if (sequence instanceof MappedSequence) {
+				size += sequence.length();
+			} else {
+				size += 2L * sequence.length();
+			}
+		}
+		return size;
+	}
+}
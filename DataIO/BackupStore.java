@@ -0,0 +1,351 @@
+package dataio;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import metrics.MetricsRegistry;
+import metrics.Timer;
+
+/**
+ * The BackupStore class keeps backups of repository files in a directory as
+ * content-addressed chunks, so that data that did not change since an earlier
+ * backup is not stored again.
+ *
+ * A file is split into chunks at content-defined boundaries: a rolling (gear)
+ * hash over the bytes marks a boundary wherever its top bits are zero, so an
+ * edit only changes the chunks around it and the chunks after it are found
+ * again. Each chunk is stored once, under the hex SHA-256 of its bytes, in
+ * "chunks/[first two hex digits]/[hash]".
+ *
+ * Every backup is a snapshot named after its date and time, stored as a
+ * manifest in "snapshots/[name].manifest": a header line "#MSABACKUP 1"
+ * followed by one line per file with its path/filename, its length and the
+ * hashes of its chunks, separated by tabs (the hashes by commas).
+ *
+ * Chunks and manifests are synced to disk, and so are their directories,
+ * before a backup returns; the chunks before the manifest that refers to them.
+ * A restore replaces each file atomically through the DataWriter, so a file
+ * holds either its old contents or those of the snapshot, and hard links to the
+ * old contents are left unchanged.
+ */
+public class BackupStore {
+	private static final String MAGIC = "#MSABACKUP";
+	private static final int VERSION = 1;
+
+	// The bounds of a chunk; with a 13-bit mask the chunks average about 8 KiB.
+	// The mask tests the top bits of the hash, which depend on the last 64 bytes.
+	private static final int MIN_CHUNK = 2 << 10;
+	private static final int MAX_CHUNK = 64 << 10;
+	private static final long BOUNDARY_MASK = -1L << (64 - 13);
+
+	// The random values of the gear hash, one per byte value. The seed is fixed
+	// so that the same content always yields the same chunks.
+	private static final long[] GEAR = new long[256];
+
+	static {
+		Random random = new Random(0x4D534142L);
+		for (int i = 0; i < GEAR.length; i++) {
+			GEAR[i] = random.nextLong();
+		}
+	}
+
+	private final File chunks;
+	private final File snapshots;
+
+	/**
+	 * Creates a store in the given directory, which is created when it does not
+	 * exist yet.
+	 *
+	 * @param directory - the path of the directory of the store.
+	 */
+	public BackupStore(String directory) {
+		this.chunks = new File(directory, "chunks");
+		this.snapshots = new File(directory, "snapshots");
+	}
+
+	/**
+	 * Backs up files to a new snapshot. Files that do not exist are left out.
+	 *
+	 * @param filenames - the path/filenames of the files to back up.
+	 * @return the name of the snapshot.
+	 * @throws IOException when a file cannot be read or the store cannot be written.
+	 */
+	public String backup(List<String> filenames) throws IOException {
+		Timer.Sample sample = time("backup");
+		try (sample) {
+			StringBuilder manifest = new StringBuilder(MAGIC + " " + VERSION + "\n");
+			// The directories of the chunks stored by this backup.
+			LinkedHashSet<File> directories = new LinkedHashSet<>();
+			for (String filename : filenames) {
+				File file = new File(filename);
+				if (!file.isFile()) {
+					continue;
+				}
+				ArrayList<String> hashes = storeChunks(file, directories);
+				manifest.append(filename).append('\t').append(file.length()).append('\t')
+						.append(String.join(",", hashes)).append('\n');
+			}
+			for (File directory : directories) {
+				DataWriter.syncDirectory(directory);
+			}
+
+			String snapshot = newSnapshot();
+			byte[] bytes = manifest.toString().getBytes(StandardCharsets.UTF_8);
+			writeSynced(new File(snapshots, snapshot + ".tmp"), manifestFile(snapshot), bytes, bytes.length);
+			DataWriter.syncDirectory(snapshots);
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Returns the names of the snapshots in the store, oldest first.
+	 *
+	 * @return the names of the snapshots.
+	 */
+	public List<String> listSnapshots() {
+		ArrayList<String> names = new ArrayList<>();
+		String[] files = snapshots.list();
+		if (files != null) {
+			for (String file : files) {
+				if (file.endsWith(".manifest")) {
+					names.add(file.substring(0, file.length() - ".manifest".length()));
+				}
+			}
+		}
+		names.sort(null);
+		return names;
+	}
+
+	/**
+	 * Returns the name of the newest snapshot in the store.
+	 *
+	 * @return the name of the snapshot, or null when the store has none.
+	 */
+	public String getLatestSnapshot() {
+		List<String> names = listSnapshots();
+		return names.isEmpty() ? null : names.get(names.size() - 1);
+	}
+
+	/**
+	 * Restores the files of a snapshot to their path/filenames, several files at
+	 * a time. Every chunk is checked against its hash as it is read.
+	 *
+	 * @param snapshot - the name of the snapshot.
+	 * @param threads - the number of files restored at the same time.
+	 * @return the path/filenames of the restored files.
+	 * @throws IOException when the snapshot does not exist, is damaged, or a
+	 * file cannot be written.
+	 */
+	public List<String> restore(String snapshot, int threads) throws IOException {
+		Timer.Sample sample = time("restore");
+		try (sample) {
+			ArrayList<String[]> entries = readManifest(snapshot);
+			ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, entries.size())));
+			try {
+				ArrayList<Future<?>> futures = new ArrayList<>(entries.size());
+				for (String[] entry : entries) {
+					futures.add(executor.submit(() -> {
+						restoreFile(entry);
+						return null;
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while restoring " + snapshot);
+			} catch (ExecutionException ex) {
+				if (ex.getCause() instanceof IOException) {
+					throw (IOException) ex.getCause();
+				}
+				throw new IOException("Cannot restore " + snapshot, ex.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+
+			ArrayList<String> filenames = new ArrayList<>(entries.size());
+			for (String[] entry : entries) {
+				filenames.add(entry[0]);
+			}
+			return filenames;
+		}
+	}
+
+	// Splits a file into chunks, stores the chunks that are new, and returns
+	// the hashes of all its chunks in order.
+	private ArrayList<String> storeChunks(File file, Set<File> directories) throws IOException {
+		ArrayList<String> hashes = new ArrayList<>();
+		byte[] chunk = new byte[MAX_CHUNK];
+		byte[] buffer = new byte[1 << 16];
+		int length = 0;
+		long hash = 0;
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				for (int i = 0; i < read; i++) {
+					chunk[length++] = buffer[i];
+					hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+					if ((length >= MIN_CHUNK && (hash & BOUNDARY_MASK) == 0) || length == MAX_CHUNK) {
+						hashes.add(storeChunk(chunk, length, directories));
+						length = 0;
+						hash = 0;
+					}
+				}
+			}
+		}
+		if (length > 0) {
+			hashes.add(storeChunk(chunk, length, directories));
+		}
+		count(MetricsRegistry.IO_READ_BYTES, "backup", file.length());
+		return hashes;
+	}
+
+	// Stores a chunk unless the store already has it, and returns its hash. The
+	// directory of a new chunk is added to the given directories, to be synced.
+	private String storeChunk(byte[] chunk, int length, Set<File> directories) throws IOException {
+		String hash = sha256(chunk, length);
+		File file = chunkFile(hash);
+		if (file.isFile()) {
+			return hash;
+		}
+
+		// Write to a temporary file first, so that a chunk file is either
+		// complete or absent, even when two backups store it at the same time.
+		file.getParentFile().mkdirs();
+		writeSynced(File.createTempFile(hash, ".tmp", file.getParentFile()), file, chunk, length);
+		directories.add(file.getParentFile());
+		count(MetricsRegistry.IO_WRITTEN_BYTES, "backup", length);
+		return hash;
+	}
+
+	// Writes bytes to a temporary file, syncs it to disk and renames it to the
+	// given file.
+	private static void writeSynced(File temporary, File file, byte[] bytes, int length) throws IOException {
+		try {
+			try (FileOutputStream out = new FileOutputStream(temporary)) {
+				out.write(bytes, 0, length);
+				out.getChannel().force(false);
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary.toPath());
+		}
+	}
+
+	// Replaces a file with its contents in a snapshot, put together from its
+	// chunks; the file is left unchanged when a chunk is damaged or missing.
+	private void restoreFile(String[] entry) throws IOException {
+		String filename = entry[0];
+		long expected = Long.parseLong(entry[1]);
+		DataWriter.getInstance().replace(filename, out -> {
+			long written = 0;
+			for (int i = 2; i < entry.length; i++) {
+				byte[] chunk = Files.readAllBytes(chunkFile(entry[i]).toPath());
+				if (!sha256(chunk, chunk.length).equals(entry[i])) {
+					throw new IOException("The backup chunk " + entry[i] + " is damaged.");
+				}
+				out.write(chunk);
+				written += chunk.length;
+			}
+			if (written != expected) {
+				throw new IOException("The backup of " + filename + " is incomplete.");
+			}
+		});
+		count(MetricsRegistry.IO_WRITTEN_BYTES, "restore", expected);
+	}
+
+	// Reads a manifest into entries of the path/filename, the length and the
+	// chunk hashes of each file.
+	private ArrayList<String[]> readManifest(String snapshot) throws IOException {
+		File file = manifestFile(snapshot);
+		if (!file.isFile()) {
+			throw new IOException("There is no backup snapshot " + snapshot);
+		}
+		ArrayList<String[]> entries = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String header = reader.readLine();
+			if (header == null || !header.equals(MAGIC + " " + VERSION)) {
+				throw new IOException("The backup snapshot " + snapshot + " is not in a known format.");
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 3) {
+					throw new IOException("The backup snapshot " + snapshot + " is damaged.");
+				}
+				ArrayList<String> entry = new ArrayList<>(Arrays.asList(fields[0], fields[1]));
+				if (!fields[2].isEmpty()) {
+					entry.addAll(Arrays.asList(fields[2].split(",")));
+				}
+				entries.add(entry.toArray(new String[0]));
+			}
+		}
+		return entries;
+	}
+
+	// Reserves a name for a new snapshot, after the current date and time.
+	private String newSnapshot() throws IOException {
+		snapshots.mkdirs();
+		String name = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+		String snapshot = name;
+		for (int i = 1; manifestFile(snapshot).exists() || !new File(snapshots, snapshot + ".tmp").createNewFile(); i++) {
+			snapshot = name + "-" + i;
+		}
+		return snapshot;
+	}
+
+	private File manifestFile(String snapshot) {
+		return new File(snapshots, snapshot + ".manifest");
+	}
+
+	private File chunkFile(String hash) {
+		return new File(new File(chunks, hash.substring(0, 2)), hash);
+	}
+
+	private static String sha256(byte[] bytes, int length) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException(ex);
+		}
+		digest.update(bytes, 0, length);
+		StringBuilder hex = new StringBuilder(64);
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	private static Timer.Sample time(String operation) {
+		return MetricsRegistry.getInstance().timer(MetricsRegistry.IO_SECONDS, "BackupStore." + operation).start();
+	}
+
+	private static void count(String name, String operation, long bytes) {
+		MetricsRegistry.getInstance().counter(name, "BackupStore." + operation).increment(bytes);
+	}
+}
@@ -0,0 +1,142 @@
+package dataio;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import alignment.Alignment;
+import alignment.Genome;
+import alignment.ISequence;
+import alignment.PackedSequence;
+import alignment.StandardAlignment;
+
+/**
+ * The BinaryAlignmentFile class reads and writes alignments in a compact binary
+ * format, so that an alignment can be reloaded without parsing FASTA text. A
+ * file consists of:
+ *
+ * - a header with a magic number, a version and the number of genomes;
+ * - a genome table with the identifier and length of every genome, in the
+ *   order of the alignment;
+ * - the packed sequence of every genome, in the same order;
+ * - a CRC32 checksum of all the bytes that precede it.
+ */
+final class BinaryAlignmentFile {
+	// "MSAB"
+	static final int MAGIC = 0x4D534142;
+	private static final int VERSION = 1;
+
+	private BinaryAlignmentFile() {
+	}
+
+	/**
+	 * Returns true if the given file starts with the magic number of this format.
+	 *
+	 * @param filename - the path/filename of the file.
+	 * @return true if the file is a binary alignment; otherwise false.
+	 * @throws IOException when the file cannot be read.
+	 */
+	static boolean isBinary(String filename) throws IOException {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+			return in.available() >= 4 && in.readInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Writes an alignment to a stream.
+	 *
+	 * @param out - the stream to write to; it is flushed but not closed.
+	 * @param alignment - the alignment to write.
+	 * @throws IOException when the alignment cannot be written.
+	 */
+	static void write(OutputStream out, Alignment alignment) throws IOException {
+		CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+		DataOutputStream data = new DataOutputStream(checked);
+
+		ArrayList<Genome> genomes = new ArrayList<>();
+		for (Genome genome : alignment) {
+			genomes.add(genome);
+		}
+
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(genomes.size());
+		for (Genome genome : genomes) {
+			data.writeUTF(genome.getId());
+			data.writeInt(genome.size());
+		}
+		for (Genome genome : genomes) {
+			ISequence sequence = genome.getSequence();
+			if (sequence instanceof PackedSequence) {
+				((PackedSequence) sequence).writeTo(data);
+			} else {
+				new PackedSequence(sequence == null ? new char[0] : sequence.toCharArray()).writeTo(data);
+			}
+		}
+		data.flush();
+
+		// The checksum itself is not part of the checked bytes.
+		new DataOutputStream(out).writeLong(checked.getChecksum().getValue());
+		out.flush();
+	}
+
+	/**
+	 * Reads an alignment from a stream.
+	 *
+	 * @param in - the stream to read from.
+	 * @param packed - whether to keep the genomes as packed sequences.
+	 * @return the alignment that was read.
+	 * @throws IOException when the stream cannot be read, is not in this format
+	 * or does not match its checksum.
+	 */
+	static Alignment read(InputStream in, boolean packed) throws IOException {
+		CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+		DataInputStream data = new DataInputStream(checked);
+
+		if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+			throw new IOException("Not a binary alignment file.");
+		}
+		int count = data.readInt();
+		if (count < 0) {
+			throw new IOException("Malformed binary alignment file.");
+		}
+		String[] ids = new String[count];
+		int[] lengths = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = data.readUTF();
+			lengths[i] = data.readInt();
+		}
+
+		Genome[] genomes = new Genome[count];
+		for (int i = 0; i < count; i++) {
+			PackedSequence sequence = PackedSequence.readFrom(data);
+			if (sequence.length() != lengths[i]) {
+				throw new IOException("Malformed binary alignment file.");
+			}
+			genomes[i] = new Genome(ids[i]);
+			if (packed) {
+				genomes[i].setNucleotides(sequence);
+			} else {
+				genomes[i].setNucleotides(sequence.toCharArray());
+			}
+		}
+
+		long checksum = checked.getChecksum().getValue();
+		if (new DataInputStream(in).readLong() != checksum) {
+			throw new IOException("The binary alignment file is corrupt.");
+		}
+
+		Alignment alignment = new StandardAlignment();
+		for (Genome genome : genomes) {
+			alignment.addGenome(genome);
+		}
+		return alignment;
+	}
+}
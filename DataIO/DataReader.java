@@ -1,16 +1,24 @@
 package dataio;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.zip.CRC32;
 
 import alignment.*;
 import exceptions.BioinformaticsException;
+import metrics.MetricsRegistry;
+import metrics.Timer;
 import users.User;
 import users.UserFactory;
 
@@ -19,6 +27,30 @@ public class DataReader {
 	private String fastaFilename;
 	// Stores the name of the file with users's information
 	private String teamFilename;
+	// Stores whether genomes are kept with 2 bits per base instead of a char[].
+	private boolean packedSequences;
+	// Stores the number of threads used to compute difference scores.
+	private int scoringThreads;
+	// Stores the k-mer length of the search index, or 0 to search without one.
+	private int kmerLength;
+	// Stores how FASTA files are loaded: "stream", "mapped" or "parallel".
+	private String fastaLoader;
+	// Stores the number of threads used by the parallel FASTA parser.
+	private int parserThreads;
+	// Stores the number of threads that read users' files ahead in team-wide actions.
+	private int ioThreads;
+	// Stores the parallel FASTA parser, created when it is first needed.
+	private ParallelFastaParser parallelParser;
+	// Stores whether alignments are saved in the binary format instead of FASTA.
+	private boolean binaryAlignments;
+	// Stores whether users' alignments are saved as deltas against the optimal one.
+	private boolean deltaStorage;
+	// Stores the name of the file the metrics of a run are written to, or null.
+	private String metricsFilename;
+	// Stores the maximum memory footprint of the alignment cache, in bytes.
+	private long alignmentCacheSize;
+	// Stores the directory of the chunked backup store, or null to back up by copying.
+	private String backupDirectory;
 
 	/**
 	 * Stores an instance of this DataReader class to model a singleton.
@@ -30,22 +62,125 @@ public class DataReader {
 	 */
 	private DataReader() {
 		readFilenames();
+		AlignmentCache.getInstance().setCapacity(alignmentCacheSize);
 	}
 
 	/**
 	 * 
 	 * @return
 	 */
-	public static DataReader getInstance() {
+	public static synchronized DataReader getInstance() {
 		if (dataReader == null) {
 			dataReader = new DataReader();
 		}
 		return dataReader;
 	}
 
+	// The parser is created on first use and shared by concurrent sessions.
+	private synchronized ParallelFastaParser getParallelParser() {
+		if (parallelParser == null) {
+			parallelParser = new ParallelFastaParser(getParserThreads(), packedSequences);
+		}
+		return parallelParser;
+	}
+
 	public String getOptimalFilename() {
 		return fastaFilename;
 	}
+
+	/**
+	 * Returns the number of threads to use when computing difference scores and
+	 * running genome-wide searches and replacements, as configured by
+	 * 'scoringthreads'. A value of 0 means one thread per core.
+	 * 
+	 * @return the number of scoring threads.
+	 */
+	public int getScoringThreads() {
+		if (scoringThreads <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return scoringThreads;
+	}
+
+	/**
+	 * Returns the k-mer length of the search index, as configured by 'kmerlength'.
+	 * 
+	 * @return the k-mer length, or 0 when alignments are searched without an index.
+	 */
+	public int getKmerLength() {
+		return kmerLength;
+	}
+
+	/**
+	 * Returns true if alignments are saved in the binary format, as configured
+	 * by 'alignmentformat=binary'; otherwise they are saved as FASTA text.
+	 * Either format can always be read.
+	 * 
+	 * @return true if alignments are saved in the binary format.
+	 */
+	public boolean useBinaryAlignments() {
+		return binaryAlignments;
+	}
+
+	/**
+	 * Returns true if users' alignments are saved as a delta against the optimal
+	 * alignment, as configured by 'userstorage=delta'; otherwise they are saved
+	 * as full copies.
+	 * 
+	 * @return true if users' alignments are saved as deltas.
+	 */
+	public boolean useDeltaStorage() {
+		return deltaStorage;
+	}
+
+	/**
+	 * Returns the name of the file to which the timings and byte counts of a run
+	 * are written at its end, as configured by 'metricsfile'.
+	 * 
+	 * @return the path/filename of the metrics file, or null when the metrics
+	 * are not written.
+	 */
+	public String getMetricsFilename() {
+		return metricsFilename;
+	}
+
+	/**
+	 * Returns the number of threads that read and parse the files of different
+	 * users at the same time in team-wide actions, as configured by 'iothreads'.
+	 * A value of 0 means one thread per core.
+	 * 
+	 * @return the number of I/O threads.
+	 */
+	public int getIoThreads() {
+		if (ioThreads <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return ioThreads;
+	}
+
+	/**
+	 * Returns the directory in which the repository is backed up as deduplicated
+	 * chunks, as configured by 'backupstore' (see BackupStore).
+	 * 
+	 * @return the path of the backup store, or null when backups are plain
+	 * copies of the files.
+	 */
+	public String getBackupDirectory() {
+		return backupDirectory;
+	}
+
+	/**
+	 * Returns the number of threads used to parse FASTA files in parallel, as
+	 * configured by 'parserthreads'. A value of 0 means one thread per core.
+	 * 
+	 * @return the number of parser threads.
+	 */
+	public int getParserThreads() {
+		if (parserThreads <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return parserThreads;
+	}
 	
 	/**
 	 * 
@@ -59,7 +194,24 @@ public class DataReader {
 			properties.load(inStream);
 			fastaFilename = properties.getProperty("fastafilename");
 			teamFilename = properties.getProperty("teamfilename");
-		} catch (IOException ex) {
+			packedSequences = Boolean.parseBoolean(properties.getProperty("packedsequences", "false"));
+			scoringThreads = Integer.parseInt(properties.getProperty("scoringthreads", "1").trim());
+			kmerLength = Integer.parseInt(properties.getProperty("kmerlength", "0").trim());
+			fastaLoader = properties.getProperty("fastaloader", "stream").trim().toLowerCase();
+			parserThreads = Integer.parseInt(properties.getProperty("parserthreads", "0").trim());
+			ioThreads = Integer.parseInt(properties.getProperty("iothreads", "0").trim());
+			binaryAlignments = properties.getProperty("alignmentformat", "fasta").trim().equalsIgnoreCase("binary");
+			deltaStorage = properties.getProperty("userstorage", "full").trim().equalsIgnoreCase("delta");
+			alignmentCacheSize = Long.parseLong(properties.getProperty("alignmentcache", "0").trim()) << 20;
+			metricsFilename = properties.getProperty("metricsfile", "").trim();
+			if (metricsFilename.isEmpty()) {
+				metricsFilename = null;
+			}
+			backupDirectory = properties.getProperty("backupstore", "").trim();
+			if (backupDirectory.isEmpty()) {
+				backupDirectory = null;
+			}
+		} catch (IOException | NumberFormatException ex) {
 			System.out.println(ex.getMessage());
 		} finally {
 			if (inStream != null) {
@@ -73,6 +225,14 @@ public class DataReader {
 	}
 
 	public ArrayList<User> readUsers() throws BioinformaticsException, IOException {
+		Timer.Sample sample = time("readUsers", teamFilename);
+		try (sample) {
+			return loadUsers();
+		}
+	}
+
+	// Reads the users in the team file.
+	private ArrayList<User> loadUsers() throws BioinformaticsException, IOException {
 		int id = 1;
 		String line;
 		User user = null;
@@ -112,6 +272,14 @@ public class DataReader {
 		return users;
 	}
 	
+	// Times a call and counts the bytes of the file it reads.
+	private Timer.Sample time(String operation, String filename) {
+		MetricsRegistry metrics = MetricsRegistry.getInstance();
+		metrics.counter(MetricsRegistry.IO_READ_BYTES, "DataReader." + operation)
+				.increment(new File(filename).length());
+		return metrics.timer(MetricsRegistry.IO_SECONDS, "DataReader." + operation).start();
+	}
+
 	private void closeReader(BufferedReader reader) throws IOException {
 		if (reader != null) {
 			reader.close();
@@ -122,50 +290,376 @@ public class DataReader {
 		return readAlignment(fastaFilename);
 	}
 	
+	/**
+	 * Reads the alignment in a file, in any of the formats this DataReader
+	 * writes. An alignment read before from the same, unchanged file is taken
+	 * from the alignment cache (see 'alignmentcache') instead of being parsed
+	 * again; the caller always gets its own copy. A delta is applied to its
+	 * (cached) base on every read, so that a stale delta is still detected.
+	 * 
+	 * @param filename - the path/filename of the alignment file.
+	 * @return the alignment in the file.
+	 * @throws IOException when the file cannot be read.
+	 * @throws BioinformaticsException when the base of a delta cannot be read.
+	 */
 	public Alignment readAlignment(String filename) throws NumberFormatException, IOException, BioinformaticsException {
-		String line;
-		boolean valid;
-		Genome newGenome = null;
-		Alignment alignment = new StandardAlignment();
-		BufferedReader reader = new BufferedReader(new FileReader(filename));
+		AlignmentCache cache = AlignmentCache.getInstance();
+		FileStamp stamp = getFileStamp(filename);
+		Alignment alignment = cache.get(filename, stamp);
+		MetricsRegistry metrics = MetricsRegistry.getInstance();
+		if (alignment != null) {
+			metrics.counter(MetricsRegistry.CACHE_HITS, "DataReader.readAlignment").increment();
+			return alignment;
+		}
+		metrics.counter(MetricsRegistry.CACHE_MISSES, "DataReader.readAlignment").increment();
 
-		while ((line = reader.readLine()) != null) {
-			if (line.trim().startsWith(">")) {
-				newGenome = new Genome(line);
+		alignment = loadAlignment(filename);
+		// A delta is not cached itself, since it is only valid while its base is
+		// unchanged; its base is cached when it is read.
+		if (!DeltaAlignmentFile.isDelta(filename)) {
+			cache.put(filename, stamp, alignment);
+		}
+		return alignment;
+	}
 
-				// Read the line with genome sequence, but ignore blank lines.
-				do {
-					line = reader.readLine();
-					valid = !line.trim().isEmpty();
-				} while (line != null && !valid);
+	// Parses the alignment in a file.
+	private Alignment loadAlignment(String filename) throws IOException, BioinformaticsException {
+		Timer.Sample sample = time("readAlignment", filename);
+		try (sample) {
+			if (BinaryAlignmentFile.isBinary(filename)) {
+				try (InputStream in = new BufferedInputStream(new FileInputStream(filename))) {
+					return BinaryAlignmentFile.read(in, packedSequences);
+				}
+			}
+			if (DeltaAlignmentFile.isDelta(filename)) {
+				return readDelta(filename, null, 0);
+			}
+			if ("mapped".equals(fastaLoader)) {
+				return new MappedFastaLoader(packedSequences).load(filename);
+			}
+			if ("parallel".equals(fastaLoader)) {
+				return getParallelParser().parse(filename);
+			}
 
-				newGenome.setNucleotides(line);
+			Alignment alignment = new StandardAlignment();
+			FastaReader fastaReader = streamGenomes(filename);
 
-				alignment.addGenome(newGenome);
+			try {
+				while (fastaReader.hasNext()) {
+					alignment.addGenome(fastaReader.next());
+				}
+			} catch (UncheckedIOException ex) {
+				throw ex.getCause();
+			} finally {
+				fastaReader.close();
 			}
+
+			return alignment;
 		}
-		if (reader != null) {
-			reader.close();
+	}
+
+	/**
+	 * Returns true if the given file holds an alignment saved as a delta against
+	 * another alignment file.
+	 * 
+	 * @param filename - the path/filename of the alignment file.
+	 * @return true if the file is a delta; otherwise false.
+	 * @throws IOException when the file cannot be read.
+	 */
+	public boolean isDeltaAlignment(String filename) throws IOException {
+		return DeltaAlignmentFile.isDelta(filename);
+	}
+
+	/**
+	 * Returns the path/filename under which a version of a base file is kept
+	 * while the deltas against it are being rebased onto a new version, so
+	 * that a delta that was not rebased yet (e.g. after a crash) can still be
+	 * read.
+	 * 
+	 * @param filename - the path/filename of the base file.
+	 * @param checksum - the checksum of the version of the file.
+	 * @return the path/filename of the retained version.
+	 */
+	public String getRetainedFilename(String filename, long checksum) {
+		return filename + "." + Long.toHexString(checksum) + ".base";
+	}
+
+	/**
+	 * Reads an alignment saved as a delta and materializes it against its base.
+	 * When the base file has changed since the delta was written, the delta is
+	 * read against the retained version of the base (see getRetainedFilename),
+	 * if there is one.
+	 * 
+	 * @param filename - the path/filename of the delta file.
+	 * @param base - the base alignment, or null to read it from the base file
+	 * named in the delta.
+	 * @param baseChecksum - the checksum of the file the given base was read
+	 * from; ignored when base is null.
+	 * @return the alignment described by the delta.
+	 * @throws IOException when the delta cannot be read, or was computed against
+	 * a different version of the base that was not retained.
+	 * @throws BioinformaticsException when the base cannot be read.
+	 */
+	public Alignment readDelta(String filename, Alignment base, long baseChecksum)
+			throws IOException, BioinformaticsException {
+		Timer.Sample sample = time("readDelta", filename);
+		try (sample) {
+			BufferedReader in = new BufferedReader(new FileReader(filename));
+			try {
+				DeltaAlignmentFile.Header header = DeltaAlignmentFile.readHeader(in);
+				String baseFilename = header.baseFilename;
+				if (base != null && baseChecksum != header.baseChecksum) {
+					base = null;
+				}
+				if (base == null) {
+					if (DeltaAlignmentFile.isDelta(baseFilename)) {
+						throw new IOException("The base of " + filename + " is itself a delta.");
+					}
+					if (getFileChecksum(baseFilename) != header.baseChecksum) {
+						baseFilename = getRetainedFilename(header.baseFilename, header.baseChecksum);
+						if (!fileExists(baseFilename) || getFileChecksum(baseFilename) != header.baseChecksum) {
+							throw new IOException(filename + " does not match the current version of "
+									+ header.baseFilename);
+						}
+					}
+				}
+
+				AlignmentDelta delta = DeltaAlignmentFile.read(in, packedSequences);
+				if (base == null) {
+					base = readAlignment(baseFilename);
+				}
+				return delta.apply(base);
+			} catch (IllegalArgumentException ex) {
+				throw new IOException(filename + ": " + ex.getMessage());
+			} finally {
+				in.close();
+			}
 		}
+	}
 
-		return alignment;
+	/**
+	 * Opens a FASTA file for reading one genome at a time. The caller must close
+	 * the returned reader.
+	 * 
+	 * @param filename - the path/filename of the FASTA file.
+	 * @return a reader that returns the genomes of the file in order.
+	 * @throws IOException when the file cannot be opened.
+	 */
+	public FastaReader streamGenomes(String filename) throws IOException {
+		return new FastaReader(new BufferedReader(new FileReader(filename)), packedSequences);
+	}
+
+	/**
+	 * Computes the difference score of the alignment in a FASTA file in a single
+	 * pass, keeping only the reference genome and the current genome in memory.
+	 * 
+	 * @param filename - the path/filename of the FASTA file.
+	 * @return the difference score of the alignment in the file.
+	 * @throws IOException when the file cannot be read.
+	 * @throws ArrayIndexOutOfBoundsException when a genome is shorter than the
+	 * reference genome.
+	 */
+	public int streamScore(String filename) throws IOException, ArrayIndexOutOfBoundsException {
+		Timer.Sample sample = time("streamScore", filename);
+		try (sample) {
+			int diffScore = 0;
+			FastaReader fastaReader = streamGenomes(filename);
+
+			try {
+				if (fastaReader.hasNext()) {
+					Genome referenceGenome = fastaReader.next();
+					while (fastaReader.hasNext()) {
+						diffScore += fastaReader.next().getScore(referenceGenome);
+					}
+				}
+			} catch (UncheckedIOException ex) {
+				throw ex.getCause();
+			} finally {
+				fastaReader.close();
+			}
+			return diffScore;
+		}
+	}
+
+	/**
+	 * Searches the genomes of a FASTA file for a batch of sequences in a single
+	 * pass over the file.
+	 * 
+	 * @param filename - the path/filename of the FASTA file.
+	 * @param sequences - the sequences to search for.
+	 * @return the genomes and positions at which each sequence occurs.
+	 * @throws IOException when the file cannot be read.
+	 */
+	public SearchResult streamSearch(String filename, List<String> sequences) throws IOException {
+		Timer.Sample sample = time("streamSearch", filename);
+		try (sample) {
+			MultiPatternMatcher matcher = new MultiPatternMatcher(sequences);
+			GenomeDictionary dictionary = new GenomeDictionary();
+			SearchResult result = new SearchResult(matcher.getPatterns(), dictionary);
+			FastaReader fastaReader = streamGenomes(filename);
+
+			try {
+				while (fastaReader.hasNext()) {
+					Genome genome = fastaReader.next();
+					int key = dictionary.intern(genome.getId());
+					matcher.scan(genome, (pattern, position) -> {
+						result.addHit(pattern, key, position);
+						return true;
+					});
+				}
+			} catch (UncheckedIOException ex) {
+				throw ex.getCause();
+			} finally {
+				fastaReader.close();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Writes the SNP view of the alignment in a FASTA file in a single pass,
+	 * keeping only the reference genome and the current genome in memory.
+	 * 
+	 * @param filename - the path/filename of the FASTA file.
+	 * @param writer - the writer that receives the SNP view.
+	 * @throws IOException when the file cannot be read or the output written.
+	 */
+	public void streamSNP(String filename, Writer writer) throws IOException {
+		Timer.Sample sample = time("streamSNP", filename);
+		try (sample) {
+			SNPAdapter snpAdapter = new SNPAdapter();
+			FastaReader fastaReader = streamGenomes(filename);
+
+			try {
+				if (fastaReader.hasNext()) {
+					Genome referenceGenome = fastaReader.next();
+					referenceGenome.writeTo(writer);
+					while (fastaReader.hasNext()) {
+						snpAdapter.writeGenome(fastaReader.next(), referenceGenome, writer);
+					}
+				}
+			} catch (UncheckedIOException ex) {
+				throw ex.getCause();
+			} finally {
+				fastaReader.close();
+			}
+		}
 	}
 	
 	public String readScore(String filename) throws IOException{
-		String score = "";
-		BufferedReader reader = new BufferedReader(new FileReader(filename));
+		Timer.Sample sample = time("readScore", filename);
+		try (sample) {
+			String score = "";
+			BufferedReader reader = new BufferedReader(new FileReader(filename));
 		
-		score = reader.readLine();
+			score = reader.readLine();
 				
-		if (reader != null) {
-			reader.close();
-		}
+			if (reader != null) {
+				reader.close();
+			}
 
-		return score;
+			return score;
+		}
 	}
 	
 	public boolean fileExists(String filename) {
 		return (new File(filename)).exists();		
 	}
 
+	/**
+	 * Returns the stamp that identifies the current version of a file: its size,
+	 * its modification time and its file key (see FileStamp).
+	 * 
+	 * @param filename - the path/filename of the file.
+	 * @return the stamp of the file, or null if it does not exist.
+	 */
+	public FileStamp getFileStamp(String filename) {
+		return FileStamp.of(filename);
+	}
+
+	/**
+	 * Returns the CRC32 checksum of the contents of a file. The checksum is kept
+	 * for as long as the stamp of the file is unchanged, and the DataWriter
+	 * keeps the checksum of every file it writes, so a file is only read to
+	 * compute it when it was changed by another means.
+	 * 
+	 * @param filename - the path/filename of the file.
+	 * @return the checksum of the file.
+	 * @throws IOException when the file cannot be read.
+	 */
+	public long getFileChecksum(String filename) throws IOException {
+		AlignmentCache cache = AlignmentCache.getInstance();
+		FileStamp stamp = getFileStamp(filename);
+		Long cached = cache.getChecksum(filename, stamp);
+		MetricsRegistry metrics = MetricsRegistry.getInstance();
+		if (cached != null) {
+			metrics.counter(MetricsRegistry.CACHE_HITS, "DataReader.getFileChecksum").increment();
+			return cached;
+		}
+		metrics.counter(MetricsRegistry.CACHE_MISSES, "DataReader.getFileChecksum").increment();
+
+		long checksum = computeChecksum(filename);
+		cache.putChecksum(filename, stamp, checksum);
+		return checksum;
+	}
+
+	// Reads a file to compute the CRC32 checksum of its contents.
+	private long computeChecksum(String filename) throws IOException {
+		Timer.Sample sample = time("getFileChecksum", filename);
+		try (sample) {
+			CRC32 checksum = new CRC32();
+			byte[] buffer = new byte[1 << 16];
+			InputStream in = new FileInputStream(filename);
+			try {
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					checksum.update(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+			return checksum.getValue();
+		}
+	}
+
+	/**
+	 * Returns the name of the file that holds the k-mer index of an alignment file.
+	 * 
+	 * @param filename - the path/filename of the alignment file.
+	 * @return the path/filename of its index file.
+	 */
+	public String getIndexFilename(String filename) {
+		return filename + ".kmers";
+	}
+
+	/**
+	 * Reads the k-mer index stored next to the given alignment file and attaches
+	 * it to the alignment read from that file.
+	 * 
+	 * @param filename - the path/filename of the alignment file.
+	 * @param alignment - the alignment read from the file.
+	 * @return the index, or null if there is no index file or it belongs to
+	 * another version of the alignment file, i.e. the checksum of the contents
+	 * of the alignment file differs.
+	 * @throws IOException when the index file cannot be read.
+	 */
+	public KmerIndex readIndex(String filename, Alignment alignment) throws IOException {
+		String indexFilename = getIndexFilename(filename);
+		if (!fileExists(indexFilename)) {
+			return null;
+		}
+		// Timed on its own, before the index is.
+		long checksum = getFileChecksum(filename);
+
+		Timer.Sample sample = time("readIndex", indexFilename);
+		try (sample) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFilename)));
+			try {
+				return KmerIndex.readFrom(in, alignment, checksum);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
 }
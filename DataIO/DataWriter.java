@@ -1,11 +1,39 @@
 package dataio;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
+import alignment.Alignment;
+import alignment.AlignmentDelta;
+import metrics.MetricsRegistry;
+import metrics.Timer;
+
+/**
+ * The DataWriter class writes the files of the repository. A file is never
+ * written in place: its new contents go to a temporary file in the same
+ * directory, which is synced to disk and then atomically renamed over the
+ * file, so that after a crash the file holds either its old or its new
+ * contents, never a part of them.
+ *
+ * The rename itself is only durable once the directory is synced too. An
+ * action that writes several files can share that cost by doing its writes
+ * within a batch (see beginBatch), which syncs each directory once at its end
+ * instead of after every file.
+ */
 public class DataWriter {
 
 	/**
@@ -20,17 +48,90 @@ public class DataWriter {
 	 */
 	private DataWriter() {}
 
+	/**
+	 * The directories with files renamed or deleted by the current thread that
+	 * still have to be synced, while a batch is open.
+	 */
+	private final ThreadLocal<Batch> batches = new ThreadLocal<>();
+
+	/**
+	 * The Batch class defers the syncing of directories until the batch is
+	 * closed, e.g. at the end of a try-with-resources statement. Batches opened
+	 * while one is already open on the same thread join it.
+	 */
+	public class Batch implements AutoCloseable {
+		private final LinkedHashSet<File> directories = new LinkedHashSet<>();
+		private int depth = 1;
+
+		private Batch() {
+		}
+
+		/**
+		 * Syncs the directories written to so far in the batch right away, e.g.
+		 * before writes that must not become durable before the earlier ones.
+		 */
+		public void sync() {
+			for (File directory : directories) {
+				syncDirectory(directory);
+			}
+			directories.clear();
+		}
+
+		/**
+		 * Syncs the directories written to during the batch, once the outermost
+		 * batch of the thread is closed.
+		 */
+		@Override
+		public void close() {
+			if (--depth > 0) {
+				return;
+			}
+			batches.remove();
+			sync();
+		}
+	}
+
 	/**
 	 * Returns an instance of this class.
 	 * @return
 	 */
-	public static DataWriter getInstance() {
+	public static synchronized DataWriter getInstance() {
 		if (dataWriter == null) {
 			dataWriter = new DataWriter();
 		}
 		return dataWriter;
 	}
 	
+	/**
+	 * Writes the content of a file to a writer. The type parameter is the
+	 * checked exception, besides IOException, that the content may throw.
+	 */
+	public interface ContentWriter<E extends Exception> {
+		void writeTo(Writer writer) throws IOException, E;
+	}
+
+	// Writes the content of a file to a stream.
+	interface StreamWriter<E extends Exception> {
+		void writeTo(OutputStream out) throws IOException, E;
+	}
+
+	/**
+	 * Starts a batch of writes on the current thread, which syncs the
+	 * directories of the files written during it only when it is closed.
+	 * 
+	 * @return the batch, to be closed when the writes are done.
+	 */
+	public Batch beginBatch() {
+		Batch batch = batches.get();
+		if (batch == null) {
+			batch = new Batch();
+			batches.set(batch);
+		} else {
+			batch.depth++;
+		}
+		return batch;
+	}
+
 	/**
 	 * 
 	 * 
@@ -38,40 +139,235 @@ public class DataWriter {
 	 * @throws IOException
 	 */
 	public void write(String filename, String data) throws NumberFormatException, IOException {
-		BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
-		
-		writer.write(data);
+		write(filename, writer -> writer.write(data));
+	}
 
-		if (writer != null) {
-			writer.close();
+	/**
+	 * Writes a file whose content is produced by the given ContentWriter, which
+	 * writes straight to a buffered writer on a temporary file that replaces the
+	 * file when it is complete. The content is never held in memory as a whole.
+	 * 
+	 * @param filename - the path/filename of the file to write.
+	 * @param content - writes the content of the file.
+	 * @throws IOException when the file cannot be written.
+	 * @throws E when the content throws it.
+	 */
+	public <E extends Exception> void write(String filename, ContentWriter<E> content) throws IOException, E {
+		Timer.Sample sample = time("write");
+		try (sample) {
+			writeText(filename, content);
+			countWritten("write", filename);
 		}
 	}
 		
 	/**
-	 * Copies the contents of the file at 'source' to the file at 'destination'.
+	 * Writes an alignment in the binary format, which DataReader.readAlignment
+	 * recognizes and reads without parsing FASTA text.
+	 * 
+	 * @param filename - the path/filename of the file to write.
+	 * @param alignment - the alignment to write.
+	 * @throws IOException when the alignment cannot be written.
+	 */
+	public void writeBinaryAlignment(String filename, Alignment alignment) throws IOException {
+		Timer.Sample sample = time("writeBinaryAlignment");
+		try (sample) {
+			replace(filename, out -> BinaryAlignmentFile.write(out, alignment));
+			countWritten("writeBinaryAlignment", filename);
+		}
+	}
+
+	/**
+	 * Writes an alignment as a delta against a base alignment file.
+	 * 
+	 * @param filename - the path/filename of the file to write.
+	 * @param delta - the delta of the alignment against the base.
+	 * @param baseChecksum - the checksum of the base file, see DataReader.getFileChecksum.
+	 * @param baseFilename - the path/filename of the base file.
+	 * @throws IOException when the delta cannot be written.
+	 */
+	public void writeDelta(String filename, AlignmentDelta delta, long baseChecksum, String baseFilename)
+			throws IOException {
+		Timer.Sample sample = time("writeDelta");
+		try (sample) {
+			writeText(filename, writer -> DeltaAlignmentFile.write(writer, delta, baseChecksum, baseFilename));
+			countWritten("writeDelta", filename);
+		}
+	}
+
+	/**
+	 * Writes the k-mer index of an alignment next to the file the alignment was
+	 * written to.
+	 * 
+	 * @param indexFilename - the path/filename of the index file.
+	 * @param alignment - the alignment whose index to write.
+	 * @param checksum - the checksum of the alignment file, see DataReader.getFileChecksum.
+	 * @throws IOException when the index cannot be written.
+	 */
+	public void writeIndex(String indexFilename, Alignment alignment, long checksum) throws IOException {
+		Timer.Sample sample = time("writeIndex");
+		try (sample) {
+			replace(indexFilename, out -> {
+				DataOutputStream data = new DataOutputStream(out);
+				alignment.getIndex().writeTo(data, alignment, checksum);
+				data.flush();
+			});
+			countWritten("writeIndex", indexFilename);
+		}
+	}
+
+	/**
+	 * Copies the contents of the file at 'source' to the file at 'destination',
+	 * which is replaced as a whole once the copy is complete.
 	 * 
 	 * @param source - the path/filename to the source file.
 	 * @param destination - the path/filename to the destination file.
 	 * @throws IOException 
 	 */
 	public void copyFile(String source, String destination) throws IOException {
-		File sourceFile = new File(source);
-		File destFile = new File(destination);
-		
-		if (destFile.exists()) {
-			destFile.delete();
+		Timer.Sample sample = time("copyFile");
+		try (sample) {
+			copy(source, destination);
+			countWritten("copyFile", destination);
 		}
-		
-		Files.copy(sourceFile.toPath(), destFile.toPath());
 	}
 	
 	/**
-	 * Deletes the file with name/path given in the parameter.
+	 * Makes the file at 'destination' a hard link to the file at 'source', so
+	 * that both have the same contents without copying them; the destination is
+	 * replaced atomically. Since files are never written in place, writing
+	 * either file later replaces it with a file of its own and leaves the other
+	 * unchanged. Where the file system has no hard links, the file is copied.
+	 * 
+	 * @param source - the path/filename to the source file.
+	 * @param destination - the path/filename to the destination file.
+	 * @throws IOException when the destination cannot be written.
+	 */
+	public void linkFile(String source, String destination) throws IOException {
+		Timer.Sample sample = time("linkFile");
+		try (sample) {
+			File file = new File(destination).getAbsoluteFile();
+			File directory = file.getParentFile();
+			File temporary = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+			try {
+				Files.delete(temporary.toPath());
+				Files.createLink(temporary.toPath(), new File(source).toPath());
+				Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (UnsupportedOperationException | IOException ex) {
+				Files.deleteIfExists(temporary.toPath());
+				copy(source, destination);
+				countWritten("linkFile", destination);
+				return;
+			} finally {
+				AlignmentCache.getInstance().invalidate(destination);
+			}
+			// The link has the stamp, and so the checksum, of the source.
+			AlignmentCache cache = AlignmentCache.getInstance();
+			FileStamp stamp = FileStamp.of(destination);
+			Long checksum = cache.getChecksum(source, stamp);
+			if (checksum != null) {
+				cache.putChecksum(destination, stamp, checksum);
+			}
+			synced(directory);
+		}
+	}
+
+	/**
+	 * Deletes the file with name/path given in the parameter, if it exists.
 	 * 
 	 * @param filename - the path/filename to the file to delete.
+	 * @throws IOException when the file exists but cannot be deleted, e.g.
+	 * because it is still memory-mapped on a platform that forbids that.
+	 */
+	public void deleteFile(String filename) throws IOException {
+		Timer.Sample sample = time("deleteFile");
+		try (sample) {
+			File targetFile = new File(filename).getAbsoluteFile();
+			// Drop the cached alignment first, which may map the file.
+			AlignmentCache.getInstance().invalidate(filename);
+			if (Files.deleteIfExists(targetFile.toPath())) {
+				synced(targetFile.getParentFile());
+			}
+		}
+	}
+
+	// Writes a file whose content is produced by a ContentWriter, untimed, for
+	// the timed operations that write text files.
+	private <E extends Exception> void writeText(String filename, ContentWriter<E> content) throws IOException, E {
+		replace(filename, out -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+			content.writeTo(writer);
+			writer.flush();
+		});
+	}
+
+	// Copies a file, untimed, for the timed operations that copy files.
+	private void copy(String source, String destination) throws IOException {
+		File sourceFile = new File(source);
+		replace(destination, out -> Files.copy(sourceFile.toPath(), out));
+	}
+
+	/**
+	 * Replaces a file with the given content: writes it to a temporary file in
+	 * the same directory, syncs that file to disk and renames it over the file.
+	 * Alignments still mapped from the previous contents of the file remain
+	 * valid, since the rename leaves those contents in place until unmapped.
+	 * When the content fails, the file is left unchanged. The checksum of the
+	 * content is computed as it is written and kept in the alignment cache, so
+	 * that DataReader.getFileChecksum does not read the file again.
 	 */
-	public void deleteFile(String filename) {
-		File targetFile = new File(filename);
-		targetFile.delete();		
+	<E extends Exception> void replace(String filename, StreamWriter<E> content) throws IOException, E {
+		File file = new File(filename).getAbsoluteFile();
+		File directory = file.getParentFile();
+		File temporary = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+		CRC32 checksum = new CRC32();
+		FileStamp stamp;
+		try {
+			try (FileOutputStream out = new FileOutputStream(temporary)) {
+				OutputStream buffered = new BufferedOutputStream(new CheckedOutputStream(out, checksum));
+				content.writeTo(buffered);
+				buffered.flush();
+				out.getChannel().force(false);
+			}
+			// The rename keeps the stamp of the temporary file.
+			stamp = FileStamp.of(temporary.getPath());
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary.toPath());
+			AlignmentCache.getInstance().invalidate(filename);
+		}
+		AlignmentCache.getInstance().putChecksum(filename, stamp, checksum.getValue());
+		synced(directory);
+	}
+
+	// Syncs a directory in which a file was renamed or deleted, or leaves that
+	// to the end of the batch of the current thread.
+	private void synced(File directory) {
+		Batch batch = batches.get();
+		if (batch != null) {
+			batch.directories.add(directory);
+		} else {
+			syncDirectory(directory);
+		}
+	}
+
+	// Forces the entries of a directory to disk. Not every platform can open a
+	// directory for that (Windows cannot); there the sync is left to the system.
+	static void syncDirectory(File directory) {
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException ex) {
+			// The rename is as durable as the platform makes it.
+		}
+	}
+
+	// Times a call.
+	private Timer.Sample time(String operation) {
+		return MetricsRegistry.getInstance().timer(MetricsRegistry.IO_SECONDS, "DataWriter." + operation).start();
+	}
+
+	// Counts the bytes of a file written by a call.
+	private void countWritten(String operation, String filename) {
+		MetricsRegistry.getInstance().counter(MetricsRegistry.IO_WRITTEN_BYTES, "DataWriter." + operation)
+				.increment(new File(filename).length());
 	}
 }
@@ -0,0 +1,190 @@
+package dataio;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import alignment.AlignmentDelta;
+import alignment.Genome;
+import alignment.PackedSequence;
+
+/**
+ * The DeltaAlignmentFile class reads and writes an alignment stored as an
+ * AlignmentDelta against a base alignment file. The file is text, with a
+ * header line "#MSADELTA 1 [checksum of the base] [path/filename of the base]"
+ * followed by one entry per genome:
+ *
+ * - "=[id]" for a genome of the base, followed by one "@[position] [bases]"
+ *   line per run of edited bases;
+ * - "+[id]" for a genome stored whole, followed by its nucleotides on one line.
+ *
+ * The genomes are listed in the order of the alignment. The checksum makes
+ * sure that the delta is only applied to the base it was computed against.
+ */
+final class DeltaAlignmentFile {
+	static final String MAGIC = "#MSADELTA";
+	private static final int VERSION = 1;
+
+	/**
+	 * The header of a delta file.
+	 */
+	static class Header {
+		final long baseChecksum;
+		final String baseFilename;
+
+		Header(long baseChecksum, String baseFilename) {
+			this.baseChecksum = baseChecksum;
+			this.baseFilename = baseFilename;
+		}
+	}
+
+	private DeltaAlignmentFile() {
+	}
+
+	/**
+	 * Returns true if the given file starts with the header of this format.
+	 *
+	 * @param filename - the path/filename of the file.
+	 * @return true if the file is a delta file; otherwise false.
+	 * @throws IOException when the file cannot be read.
+	 */
+	static boolean isDelta(String filename) throws IOException {
+		byte[] magic = MAGIC.getBytes(StandardCharsets.US_ASCII);
+		try (InputStream in = new FileInputStream(filename)) {
+			byte[] start = in.readNBytes(magic.length);
+			return Arrays.equals(start, magic);
+		}
+	}
+
+	/**
+	 * Writes a delta.
+	 *
+	 * @param writer - the writer that receives the delta.
+	 * @param delta - the delta to write.
+	 * @param baseChecksum - the checksum of the base file.
+	 * @param baseFilename - the path/filename of the base file.
+	 * @throws IOException when the writer fails.
+	 */
+	static void write(Writer writer, AlignmentDelta delta, long baseChecksum, String baseFilename)
+			throws IOException {
+		writer.write(MAGIC + " " + VERSION + " " + Long.toHexString(baseChecksum) + " " + baseFilename + "\n");
+
+		for (int i = 0; i < delta.size(); i++) {
+			Genome genome = delta.getGenome(i);
+			if (genome != null) {
+				writer.write("+");
+				genome.writeTo(writer);
+				writer.write("\n");
+				continue;
+			}
+
+			writer.write("=" + delta.getId(i) + "\n");
+			int[] positions = delta.getEditPositions(i);
+			char[] symbols = delta.getEditSymbols(i);
+			// Adjacent edits are written as one run of bases.
+			int start = 0;
+			while (start < positions.length) {
+				int end = start + 1;
+				while (end < positions.length && positions[end] == positions[end - 1] + 1) {
+					end++;
+				}
+				writer.write("@" + positions[start] + " ");
+				writer.write(symbols, start, end - start);
+				writer.write("\n");
+				start = end;
+			}
+		}
+	}
+
+	/**
+	 * Reads the header of a delta file.
+	 *
+	 * @param reader - the reader positioned at the start of the file.
+	 * @return the header.
+	 * @throws IOException when the header cannot be read or is malformed.
+	 */
+	static Header readHeader(BufferedReader reader) throws IOException {
+		String line = reader.readLine();
+		String[] fields = line == null ? new String[0] : line.split(" ", 4);
+		if (fields.length != 4 || !fields[0].equals(MAGIC) || !fields[1].equals(String.valueOf(VERSION))) {
+			throw new IOException("Not an alignment delta file.");
+		}
+		try {
+			return new Header(Long.parseUnsignedLong(fields[2], 16), fields[3]);
+		} catch (NumberFormatException ex) {
+			throw new IOException("Malformed alignment delta file.");
+		}
+	}
+
+	/**
+	 * Reads the genomes of a delta file, after its header.
+	 *
+	 * @param reader - the reader positioned after the header.
+	 * @param packed - whether to store the whole genomes as packed sequences.
+	 * @return the delta.
+	 * @throws IOException when the delta cannot be read or is malformed.
+	 */
+	static AlignmentDelta read(BufferedReader reader, boolean packed) throws IOException {
+		AlignmentDelta delta = new AlignmentDelta();
+		String id = null;
+		int[] positions = new int[16];
+		char[] symbols = new char[16];
+		int count = 0;
+
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.startsWith("@")) {
+				int space = line.indexOf(' ');
+				if (id == null || space < 0) {
+					throw new IOException("Malformed alignment delta file.");
+				}
+				int position;
+				try {
+					position = Integer.parseInt(line.substring(1, space));
+				} catch (NumberFormatException ex) {
+					throw new IOException("Malformed alignment delta file.");
+				}
+				for (int i = space + 1; i < line.length(); i++) {
+					if (count == positions.length) {
+						positions = Arrays.copyOf(positions, count * 2);
+						symbols = Arrays.copyOf(symbols, count * 2);
+					}
+					positions[count] = position + i - space - 1;
+					symbols[count++] = line.charAt(i);
+				}
+				continue;
+			}
+
+			if (id != null) {
+				delta.addEdited(id, Arrays.copyOf(positions, count), Arrays.copyOf(symbols, count));
+				id = null;
+				count = 0;
+			}
+			if (line.startsWith("=")) {
+				id = line.substring(1);
+			} else if (line.startsWith("+")) {
+				String nucleotides = reader.readLine();
+				if (nucleotides == null) {
+					throw new IOException("Malformed alignment delta file.");
+				}
+				Genome genome = new Genome(line.substring(1));
+				if (packed) {
+					genome.setNucleotides(new PackedSequence(nucleotides));
+				} else {
+					genome.setNucleotides(nucleotides.toCharArray());
+				}
+				delta.addGenome(genome);
+			} else if (!line.isEmpty()) {
+				throw new IOException("Malformed alignment delta file.");
+			}
+		}
+		if (id != null) {
+			delta.addEdited(id, Arrays.copyOf(positions, count), Arrays.copyOf(symbols, count));
+		}
+		return delta;
+	}
+}
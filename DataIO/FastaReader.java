@@ -0,0 +1,92 @@
+package dataio;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import alignment.Genome;
+import alignment.PackedSequence;
+
+/**
+ * The FastaReader class parses a FASTA file one genome at a time. A record
+ * starts with a '>' header line and its sequence may span any number of lines;
+ * blank lines are ignored. Only the record being parsed is held in memory, so
+ * files larger than the heap can be processed in a single pass.
+ */
+public class FastaReader implements Iterator<Genome>, Closeable {
+	private final BufferedReader reader;
+	// Whether genomes are stored with 2 bits per base.
+	private final boolean packed;
+	// The header line of the next record, or null at the end of the file.
+	private String nextHeader;
+
+	/**
+	 * Creates a reader over the given FASTA data. Any lines before the first
+	 * header are skipped.
+	 *
+	 * @param reader - the FASTA data.
+	 * @param packed - whether to store the genomes as packed sequences.
+	 * @throws IOException when the data cannot be read.
+	 */
+	public FastaReader(Reader reader, boolean packed) throws IOException {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		this.packed = packed;
+
+		String line;
+		while ((line = this.reader.readLine()) != null && !line.trim().startsWith(">")) {
+			// Skip everything before the first record.
+		}
+		this.nextHeader = line;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return nextHeader != null;
+	}
+
+	/**
+	 * Returns the next genome of the file.
+	 *
+	 * @throws UncheckedIOException when the data cannot be read.
+	 */
+	@Override
+	public Genome next() {
+		if (nextHeader == null) {
+			throw new NoSuchElementException();
+		}
+
+		Genome genome = new Genome(nextHeader);
+		StringBuilder sequence = new StringBuilder();
+		String line;
+		try {
+			while ((line = reader.readLine()) != null) {
+				String trimmed = line.trim();
+				if (trimmed.startsWith(">")) {
+					break;
+				}
+				sequence.append(trimmed);
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		nextHeader = line;
+
+		if (packed) {
+			genome.setNucleotides(new PackedSequence(sequence));
+		} else {
+			char[] nucleotides = new char[sequence.length()];
+			sequence.getChars(0, nucleotides.length, nucleotides, 0);
+			genome.setNucleotides(nucleotides);
+		}
+		return genome;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
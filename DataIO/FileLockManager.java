@@ -0,0 +1,111 @@
+package dataio;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The FileLockManager class keeps a read/write lock per file of the repository,
+ * so that actions of different users can run at the same time without
+ * interleaving unsafely: any number of actions may read a file at once, while
+ * an action that writes (or deletes) a file has it to itself.
+ *
+ * An action locks all the files it touches up front with lock(reads, writes)
+ * and releases them when it ends. The locks are always taken in the order of
+ * the absolute paths of the files, so two actions can never wait for each
+ * other; for the same reason an action must not lock more files while it
+ * holds locks.
+ */
+public class FileLockManager {
+
+	/**
+	 * Stores an instance of this FileLockManager class to model a singleton.
+	 */
+	private static FileLockManager fileLockManager = null;
+
+	private final ConcurrentHashMap<String, ReentrantReadWriteLock> locks;
+
+	/**
+	 * The Locks class holds the locks taken for an action, which are released
+	 * when it is closed, e.g. at the end of a try-with-resources statement.
+	 */
+	public static class Locks implements AutoCloseable {
+		private final ArrayList<Lock> held;
+
+		private Locks(ArrayList<Lock> held) {
+			this.held = held;
+		}
+
+		/**
+		 * Releases the locks, in the reverse order in which they were taken.
+		 */
+		@Override
+		public void close() {
+			for (int i = held.size() - 1; i >= 0; i--) {
+				held.get(i).unlock();
+			}
+			held.clear();
+		}
+	}
+
+	/**
+	 * A private constructor to prevent instantiating an object of this class.
+	 */
+	private FileLockManager() {
+		locks = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Returns an instance of this class.
+	 *
+	 * @return the lock manager.
+	 */
+	public static synchronized FileLockManager getInstance() {
+		if (fileLockManager == null) {
+			fileLockManager = new FileLockManager();
+		}
+		return fileLockManager;
+	}
+
+	/**
+	 * Locks files for reading and for writing, waiting until no other action
+	 * holds a conflicting lock. A file given in both collections is locked for
+	 * writing; null paths are ignored.
+	 *
+	 * @param reads - the path/filenames of the files the action reads.
+	 * @param writes - the path/filenames of the files the action writes or deletes.
+	 * @return the locks, to be closed when the action ends.
+	 */
+	public Locks lock(Collection<String> reads, Collection<String> writes) {
+		// The files in the order of their paths, each with whether it is written.
+		TreeMap<String, Boolean> files = new TreeMap<>();
+		for (String filename : reads) {
+			if (filename != null) {
+				files.putIfAbsent(key(filename), false);
+			}
+		}
+		for (String filename : writes) {
+			if (filename != null) {
+				files.put(key(filename), true);
+			}
+		}
+
+		ArrayList<Lock> held = new ArrayList<>(files.size());
+		for (Map.Entry<String, Boolean> file : files.entrySet()) {
+			ReentrantReadWriteLock lock = locks.computeIfAbsent(file.getKey(), key -> new ReentrantReadWriteLock());
+			Lock fileLock = file.getValue() ? lock.writeLock() : lock.readLock();
+			fileLock.lock();
+			held.add(fileLock);
+		}
+		return new Locks(held);
+	}
+
+	private static String key(String filename) {
+		return new File(filename).getAbsolutePath();
+	}
+}
@@ -0,0 +1,74 @@
+package dataio;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The FileStamp class identifies a version of a file by its size, its
+ * modification time and, where the file system has one, its file key (e.g.
+ * the device and inode on Unix). The parts are compared one by one, so two
+ * versions never collide the way a hash of them could. Since the DataWriter
+ * replaces a file by renaming a new file over it, a rewritten file also gets
+ * a new file key, even when its size and (coarse) modification time stay the
+ * same.
+ */
+public final class FileStamp {
+	private final long length;
+	// The modification time in nanoseconds, as precise as the file system keeps it.
+	private final long modified;
+	// The file key of the file; null where the file system has none.
+	private final Object fileKey;
+
+	private FileStamp(long length, long modified, Object fileKey) {
+		this.length = length;
+		this.modified = modified;
+		this.fileKey = fileKey;
+	}
+
+	/**
+	 * Returns the stamp of a file. A file that is renamed keeps its stamp.
+	 *
+	 * @param filename - the path/filename of the file.
+	 * @return the stamp of the file, or null if it does not exist.
+	 */
+	static FileStamp of(String filename) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(Paths.get(filename), BasicFileAttributes.class);
+			return new FileStamp(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+					attributes.fileKey());
+		} catch (IOException ex) {
+			return null;
+		}
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getModified() {
+		return modified;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof FileStamp)) {
+			return false;
+		}
+		FileStamp other = (FileStamp) object;
+		return length == other.length && modified == other.modified && Objects.equals(fileKey, other.fileKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(length, modified, fileKey);
+	}
+
+	@Override
+	public String toString() {
+		return length + " bytes, modified " + modified + (fileKey == null ? "" : ", key " + fileKey);
+	}
+}
@@ -0,0 +1,203 @@
+package dataio;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import alignment.Alignment;
+import alignment.ArraySequence;
+import alignment.Genome;
+import alignment.ISequence;
+import alignment.MappedSequence;
+import alignment.PackedSequence;
+import alignment.StandardAlignment;
+
+/**
+ * The MappedFastaLoader class loads a FASTA file by memory-mapping it instead
+ * of decoding it through a Reader. The file is mapped in windows that end on a
+ * record boundary; the loader indexes the offset of every record, and each
+ * genome whose lines have a regular width reads its nucleotides straight from
+ * the mapped region through a MappedSequence. Records with irregular lines
+ * (e.g. blank lines inside a sequence) are decoded into ordinary storage.
+ */
+public class MappedFastaLoader {
+	// The preferred size of a mapped window.
+	static final int WINDOW_SIZE = 1 << 30;
+
+	private final boolean packed;
+
+	/**
+	 * Creates a loader.
+	 *
+	 * @param packed - whether records that cannot be mapped are stored packed.
+	 */
+	public MappedFastaLoader(boolean packed) {
+		this.packed = packed;
+	}
+
+	/**
+	 * Loads the alignment in the given FASTA file.
+	 *
+	 * @param filename - the path/filename of the FASTA file.
+	 * @return the alignment in the file.
+	 * @throws IOException when the file cannot be mapped, or a single record is
+	 * larger than a mapped window can be.
+	 */
+	public Alignment load(String filename) throws IOException {
+		Alignment alignment = new StandardAlignment();
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			long start = 0;
+			long windowSize = WINDOW_SIZE;
+
+			while (start < fileSize) {
+				long size = Math.min(windowSize, fileSize - start);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+				boolean lastWindow = start + size == fileSize;
+
+				int consumed = parseWindow(buffer, lastWindow, alignment);
+				if (consumed == 0) {
+					// The window does not hold a complete record: map a larger one.
+					if (windowSize >= Integer.MAX_VALUE) {
+						throw new IOException("A record of " + filename + " is too large to be mapped.");
+					}
+					windowSize = Math.min(windowSize * 2, Integer.MAX_VALUE);
+					continue;
+				}
+				start += consumed;
+			}
+		}
+		return alignment;
+	}
+
+	/**
+	 * Adds the complete records in the window to the alignment.
+	 *
+	 * @return the number of bytes of the window that were consumed.
+	 */
+	private int parseWindow(MappedByteBuffer buffer, boolean lastWindow, Alignment alignment) {
+		int limit = buffer.limit();
+		int position = 0;
+
+		// Skip everything before the first record.
+		while (position < limit && !startsRecord(buffer, position)) {
+			position = nextLine(buffer, position, limit);
+		}
+		if (position >= limit) {
+			return lastWindow ? limit : 0;
+		}
+
+		while (position < limit) {
+			int headerEnd = lineEnd(buffer, position, limit);
+			int dataStart = nextLine(buffer, position, limit);
+			int recordEnd = dataStart;
+			while (recordEnd < limit && !startsRecord(buffer, recordEnd)) {
+				recordEnd = nextLine(buffer, recordEnd, limit);
+			}
+			if (recordEnd >= limit && !lastWindow) {
+				// The record may continue in the next window.
+				break;
+			}
+
+			Genome genome = new Genome(decode(buffer, position, headerEnd));
+			genome.setNucleotides(sequence(buffer, dataStart, recordEnd));
+			alignment.addGenome(genome);
+			position = recordEnd;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns a mapped sequence for the lines in [start, end) if they have a
+	 * regular width, or otherwise decodes them.
+	 */
+	private ISequence sequence(MappedByteBuffer buffer, int start, int end) {
+		int lineWidth = -1;
+		int lineBreak = -1;
+		int length = 0;
+		boolean regular = true;
+		int position = start;
+
+		while (position < end && regular) {
+			int lineEndPosition = lineEnd(buffer, position, end);
+			int next = nextLine(buffer, position, end);
+			int width = lineEndPosition - position;
+			int breakSize = next - lineEndPosition;
+			boolean lastLine = next >= end;
+
+			for (int i = position; i < lineEndPosition && regular; i++) {
+				byte symbol = buffer.get(i);
+				regular = symbol > ' ' && symbol < 0x7F;
+			}
+			if (width == 0) {
+				regular = false;
+			} else if (lineWidth < 0) {
+				lineWidth = width;
+				lineBreak = breakSize;
+			} else if (width > lineWidth || (!lastLine && (width != lineWidth || breakSize != lineBreak))) {
+				regular = false;
+			}
+			length += width;
+			position = next;
+		}
+
+		if (regular) {
+			boolean multiLine = lineWidth > 0 && length > lineWidth;
+			return new MappedSequence(buffer, start, length, multiLine ? lineWidth : 0, lineBreak);
+		}
+
+		StringBuilder nucleotides = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			char symbol = (char) (buffer.get(i) & 0xFF);
+			if (!Character.isWhitespace(symbol)) {
+				nucleotides.append(symbol);
+			}
+		}
+		if (packed) {
+			return new PackedSequence(nucleotides);
+		}
+		return new ArraySequence(nucleotides.toString().toCharArray());
+	}
+
+	// Returns true if the line at the given position is a header line.
+	private static boolean startsRecord(MappedByteBuffer buffer, int position) {
+		byte symbol = buffer.get(position);
+		int limit = buffer.limit();
+		while ((symbol == ' ' || symbol == '\t') && position + 1 < limit) {
+			symbol = buffer.get(++position);
+		}
+		return symbol == '>';
+	}
+
+	// Returns the position of the line terminator of the line at 'position'.
+	private static int lineEnd(MappedByteBuffer buffer, int start, int limit) {
+		int position = start;
+		while (position < limit && buffer.get(position) != '\n') {
+			position++;
+		}
+		if (position > start && buffer.get(position - 1) == '\r') {
+			position--;
+		}
+		return position;
+	}
+
+	// Returns the position of the line after the line at 'position'.
+	private static int nextLine(MappedByteBuffer buffer, int position, int limit) {
+		while (position < limit && buffer.get(position) != '\n') {
+			position++;
+		}
+		return Math.min(position + 1, limit);
+	}
+
+	private static String decode(MappedByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+}
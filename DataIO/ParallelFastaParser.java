@@ -0,0 +1,210 @@
+package dataio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import alignment.Alignment;
+import alignment.Genome;
+import alignment.PackedSequence;
+import alignment.StandardAlignment;
+
+/**
+ * The ParallelFastaParser class parses a large FASTA file on several worker
+ * threads. The file is split into chunks that start at a '>' record boundary,
+ * each chunk is read and parsed by a worker, and the genomes of the chunks are
+ * then added to the alignment in file order, so that the topmost genome stays
+ * the same as with a sequential parse.
+ */
+public class ParallelFastaParser {
+	// The largest number of bytes parsed by a single task.
+	static final int MAX_CHUNK_SIZE = 64 << 20;
+
+	private final int threads;
+	private final boolean packed;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a parser that uses the given number of worker threads.
+	 *
+	 * @param threads - the number of worker threads.
+	 * @param packed - whether to store the genomes as packed sequences.
+	 */
+	public ParallelFastaParser(int threads, boolean packed) {
+		this.threads = threads;
+		this.packed = packed;
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "fasta-parser");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Parses the alignment in the given FASTA file.
+	 *
+	 * @param filename - the path/filename of the FASTA file.
+	 * @return the alignment in the file.
+	 * @throws IOException when the file cannot be read.
+	 */
+	public Alignment parse(String filename) throws IOException {
+		ArrayList<Future<List<Genome>>> chunks = new ArrayList<>();
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(1, (size + threads - 1) / threads));
+
+			long start = 0;
+			while (start < size) {
+				long end = start + chunkSize >= size ? size : nextRecord(channel, start + chunkSize, size);
+				final long from = start;
+				final long to = end;
+				chunks.add(executor.submit((Callable<List<Genome>>) () -> parseChunk(channel, from, to)));
+				start = end;
+			}
+
+			Alignment alignment = new StandardAlignment();
+			for (Future<List<Genome>> chunk : chunks) {
+				for (Genome genome : chunk.get()) {
+					alignment.addGenome(genome);
+				}
+			}
+			return alignment;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing " + filename, ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw new IOException("Unable to parse " + filename, ex.getCause());
+		} finally {
+			for (Future<List<Genome>> chunk : chunks) {
+				chunk.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Stops the worker threads of this parser.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Returns the offset of the first record that starts at or after the given
+	 * offset, or the size of the file if there is none.
+	 */
+	private static long nextRecord(FileChannel channel, long offset, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+		long position = offset;
+		byte previous = 0;
+		if (position > 0) {
+			ByteBuffer one = ByteBuffer.allocate(1);
+			channel.read(one, position - 1);
+			previous = one.get(0);
+		}
+
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				byte current = buffer.get(i);
+				if (current == '>' && previous == '\n') {
+					return position + i;
+				}
+				previous = current;
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Reads and parses the records in [from, to) of the file.
+	 */
+	private List<Genome> parseChunk(FileChannel channel, long from, long to) throws IOException {
+		byte[] bytes = new byte[(int) (to - from)];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, from + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+
+		ArrayList<Genome> genomes = new ArrayList<>();
+		Charset charset = Charset.defaultCharset();
+		int position = 0;
+		Genome genome = null;
+		// The sequence bytes of the current record are compacted to the front of
+		// the region that held the record, since that region is not needed again.
+		int sequenceStart = 0;
+		int sequenceEnd = 0;
+
+		while (position < bytes.length) {
+			int lineEnd = position;
+			while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if (lineEnd > position && bytes[lineEnd - 1] == '\r') {
+				lineEnd--;
+			}
+
+			// Trim the line, as the sequential reader does.
+			int first = position;
+			int last = lineEnd;
+			while (first < last && bytes[first] <= ' ') {
+				first++;
+			}
+			while (last > first && bytes[last - 1] <= ' ') {
+				last--;
+			}
+
+			if (first < last && bytes[first] == '>') {
+				if (genome != null) {
+					finish(genome, bytes, sequenceStart, sequenceEnd);
+					genomes.add(genome);
+				}
+				genome = new Genome(new String(bytes, position, lineEnd - position, charset));
+				sequenceStart = next;
+				sequenceEnd = next;
+			} else if (genome != null) {
+				System.arraycopy(bytes, first, bytes, sequenceEnd, last - first);
+				sequenceEnd += last - first;
+			}
+			position = next;
+		}
+		if (genome != null) {
+			finish(genome, bytes, sequenceStart, sequenceEnd);
+			genomes.add(genome);
+		}
+		return genomes;
+	}
+
+	private void finish(Genome genome, byte[] bytes, int start, int end) {
+		if (packed) {
+			genome.setNucleotides(new PackedSequence(bytes, start, end - start));
+		} else {
+			char[] nucleotides = new char[end - start];
+			for (int i = 0; i < nucleotides.length; i++) {
+				nucleotides[i] = (char) (bytes[start + i] & 0xFF);
+			}
+			genome.setNucleotides(nucleotides);
+		}
+	}
+}
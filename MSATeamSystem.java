@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import dataio.DataReader;
 import dataio.DataWriter;
 import exceptions.BioinformaticsException;
+import metrics.MetricsRegistry;
 import operations.InformaticianActions;
 import operations.SupportActions;
 import operations.TeamLeaderActions;
@@ -18,6 +19,24 @@ public class MSATeamSystem {
 			msaTeamsystem.executor();
 		} catch (BioinformaticsException | NullPointerException | IllegalArgumentException | IOException ex) {
 			ex.printStackTrace();
+		} finally {
+			msaTeamsystem.writeMetrics();
+		}
+	}
+
+	/**
+	 * Writes the timings and byte counts of this run to the file configured by
+	 * 'metricsfile', in the Prometheus text format.
+	 */
+	public void writeMetrics() {
+		String metricsFilename = DataReader.getInstance().getMetricsFilename();
+		if (metricsFilename == null) {
+			return;
+		}
+		try {
+			DataWriter.getInstance().write(metricsFilename, MetricsRegistry.getInstance()::writeTo);
+		} catch (IOException ex) {
+			System.out.println(ex.getMessage());
 		}
 	}
 	
@@ -47,9 +66,7 @@ public class MSATeamSystem {
 		leaderAction.setCurrentUser("Jozef Groenewegen");
 				
 		// Team Leader: copy shared/optimal alignment to users Marc Janssens, Werner Lippens, Yves Colpaert.
-		leaderAction.overwriteUserAlignment("Marc Janssens");		
-		leaderAction.overwriteUserAlignment("Werner Lippens");		
-		leaderAction.overwriteUserAlignment("Yves Colpaert");
+		leaderAction.overwriteUserAlignments("Marc Janssens", "Werner Lippens", "Yves Colpaert");
 		
 		// Team Leader: copy a users’s alignment to the optimal alignment in the repository.
 		leaderAction.promoteUserAlignment("Marc Janssens");
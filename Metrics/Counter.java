@@ -0,0 +1,33 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Counter class is a metric that only goes up, e.g. the number of bytes
+ * read by an operation. It can be incremented from several threads at once.
+ */
+public class Counter {
+	private final LongAdder value = new LongAdder();
+
+	Counter() {
+	}
+
+	public void increment() {
+		value.increment();
+	}
+
+	/**
+	 * Adds an amount to this counter.
+	 *
+	 * @param amount - the amount to add; negative amounts are ignored.
+	 */
+	public void increment(long amount) {
+		if (amount > 0) {
+			value.add(amount);
+		}
+	}
+
+	public long getValue() {
+		return value.sum();
+	}
+}
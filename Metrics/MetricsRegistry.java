@@ -0,0 +1,148 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The MetricsRegistry class keeps the timers and counters of a run, e.g. of
+ * every user action and every DataReader/DataWriter call, so that the time and
+ * bytes spent in parsing, scoring, SNP generation or copying files can be told
+ * apart. A metric is identified by its name and the operation it measures,
+ * which becomes the 'operation' label when the metrics are exported in the
+ * Prometheus text format.
+ */
+public class MetricsRegistry {
+	/**
+	 * Records the duration of every user action.
+	 */
+	public static final String ACTION_SECONDS = "msa_action_seconds";
+	/**
+	 * Records the duration of every DataReader and DataWriter call.
+	 */
+	public static final String IO_SECONDS = "msa_io_seconds";
+	/**
+	 * Counts the bytes of the files read by DataReader calls.
+	 */
+	public static final String IO_READ_BYTES = "msa_io_read_bytes_total";
+	/**
+	 * Counts the bytes of the files written by DataWriter calls.
+	 */
+	public static final String IO_WRITTEN_BYTES = "msa_io_written_bytes_total";
+	/**
+	 * Counts the reads answered from the alignment cache.
+	 */
+	public static final String CACHE_HITS = "msa_cache_hits_total";
+	/**
+	 * Counts the reads that had to parse the file.
+	 */
+	public static final String CACHE_MISSES = "msa_cache_misses_total";
+
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	/**
+	 * Stores an instance of this MetricsRegistry class to model a singleton.
+	 */
+	private static MetricsRegistry registry = null;
+
+	// name -> operation -> metric, sorted so that the export is stable.
+	private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Timer>> timers;
+	private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Counter>> counters;
+
+	/**
+	 * A private constructor to prevent instantiating an object of this class.
+	 */
+	private MetricsRegistry() {
+		timers = new ConcurrentSkipListMap<>();
+		counters = new ConcurrentSkipListMap<>();
+	}
+
+	/**
+	 * Returns an instance of this class.
+	 * 
+	 * @return the registry.
+	 */
+	public static synchronized MetricsRegistry getInstance() {
+		if (registry == null) {
+			registry = new MetricsRegistry();
+		}
+		return registry;
+	}
+
+	/**
+	 * Returns the timer of an operation, creating it on first use.
+	 *
+	 * @param name - the name of the metric, e.g. ACTION_SECONDS.
+	 * @param operation - the operation it times, e.g. "TeamLeaderActions.writeDataToFile".
+	 * @return the timer.
+	 */
+	public Timer timer(String name, String operation) {
+		return timers.computeIfAbsent(name, key -> new ConcurrentSkipListMap<>()).computeIfAbsent(operation,
+				key -> new Timer());
+	}
+
+	/**
+	 * Returns the counter of an operation, creating it on first use.
+	 *
+	 * @param name - the name of the metric, e.g. IO_READ_BYTES.
+	 * @param operation - the operation it counts for.
+	 * @return the counter.
+	 */
+	public Counter counter(String name, String operation) {
+		return counters.computeIfAbsent(name, key -> new ConcurrentSkipListMap<>()).computeIfAbsent(operation,
+				key -> new Counter());
+	}
+
+	/**
+	 * Drops all metrics.
+	 */
+	public void clear() {
+		timers.clear();
+		counters.clear();
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text exposition format. A timer is
+	 * written as a summary with its count and sum in seconds, followed by a gauge
+	 * with its maximum.
+	 *
+	 * @param writer - the writer that receives the metrics.
+	 * @throws IOException when the writer fails.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		for (Map.Entry<String, ConcurrentSkipListMap<String, Timer>> family : timers.entrySet()) {
+			String name = family.getKey();
+			writer.write("# TYPE " + name + " summary\n");
+			for (Map.Entry<String, Timer> entry : family.getValue().entrySet()) {
+				String labels = labels(entry.getKey());
+				Timer timer = entry.getValue();
+				writer.write(name + "_count" + labels + " " + timer.getCount() + "\n");
+				writer.write(name + "_sum" + labels + " " + seconds(timer.getTotalNanos()) + "\n");
+			}
+			writer.write("# TYPE " + name + "_max gauge\n");
+			for (Map.Entry<String, Timer> entry : family.getValue().entrySet()) {
+				writer.write(name + "_max" + labels(entry.getKey()) + " " + seconds(entry.getValue().getMaxNanos())
+						+ "\n");
+			}
+		}
+
+		for (Map.Entry<String, ConcurrentSkipListMap<String, Counter>> family : counters.entrySet()) {
+			String name = family.getKey();
+			writer.write("# TYPE " + name + " counter\n");
+			for (Map.Entry<String, Counter> entry : family.getValue().entrySet()) {
+				writer.write(name + labels(entry.getKey()) + " " + entry.getValue().getValue() + "\n");
+			}
+		}
+	}
+
+	private static String labels(String operation) {
+		String escaped = operation.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+		return "{operation=\"" + escaped + "\"}";
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.9f", nanos / NANOS_PER_SECOND);
+	}
+}
@@ -0,0 +1,70 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Timer class records how often an operation ran and how long it took in
+ * total and at most. A run is timed with a Sample in a try-with-resources
+ * statement, so that it is recorded whether or not the operation throws:
+ *
+ * try (Timer.Sample sample = timer.start()) { ... }
+ */
+public class Timer {
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * The Sample class times a single run of an operation.
+	 */
+	public class Sample implements AutoCloseable {
+		private final long start = System.nanoTime();
+
+		private Sample() {
+		}
+
+		/**
+		 * Records the time since the sample was started.
+		 */
+		@Override
+		public void close() {
+			record(System.nanoTime() - start);
+		}
+	}
+
+	Timer() {
+	}
+
+	/**
+	 * Starts timing a run of the operation.
+	 *
+	 * @return the sample to close when the run ends.
+	 */
+	public Sample start() {
+		return new Sample();
+	}
+
+	/**
+	 * Records a run of the operation.
+	 *
+	 * @param nanos - the duration of the run in nanoseconds.
+	 */
+	public void record(long nanos) {
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+}
@@ -0,0 +1,107 @@
+package operations;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import exceptions.BioinformaticsException;
+
+/**
+ * The IOPipeline class runs the per-user steps of a team-wide action as a
+ * pipeline: a pool of threads loads (reads and parses) the files of the next
+ * users while the calling thread consumes (e.g. writes) the ones loaded before,
+ * in their original order. The reads of different users overlap each other and
+ * the writes, so the action is bound by the bandwidth of the disk rather than
+ * the latency of each file.
+ *
+ * At most twice as many items as there are threads are loaded ahead of the
+ * consumer, which bounds the memory the pipeline holds.
+ */
+final class IOPipeline {
+
+	/**
+	 * Loads the item of a source, e.g. the alignment of a user. Runs on a
+	 * thread of the pipeline.
+	 */
+	interface Loader<S, T> {
+		T load(S source) throws IOException, BioinformaticsException;
+	}
+
+	/**
+	 * Consumes the item of a source. Runs on the calling thread, in the order
+	 * of the sources.
+	 */
+	interface Consumer<S, T> {
+		void accept(S source, T item) throws IOException, BioinformaticsException;
+	}
+
+	private IOPipeline() {
+	}
+
+	/**
+	 * Loads the items of the sources on a pool of threads and consumes them in
+	 * order on the calling thread. Stops at the first failure.
+	 *
+	 * @param sources - the sources, in the order to consume them.
+	 * @param threads - the number of threads that load items.
+	 * @param loader - loads the item of a source.
+	 * @param consumer - consumes the item of a source.
+	 * @throws IOException when loading or consuming fails with it, or the
+	 * pipeline is interrupted.
+	 * @throws BioinformaticsException when loading or consuming fails with it.
+	 */
+	static <S, T> void run(List<S> sources, int threads, Loader<S, T> loader, Consumer<S, T> consumer)
+			throws IOException, BioinformaticsException {
+		if (sources.isEmpty()) {
+			return;
+		}
+		threads = Math.max(1, Math.min(threads, sources.size()));
+		int window = 2 * threads;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "io-pipeline");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			ArrayDeque<Future<T>> pending = new ArrayDeque<>(window);
+			int next = 0;
+			for (S source : sources) {
+				while (next < sources.size() && pending.size() < window) {
+					S ahead = sources.get(next++);
+					pending.add(executor.submit(() -> loader.load(ahead)));
+				}
+				consumer.accept(source, get(pending.remove()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// Waits for an item, rethrowing the failure of its loader.
+	private static <T> T get(Future<T> future) throws IOException, BioinformaticsException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a file.");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof BioinformaticsException) {
+				throw (BioinformaticsException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -2,22 +2,56 @@ package operations;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import alignment.*;
 import dataio.DataReader;
 import dataio.DataWriter;
+import dataio.FileLockManager;
 import exceptions.BioinformaticsException;
+import metrics.Timer;
 import users.User;
 
 /**
  * The InformaticianActions provides a menu with items that are accessible to a bioinformatician.
  */
 public class InformaticianActions extends UserActions {
+	// The pool shared by the sessions of all bioinformaticians, created when
+	// the first one starts; its threads are daemons, so it needs no shutdown.
+	private static ForkJoinPool sharedPool = null;
+
 	private Alignment currentAlignment;
+	// The pool on which difference scores are computed and genome-wide searches
+	// and replacements run, or null to do so on the calling thread.
+	private final ForkJoinPool pool;
 
 	public InformaticianActions(DataReader dataReader, DataWriter dataWriter, ArrayList<User> users) {
 		super(dataReader, dataWriter, users);		
 		this.currentAlignment = null;
+		this.pool = getPool(dataReader.getScoringThreads());
+	}
+
+	// Returns the pool shared by all sessions, or null to run on the calling
+	// thread when a single thread is configured.
+	private static synchronized ForkJoinPool getPool(int threads) {
+		if (threads <= 1) {
+			return null;
+		}
+		if (sharedPool == null) {
+			sharedPool = new ForkJoinPool(threads);
+		}
+		return sharedPool;
+	}
+
+	/**
+	 * Returns the alignment the bioinformatician is working on.
+	 * 
+	 * @return the current alignment, or null if none was retrieved.
+	 */
+	public Alignment getCurrentAlignment() {
+		return currentAlignment;
 	}
 
 
@@ -30,12 +64,30 @@ public class InformaticianActions extends UserActions {
 	 * @throws BioinformaticsException
 	 */
 	public void retrieveAlignment() throws NumberFormatException, IOException, BioinformaticsException {
+		Timer.Sample sample = time("retrieveAlignment");
+		FileLockManager.Locks locks = lockFiles(paths(getUserPaths(currentUser, ".alignment.txt"), reader.getOptimalFilename()),
+				Collections.emptyList());
+		try (sample; locks) {
+			doRetrieveAlignment();
+		}
+	}
+
+	private void doRetrieveAlignment() throws NumberFormatException, IOException, BioinformaticsException {
 		System.out.println("Retrieving the alignment for " + currentUser.getFullname());
 
 		String pathToFile = getBaseFilename(currentUser) + ".alignment.txt";
 
 		if (reader.fileExists(pathToFile)) {
 			currentAlignment = reader.readAlignment(pathToFile);
+
+			// Load the k-mer index kept next to the alignment, or build a new one.
+			int kmerLength = reader.getKmerLength();
+			if (kmerLength > 0) {
+				KmerIndex index = reader.readIndex(pathToFile, currentAlignment);
+				if (index == null || index.getK() != kmerLength) {
+					currentAlignment.buildIndex(kmerLength);
+				}
+			}
 		} else {
 			System.out.println("You have not been assigned the initial alignment");
 		}
@@ -48,6 +100,13 @@ public class InformaticianActions extends UserActions {
 	 * @throws BioinformaticsException
 	 */
 	public void addGenome() throws BioinformaticsException {
+		Timer.Sample sample = time("addGenome");
+		try (sample) {
+			doAddGenome();
+		}
+	}
+
+	private void doAddGenome() throws BioinformaticsException {
 
 		System.out.println("\nAdding the genome 2022.F1.ZZ.93.VI850");
 
@@ -99,18 +158,26 @@ public class InformaticianActions extends UserActions {
 	 * genomes in which the sequence can be found.
 	 */
 	public void searchGenome() {
-		ArrayList<String> genomes;
+		Timer.Sample sample = time("searchGenome");
+		try (sample) {
+			doSearchGenome();
+		}
+	}
+
+	private void doSearchGenome() {
+		GenomeDictionary dictionary = currentAlignment.getDictionary();
+		SearchResult genomes;
 
 		System.out.println("\nSearching through the genome for the sequence 'AACAAATG'");
-		genomes = currentAlignment.searchSequence("AACAAATG");
-		for (String genome : genomes) {
-			System.out.println(genome);
+		genomes = currentAlignment.searchSequence("AACAAATG", pool);
+		for (int genome : genomes.getGenomeKeys(0)) {
+			System.out.println(dictionary.getId(genome));
 		}
 
 		System.out.println("\nSearching through the genome for the sequence 'TTTTC'");
-		genomes = currentAlignment.searchSequence("TTTTC");
-		for (String genome : genomes) {
-			System.out.println(genome);
+		genomes = currentAlignment.searchSequence("TTTTC", pool);
+		for (int genome : genomes.getGenomeKeys(0)) {
+			System.out.println(dictionary.getId(genome));
 		}
 	}
 
@@ -124,6 +191,15 @@ public class InformaticianActions extends UserActions {
 	 * @throws NumberFormatException
 	 */
 	public void replaceEntireSequence() throws NumberFormatException, IOException, BioinformaticsException {
+		Timer.Sample sample = time("replaceEntireSequence");
+		FileLockManager.Locks locks = lockFiles(getUserPaths(currentUser, "_bak.alignment.txt"),
+				Collections.emptyList());
+		try (sample; locks) {
+			doReplaceEntireSequence();
+		}
+	}
+
+	private void doReplaceEntireSequence() throws NumberFormatException, IOException, BioinformaticsException {
 		String sequence = "TGCCTGAGTCTTGTCATAATCATATGTTGGACGTCATCTTATTTACAGGATAGGAGTCC"
 				+ "TTTTATAGTTACGTCATTATTTTGGACCTCCATCATAATCATTTTTGGTCGATCACCGCCAAATAGG"
 				+ "GGTGGGCCAGTCGTTAGTTGTTGAATCATTATATTGTCGCCCAAGTGCTCGCTTTACACCGCAGCGT"
@@ -179,19 +255,60 @@ public class InformaticianActions extends UserActions {
 	 * of the genome).
 	 */
 	public void replaceSubsequenceInGenome() {
+		Timer.Sample sample = time("replaceSubsequenceInGenome");
+		try (sample) {
+			doReplaceSubsequenceInGenome();
+		}
+	}
+
+	private void doReplaceSubsequenceInGenome() {
 		System.out.println("Replacing TTTTC with TTTTT in genome 1998.A1.UG.98.98UG57136");
 		currentAlignment.replaceSequencesById("TTTTC", "TTTTT", "1998.A1.UG.98.98UG57136");
 	}
 
 	public void replaceSubsequenceInAlignment() {
+		Timer.Sample sample = time("replaceSubsequenceInAlignment");
+		try (sample) {
+			doReplaceSubsequenceInAlignment();
+		}
+	}
+
+	private void doReplaceSubsequenceInAlignment() {
 		System.out.println("Replacing TTTTC with TTTTT in all genomes in the entire alignment");
-		currentAlignment.replaceAllSequences("TTTTC", "TTTTT");
+		currentAlignment.replaceAllSequences("TTTTC", "TTTTT", pool);
+	}
+
+	/**
+	 * Applies a batch of substitutions, e.g. those of a curation session, in a
+	 * single pass per genome of the alignment (see Alignment.applyEdits), and
+	 * prints how many occurrences each of them replaced.
+	 *
+	 * @param rules - the substitutions to apply.
+	 */
+	public void replaceSubsequencesInBatch(List<EditRule> rules) {
+		Timer.Sample sample = time("replaceSubsequencesInBatch");
+		try (sample) {
+			System.out.println("Applying " + rules.size() + " replacements to the alignment");
+			int[] counts = currentAlignment.applyEdits(rules, pool);
+			for (int i = 0; i < rules.size(); i++) {
+				EditRule rule = rules.get(i);
+				System.out.println(rule.getSequence() + " -> " + rule.getNewSequence()
+						+ (rule.getGenomeId() == null ? "" : " in " + rule.getGenomeId()) + ": " + counts[i]);
+			}
+		}
 	}
 
 	/**
 	 * Removes a genome based on its name / identifier.
 	 */
 	public void removeGenome() {
+		Timer.Sample sample = time("removeGenome");
+		try (sample) {
+			doRemoveGenome();
+		}
+	}
+
+	private void doRemoveGenome() {
 		System.out.println("Removing the genome 1998.A1.UG.98.98UG57136");
 		currentAlignment.removeGenome("1998.A1.UG.98.98UG57136");
 	}
@@ -203,8 +320,19 @@ public class InformaticianActions extends UserActions {
 	 * 
 	 * @throws IOException
 	 * @throws NumberFormatException
+	 * @throws BioinformaticsException
 	 */
-	public void writeDataToFile() throws NumberFormatException, IOException {
+	public void writeDataToFile() throws NumberFormatException, IOException, BioinformaticsException {
+		Timer.Sample sample = time("writeDataToFile");
+		FileLockManager.Locks locks = lockFiles(Collections.singletonList(reader.getOptimalFilename()),
+				getUserPaths(currentUser, ".alignment.txt"));
+		DataWriter.Batch batch = dataWriter.beginBatch();
+		try (sample; locks; batch) {
+			doWriteDataToFile();
+		}
+	}
+
+	private void doWriteDataToFile() throws NumberFormatException, IOException, BioinformaticsException {
 		// Ensure there is an active bioinformatician who is assigned an alignment.
 		if (currentUser == null || currentAlignment == null) {
 			return;
@@ -216,7 +344,12 @@ public class InformaticianActions extends UserActions {
 
 		String destinationPath = getBaseFilename(currentUser) + ".alignment.txt";
 
-		dataWriter.write(destinationPath, currentAlignment.toString());
+		writeAlignment(destinationPath, currentAlignment);
+
+		if (currentAlignment.getIndex() != null) {
+			dataWriter.writeIndex(reader.getIndexFilename(destinationPath), currentAlignment,
+					reader.getFileChecksum(destinationPath));
+		}
 	}
 
 	/**
@@ -225,13 +358,22 @@ public class InformaticianActions extends UserActions {
 	 * name with a .score.txt extension.
 	 */
 	public void writeReportToFile() throws NumberFormatException, IOException {
+		Timer.Sample sample = time("writeReportToFile");
+		FileLockManager.Locks locks = lockFiles(Collections.emptyList(),
+				getUserPaths(currentUser, ".score.txt"));
+		try (sample; locks) {
+			doWriteReportToFile();
+		}
+	}
+
+	private void doWriteReportToFile() throws NumberFormatException, IOException {
 		String fullname = currentUser.getFullname();
 
 		System.out.println("Writing report for " + fullname + " alignment to a file.");
 
 		String destinationPath = getBaseFilename(currentUser) + ".score.txt";
 
-		dataWriter.write(destinationPath, "" + currentAlignment.calculateScore() + "\n");
+		dataWriter.write(destinationPath, "" + currentAlignment.calculateScore(pool) + "\n");
 	}
 
 	/**
@@ -0,0 +1,143 @@
+package operations;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import exceptions.BioinformaticsException;
+
+/**
+ * The SessionExecutor class runs the independent workflows of different users,
+ * e.g. the session of each bioinformatician, at the same time. Every session
+ * runs on a thread of its own: a virtual thread when the Java runtime has them
+ * (Java 21 and later), otherwise a platform thread. The actions of the
+ * sessions lock the files they touch through the FileLockManager, so that
+ * repository-wide actions never interleave with a user's writes.
+ *
+ * A session must use its own UserActions objects, since those keep the state
+ * (current user and alignment) of a single user.
+ */
+public class SessionExecutor implements AutoCloseable {
+
+	/**
+	 * The Session interface is the workflow of a single user.
+	 */
+	public interface Session {
+		void run() throws Exception;
+	}
+
+	private final ExecutorService executor;
+	private final ArrayList<Future<?>> sessions;
+
+	/**
+	 * Creates a SessionExecutor. Below Java 21, which has no virtual threads,
+	 * it falls back to a platform thread per running session, including on the
+	 * Java 17 this project is built for. Each blocked session then holds an OS
+	 * thread, so the number of concurrent sessions should stay in the tens
+	 * rather than the thousands.
+	 */
+	public SessionExecutor() {
+		this.executor = newExecutor();
+		this.sessions = new ArrayList<>();
+	}
+
+	/**
+	 * Returns true if the sessions run on virtual threads.
+	 *
+	 * @return true on virtual threads; false on platform threads.
+	 */
+	public static boolean usesVirtualThreads() {
+		return virtualThreadFactory() != null;
+	}
+
+	/**
+	 * Starts a session.
+	 *
+	 * @param session - the workflow of the session.
+	 */
+	public void submit(Session session) {
+		sessions.add(executor.submit(() -> {
+			session.run();
+			return null;
+		}));
+	}
+
+	/**
+	 * Waits until all sessions submitted so far have ended.
+	 *
+	 * @throws IOException when a session failed with an IOException, or the
+	 * wait was interrupted.
+	 * @throws BioinformaticsException when a session failed with it.
+	 * @throws RuntimeException when a session failed with it.
+	 */
+	public void awaitAll() throws IOException, BioinformaticsException {
+		Exception failure = null;
+		for (Future<?> session : sessions) {
+			try {
+				session.get();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the sessions.");
+			} catch (ExecutionException ex) {
+				Exception cause = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+				if (failure == null) {
+					failure = cause;
+				} else {
+					failure.addSuppressed(cause);
+				}
+			}
+		}
+		sessions.clear();
+
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure instanceof BioinformaticsException) {
+			throw (BioinformaticsException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure != null) {
+			throw new IllegalStateException(failure);
+		}
+	}
+
+	/**
+	 * Stops accepting sessions; the running ones still end.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor is looked up reflectively, so
+	// that the class still compiles and runs below Java 21.
+	private static ExecutorService newExecutor() {
+		Method factory = virtualThreadFactory();
+		if (factory != null) {
+			try {
+				return (ExecutorService) factory.invoke(null);
+			} catch (ReflectiveOperationException ex) {
+				// Fall back to platform threads.
+			}
+		}
+		return Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "session");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor, looked up at run time so that
+	// the sources still compile for Java 17.
+	private static Method virtualThreadFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+}
@@ -2,9 +2,14 @@ package operations;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import dataio.BackupStore;
 import dataio.DataReader;
 import dataio.DataWriter;
+import dataio.FileLockManager;
+import metrics.Timer;
 import users.Role;
 import users.User;
 
@@ -35,8 +40,24 @@ public class SupportActions extends UserActions {
 	 * @throws IOException
 	 */
 	public void backupRepository() throws IOException {
+		Timer.Sample sample = time("backupRepository");
+		FileLockManager.Locks locks = lockFiles(paths(getUserPaths(".alignment.txt"), reader.getOptimalFilename(), "snip.alignment.txt"),
+				paths(getUserPaths(".alignment.bak.txt"), "optimal.alignment.bak.txt", "snip.alignment.bak.txt"));
+		DataWriter.Batch batch = dataWriter.beginBatch();
+		try (sample; locks; batch) {
+			doBackupRepository();
+		}
+	}
+
+	private void doBackupRepository() throws IOException {
 		System.out.println("Backing up repository data");
 
+		if (reader.getBackupDirectory() != null) {
+			BackupStore store = new BackupStore(reader.getBackupDirectory());
+			System.out.println("Stored backup snapshot " + store.backup(getRepositoryPaths()));
+			return;
+		}
+
 		dataWriter.copyFile(reader.getOptimalFilename(), "optimal.alignment.bak.txt");
 		dataWriter.copyFile("snip.alignment.txt", "snip.alignment.bak.txt");
 
@@ -48,7 +69,7 @@ public class SupportActions extends UserActions {
 			sourcePath = getBaseFilename(user) + ".alignment.txt";
 			if (user.getRole() != Role.TECHNICALSUPPORT && reader.fileExists(sourcePath)) {
 				destinationPath = getBaseFilename(user) + ".alignment.bak.txt";
-				dataWriter.copyFile(sourcePath, destinationPath);
+				copyWithIndex(sourcePath, destinationPath);
 			}
 		}
 	}
@@ -61,8 +82,35 @@ public class SupportActions extends UserActions {
 	 * @throws IOException
 	 */
 	public void restoreRepository() throws IOException {
+		Timer.Sample sample = time("restoreRepository");
+		FileLockManager.Locks locks = lockFiles(paths(getUserPaths(".alignment.bak.txt"), "optimal.alignment.bak.txt", "snip.alignment.bak.txt"),
+				paths(getUserPaths(".alignment.txt"), reader.getOptimalFilename(), "snip.alignment.txt"));
+		DataWriter.Batch batch = dataWriter.beginBatch();
+		try (sample; locks; batch) {
+			doRestoreRepository();
+		}
+	}
+
+	private void doRestoreRepository() throws IOException {
 		System.out.println("Restoring repository data");
 
+		if (reader.getBackupDirectory() != null) {
+			BackupStore store = new BackupStore(reader.getBackupDirectory());
+			String snapshot = store.getLatestSnapshot();
+			if (snapshot == null) {
+				System.out.println("Error: there is no backup snapshot to restore");
+			} else {
+				// The snapshot holds the k-mer indexes that were backed up with
+				// the alignments; no other index may outlive its alignment.
+				for (User user : users) {
+					dataWriter.deleteFile(reader.getIndexFilename(getBaseFilename(user) + ".alignment.txt"));
+				}
+				store.restore(snapshot, Runtime.getRuntime().availableProcessors());
+				System.out.println("Restored backup snapshot " + snapshot);
+			}
+			return;
+		}
+
 		dataWriter.copyFile("optimal.alignment.bak.txt", reader.getOptimalFilename());
 		dataWriter.copyFile("snip.alignment.bak.txt", "snip.alignment.txt");
 
@@ -74,16 +122,62 @@ public class SupportActions extends UserActions {
 			sourcePath = getBaseFilename(user) + ".alignment.bak.txt";
 			if (user.getRole() != Role.TECHNICALSUPPORT && reader.fileExists(sourcePath)) {
 				destinationPath = getBaseFilename(user) + ".alignment.txt";
-				dataWriter.copyFile(sourcePath, destinationPath);
+				copyWithIndex(sourcePath, destinationPath);
 			}
 		}
 	}
 
+	/**
+	 * Copies an alignment file together with its k-mer index, if it has one. An
+	 * index left at the destination from another alignment is deleted.
+	 */
+	private void copyWithIndex(String sourcePath, String destinationPath) throws IOException {
+		dataWriter.copyFile(sourcePath, destinationPath);
+		String sourceIndex = reader.getIndexFilename(sourcePath);
+		String destinationIndex = reader.getIndexFilename(destinationPath);
+		if (reader.fileExists(sourceIndex)) {
+			dataWriter.copyFile(sourceIndex, destinationIndex);
+		} else {
+			dataWriter.deleteFile(destinationIndex);
+		}
+	}
+
+	/**
+	 * Returns the path/filenames of the files a backup holds: the optimal
+	 * alignment, its SNiP alignment and the personal alignments of all users
+	 * except technical support, each with its k-mer index.
+	 */
+	private List<String> getRepositoryPaths() {
+		ArrayList<String> paths = new ArrayList<>();
+		paths.add(reader.getOptimalFilename());
+		paths.add("snip.alignment.txt");
+		for (User user : users) {
+			if (user.getRole() != Role.TECHNICALSUPPORT) {
+				String path = getBaseFilename(user) + ".alignment.txt";
+				paths.add(path);
+				paths.add(reader.getIndexFilename(path));
+			}
+		}
+		return paths;
+	}
+
 	/**
 	 * Clears the repository data: removes / empties the current optimal standard
 	 * alignment, its corresponding SNiP alignment and, all users personal alignment
+	 * 
+	 * @throws IOException when a file cannot be deleted.
 	 */
-	public void clearRepository() {
+	public void clearRepository() throws IOException {
+		Timer.Sample sample = time("clearRepository");
+		FileLockManager.Locks locks = lockFiles(Collections.emptyList(),
+				paths(getUserPaths(".alignment.txt"), reader.getOptimalFilename(), "snip.alignment.txt"));
+		DataWriter.Batch batch = dataWriter.beginBatch();
+		try (sample; locks; batch) {
+			doClearRepository();
+		}
+	}
+
+	private void doClearRepository() throws IOException {
 		System.out.println("Clearing repository data");
 
 		dataWriter.deleteFile(reader.getOptimalFilename());
@@ -95,6 +189,7 @@ public class SupportActions extends UserActions {
 		for (User user : users) {
 			targetFilePath = getBaseFilename(user) + ".alignment.txt";
 			dataWriter.deleteFile(targetFilePath);
+			dataWriter.deleteFile(reader.getIndexFilename(targetFilePath));
 		}
 	}
 
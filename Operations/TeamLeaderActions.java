@@ -1,14 +1,18 @@
 package operations;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 
 import alignment.Alignment;
 import alignment.IAlignment;
 import alignment.SNPAdapter;
 import dataio.DataReader;
 import dataio.DataWriter;
+import dataio.FileLockManager;
 import exceptions.BioinformaticsException;
+import metrics.Timer;
 import users.Role;
 import users.User;
 
@@ -39,24 +43,27 @@ public class TeamLeaderActions extends UserActions {
 	 * @throws BioinformaticsException
 	 */
 	public void writeDataToFile() throws NumberFormatException, IOException, BioinformaticsException {
-		System.out.println("Writing all of the users' alignments to " + currentUser.getFullname());
-		
-		String sourcePath;
-		String content = "";
-		Alignment alignment;
-
-		// Write all of the users alignment to a single file.
-		for (User user : users) {
-			sourcePath = getBaseFilename(user) + ".alignment.txt";
-			if (user.getRole() == Role.BIOINFORMATICIAN && reader.fileExists(sourcePath)) {
-				alignment = reader.readAlignment(sourcePath);
-				content += sourcePath + "\n" + alignment.toString() + "\n";
-			}
+		Timer.Sample sample = time("writeDataToFile");
+		FileLockManager.Locks locks = lockFiles(paths(getUserPaths(".alignment.txt"), reader.getOptimalFilename()),
+				getUserPaths(currentUser, ".alignment.txt"));
+		DataWriter.Batch batch = dataWriter.beginBatch();
+		try (sample; locks; batch) {
+			doWriteDataToFile();
 		}
+	}
 
-		// Overwrite the file with new alignment data.
+	private void doWriteDataToFile() throws NumberFormatException, IOException, BioinformaticsException {
+		System.out.println("Writing all of the users' alignments to " + currentUser.getFullname());
+		
+		// Overwrite the file with new alignment data, streaming one users'
+		// alignment at a time into a single file while the next ones are read.
 		String destinationPath = getBaseFilename(currentUser) + ".alignment.txt";
-		dataWriter.write(destinationPath, content);
+		dataWriter.write(destinationPath, writer -> IOPipeline.run(getBioinformaticianPaths(".alignment.txt"),
+				reader.getIoThreads(), reader::readAlignment, (sourcePath, alignment) -> {
+					writer.write(sourcePath + "\n");
+					alignment.writeTo(writer);
+					writer.write("\n");
+				}));
 	}
 
 
@@ -70,24 +77,36 @@ public class TeamLeaderActions extends UserActions {
 	 */
 
 	public void writeReportToFile() throws NumberFormatException, IOException, BioinformaticsException  {
+		Timer.Sample sample = time("writeReportToFile");
+		FileLockManager.Locks locks = lockFiles(getUserPaths(".score.txt"),
+				getUserPaths(currentUser, ".score.txt"));
+		try (sample; locks) {
+			doWriteReportToFile();
+		}
+	}
+
+	private void doWriteReportToFile() throws NumberFormatException, IOException, BioinformaticsException {
 
 		System.out.println("Writing all of the users' alignments scores to "
 				+ currentUser.getFullname());
 		
-		String scores = "";
-		String filename;
+		StringBuilder scores = new StringBuilder();
 
-		// Write all of the users alignment to a single file.
+		// Write all of the users alignment to a single file, reading the
+		// scores of several users at a time.
+		ArrayList<User> scoredUsers = new ArrayList<>();
 		for (User user : users) {
-			filename = getBaseFilename(user) + ".score.txt";
-			if (user.getRole() == Role.BIOINFORMATICIAN && reader.fileExists(filename)) {
-				scores += user.getFullname() + ": " + reader.readScore(filename) + "\n";
+			if (user.getRole() == Role.BIOINFORMATICIAN && reader.fileExists(getBaseFilename(user) + ".score.txt")) {
+				scoredUsers.add(user);
 			}
 		}
+		IOPipeline.run(scoredUsers, reader.getIoThreads(),
+				user -> reader.readScore(getBaseFilename(user) + ".score.txt"),
+				(user, score) -> scores.append(user.getFullname()).append(": ").append(score).append("\n"));
 
 		// Overwrite the file with new alignment data.
 		String destinationPath = getBaseFilename(currentUser) + ".score.txt";
-		dataWriter.write(destinationPath, scores);
+		dataWriter.write(destinationPath, scores.toString());
 	}
 
 	/**
@@ -100,6 +119,15 @@ public class TeamLeaderActions extends UserActions {
 	 * @throws NumberFormatException 
 	 */
 	public void promoteUserAlignment(String userFullname) throws NumberFormatException, IOException, BioinformaticsException {
+		Timer.Sample sample = time("promoteUserAlignment");
+		FileLockManager.Locks locks = lockFiles(Collections.emptyList(),
+				paths(getUserPaths(".alignment.txt"), reader.getOptimalFilename(), "snip.alignment.txt"));
+		try (sample; locks; DataWriter.Batch batch = dataWriter.beginBatch()) {
+			doPromoteUserAlignment(userFullname, batch);
+		}
+	}
+
+	private void doPromoteUserAlignment(String userFullname, DataWriter.Batch batch) throws NumberFormatException, IOException, BioinformaticsException {
 		
 		System.out.println("Promoting alignment from " + userFullname + " to shared alignment");
 		
@@ -114,14 +142,102 @@ public class TeamLeaderActions extends UserActions {
 			String destinationPath = reader.getOptimalFilename();
 			String snipPath = "snip.alignment.txt";
 
-			Alignment userAlignment = reader.readAlignment(sourcePath);
+			// Users' alignments saved as deltas must be rebased onto the new
+			// optimal alignment. Until all of them are, the current optimal
+			// file is retained under a name of its own, against which the
+			// deltas that were not rebased yet are still read (e.g. after a
+			// crash); the link is made durable before the optimal file is
+			// replaced.
+			ArrayList<String> deltaPaths = getDeltaAlignmentPaths();
+			Alignment previousOptimal = null;
+			long previousChecksum = 0;
+			String retainedPath = null;
+			if (!deltaPaths.isEmpty()) {
+				previousOptimal = reader.readAlignment(destinationPath);
+				previousChecksum = reader.getFileChecksum(destinationPath);
+				retainedPath = reader.getRetainedFilename(destinationPath, previousChecksum);
+				dataWriter.linkFile(destinationPath, retainedPath);
+				batch.sync();
+			}
+
+			// A delta is applied to the optimal alignment read above, so the
+			// optimal file is parsed only once; the one parse of the users'
+			// alignment then yields both the optimal and the SNiP file.
+			Alignment userAlignment = deltaPaths.contains(sourcePath)
+					? reader.readDelta(sourcePath, previousOptimal, previousChecksum)
+					: reader.readAlignment(sourcePath);
 
-			dataWriter.write(destinationPath, userAlignment.toString());
+			dataWriter.write(destinationPath, userAlignment::writeTo);
 			
 			IAlignment snpAlignment = new SNPAdapter();
 			
-			dataWriter.write(snipPath, snpAlignment.alignmentToString(userAlignment));
+			dataWriter.write(snipPath, writer -> snpAlignment.writeAlignment(userAlignment, writer));
+
+			if (retainedPath != null) {
+				Alignment base = previousOptimal;
+				long baseChecksum = previousChecksum;
+				long optimalChecksum = reader.getFileChecksum(destinationPath);
+				IOPipeline.run(deltaPaths, reader.getIoThreads(),
+						deltaPath -> reader.readDelta(deltaPath, base, baseChecksum),
+						(deltaPath, alignment) -> writeAlignment(deltaPath, alignment, userAlignment,
+								optimalChecksum));
+
+				// Every delta is now against the new optimal file, so the
+				// retained versions (also those left by an earlier promotion
+				// that did not complete) are no longer needed.
+				batch.sync();
+				for (String path : getRetainedPaths(destinationPath)) {
+					dataWriter.deleteFile(path);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the paths of the bioinformaticians' alignments that are saved as a
+	 * delta against the optimal alignment.
+	 */
+	private ArrayList<String> getDeltaAlignmentPaths() throws IOException {
+		ArrayList<String> paths = new ArrayList<>();
+		for (String path : getBioinformaticianPaths(".alignment.txt")) {
+			if (reader.isDeltaAlignment(path)) {
+				paths.add(path);
+			}
 		}
+		return paths;
+	}
+
+	/**
+	 * Returns the paths of the retained versions of an alignment file, see
+	 * DataReader.getRetainedFilename.
+	 */
+	private ArrayList<String> getRetainedPaths(String filename) {
+		File file = new File(filename).getAbsoluteFile();
+		String prefix = file.getName() + ".";
+		ArrayList<String> paths = new ArrayList<>();
+		File[] retained = file.getParentFile().listFiles((directory, name) -> name.startsWith(prefix)
+				&& name.endsWith(".base"));
+		if (retained != null) {
+			for (File path : retained) {
+				paths.add(path.getPath());
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * Returns the paths of the existing files of the bioinformaticians with the
+	 * given suffix, in the order of the users.
+	 */
+	private ArrayList<String> getBioinformaticianPaths(String suffix) {
+		ArrayList<String> paths = new ArrayList<>();
+		for (User user : users) {
+			String path = getBaseFilename(user) + suffix;
+			if (user.getRole() == Role.BIOINFORMATICIAN && reader.fileExists(path)) {
+				paths.add(path);
+			}
+		}
+		return paths;
 	}
 
 	/**
@@ -134,22 +250,60 @@ public class TeamLeaderActions extends UserActions {
 	 * @throws NumberFormatException
 	 */
 	public void overwriteUserAlignment(String userFullname) throws NumberFormatException, IOException, BioinformaticsException {		
-		
-		System.out.println("Copying shared alignment to " + userFullname);
+		overwriteUserAlignments(userFullname);
+	}
 
-		User user = getUser(userFullname);
+	/**
+	 * Overwrites the alignments of several users with the optimal alignment, as
+	 * overwriteUserAlignment does for each of them. The optimal alignment is
+	 * read and written out once; the files of the other users are hard links to
+	 * that first file, which stay independent since files are always replaced
+	 * rather than written in place.
+	 * 
+	 * @param userFullnames - the firstname + " " + lastname of the users.
+	 * @throws BioinformaticsException
+	 * @throws IOException
+	 * @throws NumberFormatException
+	 */
+	public void overwriteUserAlignments(String... userFullnames) throws NumberFormatException, IOException, BioinformaticsException {
+		ArrayList<String> destinationPaths = new ArrayList<>();
+		for (String userFullname : userFullnames) {
+			destinationPaths.addAll(getUserPaths(getUser(userFullname), ".alignment.txt"));
+		}
 
-		if (user == null) {
-			System.out.println("Error: there is no users with the name " + userFullname);
-		} else if (user.getRole() != Role.BIOINFORMATICIAN) {
-			System.out.println("Error: " + userFullname + " is not a bioinformatician");
-		} else {
-			String sourcePath = reader.getOptimalFilename();
-			String destinationPath = getBaseFilename(user) + ".alignment.txt";
+		Timer.Sample sample = time("overwriteUserAlignments");
+		FileLockManager.Locks locks = lockFiles(Collections.singletonList(reader.getOptimalFilename()),
+				destinationPaths);
+		DataWriter.Batch batch = dataWriter.beginBatch();
+		try (sample; locks; batch) {
+			String firstPath = null;
+			Alignment optimalAlignment = null;
 
-			Alignment userAlignment = reader.readAlignment(sourcePath);
+			for (String userFullname : userFullnames) {
+				System.out.println("Copying shared alignment to " + userFullname);
 
-			dataWriter.write(destinationPath, userAlignment.toString());
+				User user = getUser(userFullname);
+
+				if (user == null) {
+					System.out.println("Error: there is no users with the name " + userFullname);
+				} else if (user.getRole() != Role.BIOINFORMATICIAN) {
+					System.out.println("Error: " + userFullname + " is not a bioinformatician");
+				} else {
+					String destinationPath = getBaseFilename(user) + ".alignment.txt";
+
+					if (firstPath == null) {
+						optimalAlignment = reader.readAlignment(reader.getOptimalFilename());
+						writeAlignment(destinationPath, optimalAlignment, optimalAlignment);
+						firstPath = destinationPath;
+					} else if (!destinationPath.equals(firstPath)) {
+						// The links are made one after the other rather than on the
+						// IOPipeline: a hard link only adds a directory entry, and the
+						// directory syncs of the batch are only deferred for the
+						// thread that began it.
+						dataWriter.linkFile(firstPath, destinationPath);
+					}
+				}
+			}
 		}
 	}
 
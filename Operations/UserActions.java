@@ -1,9 +1,18 @@
 package operations;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import alignment.Alignment;
+import alignment.AlignmentDelta;
 import dataio.DataReader;
 import dataio.DataWriter;
+import dataio.FileLockManager;
+import exceptions.BioinformaticsException;
+import metrics.MetricsRegistry;
+import metrics.Timer;
 import users.User;
 
 public class UserActions {
@@ -24,6 +33,76 @@ public class UserActions {
 		this.users = users;
 }
 	
+	/**
+	 * Starts timing an action of this user, which is recorded as
+	 * MetricsRegistry.ACTION_SECONDS under the name of the class and the action.
+	 * 
+	 * @param action - the name of the action.
+	 * @return the sample to close when the action ends.
+	 */
+	protected Timer.Sample time(String action) {
+		return MetricsRegistry.getInstance()
+				.timer(MetricsRegistry.ACTION_SECONDS, getClass().getSimpleName() + "." + action).start();
+	}
+
+	/**
+	 * Locks the files an action reads and writes until the returned locks are
+	 * closed, so that actions of concurrent sessions (see SessionExecutor) do not
+	 * interleave unsafely; see FileLockManager.
+	 * 
+	 * @param reads - the path/filenames of the files the action reads.
+	 * @param writes - the path/filenames of the files the action writes or deletes.
+	 * @return the locks, to be closed when the action ends.
+	 */
+	protected FileLockManager.Locks lockFiles(List<String> reads, List<String> writes) {
+		return FileLockManager.getInstance().lock(reads, writes);
+	}
+
+	/**
+	 * Returns a list of the given paths followed by more paths.
+	 * 
+	 * @param paths - the first paths.
+	 * @param more - the paths to append.
+	 * @return a new list with all the paths.
+	 */
+	protected static List<String> paths(List<String> paths, String... more) {
+		ArrayList<String> all = new ArrayList<>(paths);
+		all.addAll(Arrays.asList(more));
+		return all;
+	}
+
+	/**
+	 * Returns the paths of a file of every user, e.g. of their personal
+	 * alignments for the suffix ".alignment.txt".
+	 * 
+	 * @param suffix - the suffix of the files after the base filename.
+	 * @return the path/filenames, one per user.
+	 */
+	protected List<String> getUserPaths(String suffix) {
+		ArrayList<String> paths = new ArrayList<>(users.size());
+		for (User user : users) {
+			paths.add(getBaseFilename(user) + suffix);
+		}
+		return paths;
+	}
+
+	/**
+	 * Returns the paths of files of a single user.
+	 * 
+	 * @param user - the user, or null.
+	 * @param suffixes - the suffixes of the files after the base filename.
+	 * @return the path/filenames, or an empty list when the user is null.
+	 */
+	protected List<String> getUserPaths(User user, String... suffixes) {
+		ArrayList<String> paths = new ArrayList<>(suffixes.length);
+		if (user != null) {
+			for (String suffix : suffixes) {
+				paths.add(getBaseFilename(user) + suffix);
+			}
+		}
+		return paths;
+	}
+
 	/**
 	 * 
 	 */
@@ -31,6 +110,69 @@ public class UserActions {
 		return user.getFirstname() + user.getLastname();
 	}
 	
+	/**
+	 * Writes a users' alignment to a file. When 'userstorage=delta' is configured
+	 * it is saved as a delta against the optimal alignment; otherwise in the
+	 * format configured by 'alignmentformat': FASTA text or the binary format.
+	 * 
+	 * @param filename - the path/filename of the file to write.
+	 * @param alignment - the alignment to write.
+	 * @throws IOException when the alignment cannot be written.
+	 * @throws BioinformaticsException when the optimal alignment cannot be read.
+	 */
+	protected void writeAlignment(String filename, Alignment alignment) throws IOException, BioinformaticsException {
+		Alignment optimalAlignment = null;
+		if (reader.useDeltaStorage() && reader.fileExists(reader.getOptimalFilename())) {
+			optimalAlignment = reader.readAlignment(reader.getOptimalFilename());
+		}
+		writeAlignment(filename, alignment, optimalAlignment);
+	}
+
+	/**
+	 * Writes a users' alignment to a file, as writeAlignment(filename, alignment)
+	 * does, given the current contents of the optimal alignment file.
+	 * 
+	 * @param filename - the path/filename of the file to write.
+	 * @param alignment - the alignment to write.
+	 * @param optimalAlignment - the alignment in the optimal alignment file, or
+	 * null to save a full copy.
+	 * @throws IOException when the alignment cannot be written.
+	 */
+	protected void writeAlignment(String filename, Alignment alignment, Alignment optimalAlignment)
+			throws IOException {
+		long optimalChecksum = 0;
+		if (reader.useDeltaStorage() && optimalAlignment != null) {
+			optimalChecksum = reader.getFileChecksum(reader.getOptimalFilename());
+		}
+		writeAlignment(filename, alignment, optimalAlignment, optimalChecksum);
+	}
+
+	/**
+	 * Writes a users' alignment to a file, as writeAlignment(filename, alignment)
+	 * does, given the current contents of the optimal alignment file and its
+	 * checksum, e.g. to write the alignments of several users without reading
+	 * the optimal alignment file again for each of them.
+	 * 
+	 * @param filename - the path/filename of the file to write.
+	 * @param alignment - the alignment to write.
+	 * @param optimalAlignment - the alignment in the optimal alignment file, or
+	 * null to save a full copy.
+	 * @param optimalChecksum - the checksum of the optimal alignment file, see
+	 * DataReader.getFileChecksum.
+	 * @throws IOException when the alignment cannot be written.
+	 */
+	protected void writeAlignment(String filename, Alignment alignment, Alignment optimalAlignment,
+			long optimalChecksum) throws IOException {
+		if (reader.useDeltaStorage() && optimalAlignment != null) {
+			dataWriter.writeDelta(filename, AlignmentDelta.compute(optimalAlignment, alignment),
+					optimalChecksum, reader.getOptimalFilename());
+		} else if (reader.useBinaryAlignments()) {
+			dataWriter.writeBinaryAlignment(filename, alignment);
+		} else {
+			dataWriter.write(filename, alignment::writeTo);
+		}
+	}
+	
 	/**
 	 * Returns a User object for the users that has a fullname similar to the one
 	 * given in the parameter. Returns null if the users does not exist.
@@ -0,0 +1,111 @@
+package alignment;
+
+import static testing.Check.equal;
+import static testing.Check.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the cached scores and the k-mer index of an alignment are up to
+ * date after a batch of edits on a pool, whose listeners are notified once per
+ * edited genome.
+ */
+public class ApplyEditsTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(17);
+
+		test("applyEdits keeps the scores and the index up to date", () -> {
+			StandardAlignment alignment = new StandardAlignment();
+			char[] reference = PackedSequenceTest.randomNucleotides(random, 400);
+			for (int g = 0; g < 60; g++) {
+				Genome genome = new Genome(">edit-" + g);
+				genome.setNucleotides(new PackedSequence(PackedSequenceTest.mutate(random, reference, 0.05)));
+				alignment.addGenome(genome);
+			}
+			ArrayList<EditRule> rules = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				int start = random.nextInt(reference.length - 6);
+				String pattern = new String(reference, start, 6);
+				rules.add(new EditRule(pattern, pattern.substring(1) + pattern.charAt(0)));
+			}
+			// The top genome is edited by the last rule only.
+			rules.add(new EditRule(new String(reference, 0, 3), "ACG", ">edit-0"));
+
+			alignment.buildIndex(4);
+			alignment.calculateScore();
+			ForkJoinPool pool = new ForkJoinPool(4);
+			try {
+				Alignment edited = alignment.clone();
+				int[] counts = edited.applyEdits(rules, pool);
+				Alignment expected = alignment.clone();
+				expected.setIndex(null);
+				equal(counts, expected.applyEdits(rules), "counts");
+
+				Alignment fresh = new StandardAlignment();
+				for (Genome genome : expected) {
+					Genome copy = new Genome(genome.getId());
+					copy.setNucleotides(genome.getNucleotides());
+					fresh.addGenome(copy);
+				}
+				equal(fresh.calculateScore(), edited.calculateScore(), "score");
+				equal(fresh.calculateScore(), expected.calculateScore(), "score of the sequential run");
+				for (Genome genome : fresh) {
+					equal(fresh.getGenomeScore(genome.getId()), edited.getGenomeScore(genome.getId()),
+							"score of " + genome.getId());
+				}
+				for (int i = 0; i < 20; i++) {
+					int start = random.nextInt(reference.length - 5);
+					String sequence = new String(edited.getTopGenome().getNucleotides(), start, 5);
+					equal(fresh.searchSequence(sequence).getGenomeIds(0), edited.searchSequence(sequence).getGenomeIds(0),
+							"search " + sequence);
+				}
+				equal(Arrays.asList(expected.toString()), Arrays.asList(edited.toString()), "edited alignment");
+			} finally {
+				pool.shutdown();
+			}
+		});
+
+		test("applyEdits adjusts the cached scores when the top genome is not edited", () -> {
+			StandardAlignment alignment = new StandardAlignment();
+			char[] reference = PackedSequenceTest.randomNucleotides(random, 400);
+			for (int g = 0; g < 30; g++) {
+				Genome genome = new Genome(">delta-" + g);
+				genome.setNucleotides(new PackedSequence(PackedSequenceTest.mutate(random, reference, 0.05)));
+				alignment.addGenome(genome);
+			}
+			ArrayList<EditRule> rules = new ArrayList<>();
+			for (int g = 1; g < 30; g++) {
+				int start = random.nextInt(reference.length - 4);
+				String pattern = new String(alignment.getGenome(">delta-" + g).getNucleotides(), start, 4);
+				rules.add(new EditRule(pattern, "ACGT", ">delta-" + g));
+			}
+
+			alignment.calculateScore();
+			ForkJoinPool pool = new ForkJoinPool(4);
+			try {
+				Alignment sequential = alignment.clone();
+				sequential.applyEdits(rules);
+				alignment.applyEdits(rules, pool);
+				for (Alignment edited : Arrays.asList(sequential, alignment)) {
+					Alignment fresh = new StandardAlignment();
+					for (Genome genome : edited) {
+						Genome copy = new Genome(genome.getId());
+						copy.setNucleotides(genome.getNucleotides());
+						fresh.addGenome(copy);
+					}
+					equal(fresh.calculateScore(), edited.calculateScore(), "score");
+					for (Genome genome : fresh) {
+						equal(fresh.getGenomeScore(genome.getId()), edited.getGenomeScore(genome.getId()),
+								"score of " + genome.getId());
+					}
+				}
+			} finally {
+				pool.shutdown();
+			}
+		});
+	}
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package alignment;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+import static testing.Check.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that MultiPatternMatcher finds the same occurrences as a naive search
+ * with String.indexOf, including overlapping patterns and patterns that are
+ * suffixes of each other.
+ */
+public class MultiPatternMatcherTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(11);
+
+		test("MultiPatternMatcher agrees with a naive search", () -> {
+			for (int round = 0; round < 20; round++) {
+				String sequence = new String(PackedSequenceTest.randomNucleotides(random, 2000));
+				ArrayList<String> patterns = new ArrayList<>();
+				for (int i = 0; i < 30; i++) {
+					int length = 1 + random.nextInt(6);
+					int start = random.nextInt(sequence.length() - length);
+					patterns.add(random.nextBoolean() ? sequence.substring(start, start + length)
+							: new String(PackedSequenceTest.randomNucleotides(random, length)));
+				}
+				patterns.add("AAAA");
+				patterns.add("AA");
+				patterns.add("");
+				patterns.add(null);
+
+				Genome genome = new Genome("test");
+				genome.setNucleotides(sequence.toCharArray());
+				equal(naive(sequence, patterns), found(new MultiPatternMatcher(patterns), genome),
+						"occurrences in round " + round);
+			}
+		});
+
+		test("MultiPatternMatcher.occursIn", () -> {
+			Genome genome = new Genome("test");
+			genome.setNucleotides("ACGTTGCA".toCharArray());
+			isTrue(new MultiPatternMatcher(Arrays.asList("GGG", "TTG")).occursIn(genome), "TTG occurs");
+			isTrue(!new MultiPatternMatcher(Arrays.asList("GGG", "AAA")).occursIn(genome), "no pattern occurs");
+			isTrue(!new MultiPatternMatcher(Arrays.asList("", null)).occursIn(genome), "empty patterns");
+		});
+	}
+
+	// The sorted positions of each pattern, as "pattern@position" strings.
+	private static List<String> naive(String sequence, List<String> patterns) {
+		ArrayList<String> found = new ArrayList<>();
+		for (int p = 0; p < patterns.size(); p++) {
+			String pattern = patterns.get(p);
+			if (pattern == null || pattern.isEmpty()) {
+				continue;
+			}
+			for (int i = sequence.indexOf(pattern); i >= 0; i = sequence.indexOf(pattern, i + 1)) {
+				found.add(p + "@" + i);
+			}
+		}
+		found.sort(null);
+		return found;
+	}
+
+	private static List<String> found(MultiPatternMatcher matcher, Genome genome) {
+		ArrayList<String> found = new ArrayList<>();
+		matcher.scan(genome, (pattern, position) -> found.add(pattern + "@" + position));
+		found.sort(null);
+		return found;
+	}
+}
@@ -0,0 +1,148 @@
+package alignment;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+import static testing.Check.raises;
+import static testing.Check.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that a PackedSequence behaves like an ArraySequence holding the same
+ * nucleotides, including symbols other than A, C, G and T.
+ */
+public class PackedSequenceTest {
+	private static final char[] SYMBOLS = { 'A', 'C', 'G', 'T', 'A', 'C', 'G', 'T', '-', 'N', 'R', 'Y' };
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+
+		test("PackedSequence holds the nucleotides it was given", () -> {
+			for (int length : new int[] { 0, 1, 31, 32, 33, 64, 100, 1000 }) {
+				char[] nucleotides = randomNucleotides(random, length);
+				PackedSequence packed = new PackedSequence(nucleotides);
+				equal(length, packed.length(), "length");
+				isTrue(Arrays.equals(nucleotides, packed.toCharArray()), "toCharArray of length " + length);
+				isTrue(Arrays.equals(nucleotides, new PackedSequence(new String(nucleotides)).toCharArray()),
+						"from a CharSequence");
+				byte[] bytes = ("xx" + new String(nucleotides)).getBytes(StandardCharsets.US_ASCII);
+				isTrue(Arrays.equals(nucleotides, new PackedSequence(bytes, 2, length).toCharArray()),
+						"from bytes");
+				for (int i = 0; i < length; i++) {
+					equal(nucleotides[i], packed.getNucleotide(i), "nucleotide " + i);
+				}
+			}
+		});
+
+		test("PackedSequence keeps the exceptions in a side-table", () -> {
+			PackedSequence packed = new PackedSequence("AC-GNNTR");
+			equal(4, packed.getExceptionCount(), "exceptions");
+			packed.setNucleotide(2, 'A');
+			packed.setNucleotide(0, 'Y');
+			equal(4, packed.getExceptionCount(), "exceptions after edits");
+			equal("YCAGNNTR", new String(packed.toCharArray()), "edited sequence");
+		});
+
+		test("PackedSequence edits like ArraySequence", () -> {
+			char[] nucleotides = randomNucleotides(random, 500);
+			PackedSequence packed = new PackedSequence(nucleotides);
+			ArraySequence array = new ArraySequence(nucleotides.clone());
+			for (int i = 0; i < 2000; i++) {
+				int index = random.nextInt(nucleotides.length);
+				char symbol = SYMBOLS[random.nextInt(SYMBOLS.length)];
+				packed.setNucleotide(index, symbol);
+				array.setNucleotide(index, symbol);
+			}
+			isTrue(Arrays.equals(array.toCharArray(), packed.toCharArray()), "sequences after edits");
+
+			char[] fromPacked = new char[120];
+			char[] fromArray = new char[120];
+			packed.getNucleotides(37, 137, fromPacked, 20);
+			array.getNucleotides(37, 137, fromArray, 20);
+			isTrue(Arrays.equals(fromArray, fromPacked), "getNucleotides");
+		});
+
+		test("PackedSequence rejects positions out of range like ArraySequence", () -> {
+			PackedSequence packed = new PackedSequence("ACGT");
+			ArraySequence array = new ArraySequence("ACGT".toCharArray());
+			raises(ArrayIndexOutOfBoundsException.class, () -> packed.getNucleotide(4));
+			raises(ArrayIndexOutOfBoundsException.class, () -> array.getNucleotide(4));
+			raises(ArrayIndexOutOfBoundsException.class, () -> packed.getNucleotide(-1));
+			raises(ArrayIndexOutOfBoundsException.class, () -> array.getNucleotide(-1));
+			raises(ArrayIndexOutOfBoundsException.class, () -> packed.setNucleotide(4, 'A'));
+			raises(ArrayIndexOutOfBoundsException.class, () -> array.setNucleotide(4, 'A'));
+			raises(ArrayIndexOutOfBoundsException.class, () -> packed.countDifferences(new PackedSequence("ACG"), 0, 4));
+			raises(ArrayIndexOutOfBoundsException.class,
+					() -> array.countDifferences(new ArraySequence("ACG".toCharArray()), 0, 4));
+		});
+
+		test("countDifferences matches ArraySequence", () -> {
+			for (int length : new int[] { 1, 32, 95, 700 }) {
+				char[] first = randomNucleotides(random, length);
+				char[] second = mutate(random, first, 0.1);
+				PackedSequence packedFirst = new PackedSequence(first);
+				PackedSequence packedSecond = new PackedSequence(second);
+				ArraySequence arrayFirst = new ArraySequence(first);
+				ArraySequence arraySecond = new ArraySequence(second);
+				for (int i = 0; i < 50; i++) {
+					int from = random.nextInt(length + 1);
+					int to = from + random.nextInt(length - from + 1);
+					equal(arrayFirst.countDifferences(arraySecond, from, to),
+							packedFirst.countDifferences(packedSecond, from, to),
+							"differences in [" + from + ", " + to + ") of length " + length);
+				}
+			}
+		});
+
+		test("differencePositions lists the positions that differ", () -> {
+			char[] first = randomNucleotides(random, 300);
+			char[] second = mutate(random, first, 0.05);
+			for (int to : new int[] { 0, 1, 32, 33, 299, 300 }) {
+				int count = 0;
+				int[] expected = new int[to];
+				for (int i = 0; i < to; i++) {
+					if (first[i] != second[i]) {
+						expected[count++] = i;
+					}
+				}
+				isTrue(Arrays.equals(Arrays.copyOf(expected, count),
+						new PackedSequence(first).differencePositions(new PackedSequence(second), to)),
+						"positions up to " + to);
+			}
+			raises(ArrayIndexOutOfBoundsException.class,
+					() -> new PackedSequence(first).differencePositions(new PackedSequence("ACGT"), 5));
+		});
+
+		test("PackedSequence survives writeTo and readFrom", () -> {
+			char[] nucleotides = randomNucleotides(random, 777);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			new PackedSequence(nucleotides).writeTo(new DataOutputStream(bytes));
+			PackedSequence read = PackedSequence.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+			isTrue(Arrays.equals(nucleotides, read.toCharArray()), "sequence read back");
+		});
+	}
+
+	static char[] randomNucleotides(Random random, int length) {
+		char[] nucleotides = new char[length];
+		for (int i = 0; i < length; i++) {
+			nucleotides[i] = SYMBOLS[random.nextInt(SYMBOLS.length)];
+		}
+		return nucleotides;
+	}
+
+	static char[] mutate(Random random, char[] nucleotides, double rate) {
+		char[] mutated = nucleotides.clone();
+		for (int i = 0; i < mutated.length; i++) {
+			if (random.nextDouble() < rate) {
+				mutated[i] = SYMBOLS[random.nextInt(SYMBOLS.length)];
+			}
+		}
+		return mutated;
+	}
+}
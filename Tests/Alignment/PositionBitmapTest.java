@@ -0,0 +1,53 @@
+package alignment;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+import static testing.Check.test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Checks PositionBitmap against a sorted set of positions, on both sides of the
+ * limit at which a chunk switches from a sorted array to a bitmap.
+ */
+public class PositionBitmapTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(7);
+
+		for (int perChunk : new int[] { 0, 1, PositionBitmap.ARRAY_LIMIT - 1, PositionBitmap.ARRAY_LIMIT,
+				PositionBitmap.ARRAY_LIMIT + 1, 20000 }) {
+			test("PositionBitmap with " + perChunk + " positions per chunk", () -> {
+				TreeSet<Integer> expected = new TreeSet<>();
+				for (int chunk : new int[] { 0, 1, 5 }) {
+					while (expected.subSet(chunk << 16, (chunk + 1) << 16).size() < perChunk) {
+						expected.add((chunk << 16) + random.nextInt(1 << 16));
+					}
+				}
+				int[] positions = new int[expected.size() + 10];
+				int count = 0;
+				for (int position : expected) {
+					positions[count++] = position;
+				}
+				PositionBitmap bitmap = PositionBitmap.of(positions, count);
+
+				equal(expected.size(), bitmap.cardinality(), "cardinality");
+				isTrue(Arrays.equals(Arrays.copyOf(positions, count), bitmap.toArray()), "toArray");
+				for (int i = 0; i < 2000; i++) {
+					int position = random.nextInt(6 << 16);
+					boolean present = expected.contains(position);
+					equal(present, bitmap.contains(position), "contains " + position);
+					equal(present ? expected.headSet(position).size() : -1, bitmap.rank(position),
+							"rank " + position);
+				}
+				for (int position : expected) {
+					if (random.nextInt(50) == 0) {
+						equal(expected.headSet(position).size(), bitmap.rank(position), "rank " + position);
+					}
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package alignment;
+
+import static testing.Check.equal;
+import static testing.Check.test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the SNP view, the difference scores and the per-column queries of a
+ * SNPIndex against comparing every nucleotide with the reference.
+ */
+public class SNPIndexTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(12);
+
+		test("SNPIndex agrees with comparing every nucleotide", () -> {
+			StandardAlignment alignment = new StandardAlignment();
+			char[] reference = PackedSequenceTest.randomNucleotides(random, 500);
+			for (int g = 0; g < 40; g++) {
+				Genome genome = new Genome(">snp-" + g);
+				genome.setNucleotides(new PackedSequence(PackedSequenceTest.mutate(random, reference, 0.02)));
+				alignment.addGenome(genome);
+			}
+			Genome top = alignment.getTopGenome();
+
+			StringWriter writer = new StringWriter();
+			SNPIndex index = new SNPAdapter().writeIndex(alignment, writer);
+			StringWriter expected = new StringWriter();
+			top.writeTo(expected);
+			for (Genome genome : alignment) {
+				if (genome != top) {
+					SNPIndex.writeGenome(genome, top, expected);
+				}
+			}
+			equal(Arrays.asList(expected.toString()), Arrays.asList(writer.toString()), "SNP view");
+
+			equal(alignment.calculateScore(), index.getScore(), "score");
+			equal(0, index.getGenomeScore(top.getId()), "score of the reference");
+			equal(0, index.getGenomeScore(">unknown"), "score of an unknown genome");
+			for (Genome genome : alignment) {
+				if (genome != top) {
+					equal(alignment.getGenomeScore(genome.getId()), index.getGenomeScore(genome.getId()),
+							"score of " + genome.getId());
+					equal(SNPIndex.differencePositions(genome, top), index.getDifferences(genome.getId()).toArray(),
+							"differences of " + genome.getId());
+				}
+			}
+
+			for (int column = 0; column < reference.length; column++) {
+				ArrayList<String> differing = new ArrayList<>();
+				for (Genome genome : alignment) {
+					if (genome.getNucleotide(column) != top.getNucleotide(column)) {
+						differing.add(genome.getId());
+					}
+				}
+				ArrayList<String> ids = new ArrayList<>();
+				for (int key : index.getGenomesDifferingAt(column)) {
+					ids.add(index.getDictionary().getId(key));
+				}
+				equal(differing, ids, "genomes differing at " + column);
+			}
+		});
+	}
+}
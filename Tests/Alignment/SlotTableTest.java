@@ -0,0 +1,92 @@
+package alignment;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+import static testing.Check.test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks SlotTable against a HashMap, that looking genomes up by an identifier
+ * that no genome has does not add it to the GenomeDictionary, and that every
+ * alignment has a dictionary of its own.
+ */
+public class SlotTableTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(19);
+
+		test("SlotTable agrees with a HashMap", () -> {
+			SlotTable table = new SlotTable();
+			HashMap<Integer, Integer> expected = new HashMap<>();
+			for (int i = 0; i < 100000; i++) {
+				int key = random.nextInt(i < 50000 ? 3000 : 300);
+				switch (random.nextInt(3)) {
+				case 0:
+					table.put(key, i);
+					expected.put(key, i);
+					break;
+				case 1:
+					table.remove(key);
+					expected.remove(key);
+					break;
+				default:
+					equal(expected.getOrDefault(key, -1), table.get(key), "slot of " + key);
+				}
+			}
+			SlotTable copy = new SlotTable(table);
+			table.put(-1, 5);
+			equal(-1, table.get(-1), "negative key");
+			for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+				equal(entry.getValue(), copy.get(entry.getKey()), "slot in the copy");
+				table.remove(entry.getKey());
+			}
+			isTrue(table.get(expected.keySet().iterator().next()) < 0, "removed");
+		});
+
+		test("unknown identifiers are not added to the GenomeDictionary", () -> {
+			StandardAlignment alignment = new StandardAlignment();
+			Genome genome = new Genome(">known");
+			genome.setNucleotides("ACGTACGT".toCharArray());
+			alignment.addGenome(genome);
+
+			GenomeDictionary dictionary = alignment.getDictionary();
+			int size = dictionary.size();
+			alignment.replaceSequencesById("ACG", "TTT", "no-such-genome");
+			isTrue(alignment.getGenome(">no-such-genome") == null, "no genome");
+			equal(0, new SearchResult(Arrays.asList("ACG"), dictionary).getPositions(0, ">unknown").size(),
+					"positions");
+			equal(size, dictionary.size(), "dictionary size");
+			equal("ACGTACGT", new String(genome.getNucleotides()), "genome unchanged");
+
+			alignment.replaceSequencesById("ACG", "TTT", "known");
+			equal("TTTTTTTT", new String(genome.getNucleotides()), "genome edited");
+		});
+
+		test("every alignment has a dictionary of its own", () -> {
+			StandardAlignment alignment = new StandardAlignment();
+			for (int i = 0; i < 3; i++) {
+				Genome genome = new Genome(">own-" + i);
+				genome.setNucleotides("ACGT".toCharArray());
+				alignment.addGenome(genome);
+			}
+			Alignment copy = alignment.clone();
+			Genome added = new Genome(">own-copy");
+			added.setNucleotides("ACGT".toCharArray());
+			copy.addGenome(added);
+
+			equal(3, alignment.getDictionary().size(), "dictionary size");
+			equal(4, copy.getDictionary().size(), "dictionary size of the copy");
+			for (int i = 0; i < 3; i++) {
+				equal(alignment.getDictionary().lookup(">own-" + i), copy.getDictionary().lookup(">own-" + i),
+						"key in the copy");
+			}
+			equal(0, new StandardAlignment().getDictionary().size(), "dictionary size of a new alignment");
+			equal(Arrays.asList(">own-copy"), copy.searchSequence("ACGT").getGenomeIds(0).subList(3, 4),
+					"search in the copy");
+		});
+	}
+}
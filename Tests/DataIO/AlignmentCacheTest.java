@@ -0,0 +1,91 @@
+package dataio;
+
+import static testing.Check.equal;
+import static testing.Check.test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import alignment.Alignment;
+import alignment.Genome;
+
+/**
+ * Checks that the alignments and checksums cached by the DataReader are not
+ * used for a file that was replaced by another means than the DataWriter.
+ */
+public class AlignmentCacheTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(19);
+
+		test("a file replaced with the same size and time is read again", () -> {
+			DataReader reader = DataReader.getInstance();
+			long capacity = AlignmentCache.getInstance().getCapacity();
+			File directory = AlignmentFiles.temporaryDirectory();
+			try {
+				String filename = new File(directory, "alignment.txt").getPath();
+				String otherFilename = new File(directory, "other.txt").getPath();
+				Alignment alignment = AlignmentFiles.randomAlignment(random, 6, 300);
+				DataWriter.getInstance().write(filename, alignment::writeTo);
+				File file = new File(filename);
+				if (Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey() == null) {
+					// The stamp cannot tell the files apart without a file key.
+					return;
+				}
+
+				AlignmentCache.getInstance().setCapacity(1 << 20);
+				reader.readAlignment(filename);
+
+				// Rename a file of the same size and time over the file, without
+				// the DataWriter, which would drop the cached alignment.
+				Genome genome = alignment.getTopGenome();
+				char[] nucleotides = genome.getNucleotides();
+				nucleotides[0] = nucleotides[0] == 'A' ? 'C' : 'A';
+				genome.setNucleotides(nucleotides);
+				Files.write(new File(otherFilename).toPath(), alignment.toString().getBytes());
+				File other = new File(otherFilename);
+				equal(file.length(), other.length(), "length");
+				Files.setLastModifiedTime(other.toPath(), Files.getLastModifiedTime(file.toPath()));
+				Files.move(other.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+				Alignment read = reader.readAlignment(filename);
+				equal(Arrays.asList(alignment.toString()), Arrays.asList(read.toString()), "alignment");
+			} finally {
+				AlignmentCache.getInstance().setCapacity(capacity);
+				AlignmentFiles.delete(directory);
+			}
+		});
+
+		test("the checksum of a written file is kept until the file is replaced", () -> {
+			File directory = AlignmentFiles.temporaryDirectory();
+			try {
+				String filename = new File(directory, "alignment.txt").getPath();
+				String linkFilename = new File(directory, "link.txt").getPath();
+				Alignment alignment = AlignmentFiles.randomAlignment(random, 6, 300);
+				DataWriter.getInstance().write(filename, alignment::writeTo);
+				DataWriter.getInstance().linkFile(filename, linkFilename);
+				DataReader reader = DataReader.getInstance();
+				equal(checksum(filename), reader.getFileChecksum(filename), "checksum");
+				equal(checksum(filename), reader.getFileChecksum(linkFilename), "checksum of the link");
+
+				File other = new File(directory, "other.txt");
+				Files.write(other.toPath(), "changed".getBytes());
+				Files.move(other.toPath(), new File(filename).toPath(), StandardCopyOption.ATOMIC_MOVE);
+				equal(checksum(filename), reader.getFileChecksum(filename), "checksum of the new file");
+			} finally {
+				AlignmentFiles.delete(directory);
+			}
+		});
+	}
+
+	private static long checksum(String filename) throws Exception {
+		CRC32 checksum = new CRC32();
+		checksum.update(Files.readAllBytes(new File(filename).toPath()));
+		return checksum.getValue();
+	}
+}
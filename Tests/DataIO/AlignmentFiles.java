@@ -0,0 +1,82 @@
+package dataio;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import alignment.Alignment;
+import alignment.Genome;
+import alignment.StandardAlignment;
+
+/**
+ * Builds the alignments and temporary directories used by the tests of the
+ * file formats.
+ */
+final class AlignmentFiles {
+	private static final char[] SYMBOLS = { 'A', 'C', 'G', 'T', 'A', 'C', 'G', 'T', '-', 'N' };
+
+	private AlignmentFiles() {
+	}
+
+	static Alignment randomAlignment(Random random, int genomes, int length) {
+		StandardAlignment alignment = new StandardAlignment();
+		char[] reference = new char[length];
+		for (int i = 0; i < length; i++) {
+			reference[i] = SYMBOLS[random.nextInt(SYMBOLS.length)];
+		}
+		for (int g = 0; g < genomes; g++) {
+			char[] nucleotides = reference.clone();
+			for (int i = 0; i < length; i++) {
+				if (random.nextInt(20) == 0) {
+					nucleotides[i] = SYMBOLS[random.nextInt(SYMBOLS.length)];
+				}
+			}
+			Genome genome = new Genome(">test-genome-" + g);
+			genome.setNucleotides(nucleotides);
+			alignment.addGenome(genome);
+		}
+		return alignment;
+	}
+
+	static void assertSame(Alignment expected, Alignment actual) {
+		equal(expected.size(), actual.size(), "number of genomes");
+		Genome[] expectedGenomes = toArray(expected);
+		Genome[] actualGenomes = toArray(actual);
+		for (int g = 0; g < expectedGenomes.length; g++) {
+			equal(expectedGenomes[g].getId(), actualGenomes[g].getId(), "identifier " + g);
+			isTrue(Arrays.equals(expectedGenomes[g].getNucleotides(), actualGenomes[g].getNucleotides()),
+					"nucleotides of " + expectedGenomes[g].getId());
+		}
+	}
+
+	static File temporaryDirectory() throws IOException {
+		File directory = Files.createTempDirectory("msa-test").toFile();
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	static void delete(File directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory.toPath())) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	private static Genome[] toArray(Alignment alignment) {
+		Genome[] genomes = new Genome[alignment.size()];
+		int g = 0;
+		for (Genome genome : alignment) {
+			genomes[g++] = genome;
+		}
+		return genomes;
+	}
+}
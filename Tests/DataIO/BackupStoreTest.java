@@ -0,0 +1,133 @@
+package dataio;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+import static testing.Check.raises;
+import static testing.Check.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Checks that a BackupStore restores the files of a snapshot as they were, and
+ * that it stores the chunks shared by snapshots only once.
+ */
+public class BackupStoreTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(13);
+
+		test("BackupStore backup and restore", () -> {
+			File directory = AlignmentFiles.temporaryDirectory();
+			try {
+				BackupStore store = new BackupStore(new File(directory, "backups").getPath());
+				File large = new File(directory, "large.fasta");
+				File small = new File(directory, "small.fasta");
+				File empty = new File(directory, "empty.fasta");
+				byte[] largeBytes = randomBytes(random, 300 << 10);
+				byte[] smallBytes = randomBytes(random, 100);
+				Files.write(large.toPath(), largeBytes);
+				Files.write(small.toPath(), smallBytes);
+				Files.write(empty.toPath(), new byte[0]);
+				List<String> filenames = Arrays.asList(large.getPath(), small.getPath(), empty.getPath(),
+						new File(directory, "missing.fasta").getPath());
+
+				String first = store.backup(filenames);
+				int firstChunks = countChunks(directory);
+				equal(first, store.getLatestSnapshot(), "latest snapshot");
+
+				// An edit in the middle only adds the chunks around it.
+				byte[] edited = largeBytes.clone();
+				edited[edited.length / 2] ^= 1;
+				Files.write(large.toPath(), edited);
+				Files.write(small.toPath(), randomBytes(random, 50));
+				String second = store.backup(filenames);
+				isTrue(!second.equals(first), "new snapshot");
+				equal(Arrays.asList(first, second), store.listSnapshots(), "snapshots");
+				isTrue(countChunks(directory) - firstChunks <= 4,
+						"chunks added by a small edit: " + (countChunks(directory) - firstChunks));
+
+				Files.write(empty.toPath(), smallBytes);
+				List<String> restored = store.restore(first, 2);
+				equal(3, restored.size(), "restored files");
+				isTrue(Arrays.equals(largeBytes, Files.readAllBytes(large.toPath())), "large file");
+				isTrue(Arrays.equals(smallBytes, Files.readAllBytes(small.toPath())), "small file");
+				equal(0L, empty.length(), "empty file");
+
+				store.restore(second, 1);
+				isTrue(Arrays.equals(edited, Files.readAllBytes(large.toPath())), "large file of the second snapshot");
+			} finally {
+				AlignmentFiles.delete(directory);
+			}
+		});
+
+		test("BackupStore rejects damaged chunks and unknown snapshots", () -> {
+			File directory = AlignmentFiles.temporaryDirectory();
+			try {
+				BackupStore store = new BackupStore(new File(directory, "backups").getPath());
+				File file = new File(directory, "file.fasta");
+				Files.write(file.toPath(), randomBytes(random, 10000));
+				String snapshot = store.backup(Arrays.asList(file.getPath()));
+
+				raises(IOException.class, () -> store.restore("no-such-snapshot", 1));
+				byte[] current = randomBytes(random, 500);
+				Files.write(file.toPath(), current);
+				for (Path chunk : chunks(directory)) {
+					Files.write(chunk, new byte[] { 1, 2, 3 });
+				}
+				raises(IOException.class, () -> store.restore(snapshot, 1));
+				isTrue(Arrays.equals(current, Files.readAllBytes(file.toPath())), "file left unchanged");
+			} finally {
+				AlignmentFiles.delete(directory);
+			}
+		});
+
+		test("BackupStore restores a file without changing its hard links", () -> restoreLinked(random));
+	}
+
+	private static void restoreLinked(Random random) throws IOException {
+		File directory = AlignmentFiles.temporaryDirectory();
+		try {
+			BackupStore store = new BackupStore(new File(directory, "backups").getPath());
+			File file = new File(directory, "user.fasta");
+			File link = new File(directory, "other-user.fasta");
+			byte[] backedUp = randomBytes(random, 20000);
+			Files.write(file.toPath(), backedUp);
+			String snapshot = store.backup(Arrays.asList(file.getPath()));
+
+			byte[] shared = randomBytes(random, 3000);
+			Files.write(file.toPath(), shared);
+			DataWriter.getInstance().linkFile(file.getPath(), link.getPath());
+			store.restore(snapshot, 1);
+			isTrue(Arrays.equals(backedUp, Files.readAllBytes(file.toPath())), "restored file");
+			isTrue(Arrays.equals(shared, Files.readAllBytes(link.toPath())), "linked file left unchanged");
+		} finally {
+			AlignmentFiles.delete(directory);
+		}
+	}
+
+	private static byte[] randomBytes(Random random, int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	private static int countChunks(File directory) throws IOException {
+		return chunks(directory).size();
+	}
+
+	private static List<Path> chunks(File directory) throws IOException {
+		ArrayList<Path> chunks = new ArrayList<>();
+		try (Stream<Path> paths = Files.walk(new File(directory, "backups/chunks").toPath())) {
+			paths.filter(Files::isRegularFile).forEach(chunks::add);
+		}
+		return chunks;
+	}
+}
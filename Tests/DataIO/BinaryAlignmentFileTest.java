@@ -0,0 +1,66 @@
+package dataio;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+import static testing.Check.raises;
+import static testing.Check.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import alignment.Alignment;
+import alignment.PackedSequence;
+import alignment.StandardAlignment;
+
+/**
+ * Checks that alignments survive the binary format, and that damaged files are
+ * rejected by their checksum.
+ */
+public class BinaryAlignmentFileTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(3);
+
+		test("BinaryAlignmentFile round-trip", () -> {
+			Alignment alignment = AlignmentFiles.randomAlignment(random, 20, 333);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			BinaryAlignmentFile.write(bytes, alignment);
+
+			Alignment packed = BinaryAlignmentFile.read(new ByteArrayInputStream(bytes.toByteArray()), true);
+			AlignmentFiles.assertSame(alignment, packed);
+			isTrue(packed.getTopGenome().getSequence() instanceof PackedSequence, "packed sequences");
+			AlignmentFiles.assertSame(alignment,
+					BinaryAlignmentFile.read(new ByteArrayInputStream(bytes.toByteArray()), false));
+		});
+
+		test("BinaryAlignmentFile round-trip of an empty alignment", () -> {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			BinaryAlignmentFile.write(bytes, new StandardAlignment());
+			equal(0, BinaryAlignmentFile.read(new ByteArrayInputStream(bytes.toByteArray()), true).size(), "size");
+		});
+
+		test("BinaryAlignmentFile rejects a checksum mismatch", () -> {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			BinaryAlignmentFile.write(bytes, AlignmentFiles.randomAlignment(random, 5, 100));
+			byte[] damaged = bytes.toByteArray();
+			damaged[damaged.length / 2] ^= 0x10;
+			raises(IOException.class, () -> BinaryAlignmentFile.read(new ByteArrayInputStream(damaged), true));
+		});
+
+		test("DataWriter.writeBinaryAlignment is recognized by DataReader", () -> {
+			File directory = AlignmentFiles.temporaryDirectory();
+			try {
+				String filename = new File(directory, "alignment.fasta").getPath();
+				Alignment alignment = AlignmentFiles.randomAlignment(random, 8, 200);
+				DataWriter.getInstance().writeBinaryAlignment(filename, alignment);
+				isTrue(BinaryAlignmentFile.isBinary(filename), "isBinary");
+				AlignmentFiles.assertSame(alignment, DataReader.getInstance().readAlignment(filename));
+			} finally {
+				AlignmentFiles.delete(directory);
+			}
+		});
+	}
+}
@@ -0,0 +1,98 @@
+package dataio;
+
+import static testing.Check.isTrue;
+import static testing.Check.raises;
+import static testing.Check.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import alignment.Alignment;
+import alignment.AlignmentDelta;
+import alignment.Genome;
+
+/**
+ * Checks that an alignment survives being stored as a delta against a base,
+ * and that a delta is rejected once its base file has changed, unless the
+ * version of the base it was written against was retained.
+ */
+public class DeltaAlignmentFileTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(5);
+
+		test("DeltaAlignmentFile round-trip", () -> {
+			Alignment base = AlignmentFiles.randomAlignment(random, 10, 250);
+			Alignment target = edit(random, base);
+
+			StringWriter writer = new StringWriter();
+			DeltaAlignmentFile.write(writer, AlignmentDelta.compute(base, target), 0x1234ABCDL, "base.fasta");
+			BufferedReader reader = new BufferedReader(new StringReader(writer.toString()));
+			DeltaAlignmentFile.Header header = DeltaAlignmentFile.readHeader(reader);
+			isTrue(header.baseChecksum == 0x1234ABCDL, "base checksum");
+			isTrue(header.baseFilename.equals("base.fasta"), "base filename");
+			for (boolean packed : new boolean[] { true, false }) {
+				reader = new BufferedReader(new StringReader(writer.toString()));
+				DeltaAlignmentFile.readHeader(reader);
+				AlignmentFiles.assertSame(target, DeltaAlignmentFile.read(reader, packed).apply(base));
+			}
+		});
+
+		test("DeltaAlignmentFile rejects a delta against a changed base", () -> {
+			File directory = AlignmentFiles.temporaryDirectory();
+			try {
+				DataReader reader = DataReader.getInstance();
+				DataWriter writer = DataWriter.getInstance();
+				String baseFilename = new File(directory, "optimal.fasta").getPath();
+				String deltaFilename = new File(directory, "user.fasta").getPath();
+
+				Alignment base = AlignmentFiles.randomAlignment(random, 6, 120);
+				Alignment target = edit(random, base);
+				writer.write(baseFilename, base::writeTo);
+				writer.writeDelta(deltaFilename, AlignmentDelta.compute(base, target),
+						reader.getFileChecksum(baseFilename), baseFilename);
+				isTrue(DeltaAlignmentFile.isDelta(deltaFilename), "isDelta");
+				AlignmentFiles.assertSame(target, reader.readDelta(deltaFilename, null, 0));
+				AlignmentFiles.assertSame(target, reader.readAlignment(deltaFilename));
+
+				Alignment changed = base.clone();
+				Genome top = changed.getTopGenome();
+				top.setNucleotide(0, top.getNucleotide(0) == 'A' ? 'C' : 'A');
+				long checksum = reader.getFileChecksum(baseFilename);
+				writer.write(baseFilename, changed::writeTo);
+				raises(IOException.class, () -> reader.readDelta(deltaFilename, null, 0));
+				raises(IOException.class, () -> reader.readDelta(deltaFilename, changed, 0));
+
+				// A delta that was not rebased is read against the retained base.
+				writer.write(reader.getRetainedFilename(baseFilename, checksum), base::writeTo);
+				AlignmentFiles.assertSame(target, reader.readDelta(deltaFilename, null, 0));
+				AlignmentFiles.assertSame(target,
+						reader.readDelta(deltaFilename, changed, reader.getFileChecksum(baseFilename)));
+			} finally {
+				AlignmentFiles.delete(directory);
+			}
+		});
+	}
+
+	// Returns a copy of an alignment with edits, a removed and an added genome.
+	private static Alignment edit(Random random, Alignment base) {
+		Alignment target = base.clone();
+		for (Genome genome : target) {
+			for (int i = 0; i < 5; i++) {
+				genome.setNucleotide(random.nextInt(genome.size()), "ACGT-".charAt(random.nextInt(5)));
+			}
+		}
+		target.removeGenome(target.getTopGenome().getId());
+		Genome added = new Genome(">test-added");
+		char[] nucleotides = new char[base.getTopGenome().size()];
+		Arrays.fill(nucleotides, 'G');
+		added.setNucleotides(nucleotides);
+		target.addGenome(added);
+		return target;
+	}
+}
@@ -0,0 +1,83 @@
+package dataio;
+
+import static testing.Check.isTrue;
+import static testing.Check.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks that the FileLockManager lets readers share a file, keeps writers to
+ * themselves, and takes locks in an order that cannot deadlock.
+ */
+public class FileLockManagerTest {
+
+	public static void main(String[] args) {
+		FileLockManager manager = FileLockManager.getInstance();
+
+		test("FileLockManager lets readers share a file", () -> {
+			List<String> file = Arrays.asList("test-shared.fasta");
+			FileLockManager.Locks first = manager.lock(file, Collections.emptyList());
+			try (first) {
+				isTrue(inOtherThread(() -> manager.lock(file, Collections.emptyList()).close()), "second reader");
+			}
+		});
+
+		test("FileLockManager keeps a writer to itself", () -> {
+			List<String> file = Arrays.asList("test-written.fasta");
+			// A file that is both read and written is locked for writing.
+			FileLockManager.Locks writer = manager.lock(file, file);
+			CountDownLatch locked = new CountDownLatch(1);
+			Thread reader = new Thread(() -> {
+				manager.lock(file, Collections.emptyList()).close();
+				locked.countDown();
+			});
+			reader.start();
+			isTrue(!locked.await(200, TimeUnit.MILLISECONDS), "reader waits for the writer");
+			writer.close();
+			isTrue(locked.await(10, TimeUnit.SECONDS), "reader continues after the writer");
+		});
+
+		test("FileLockManager orders locks so actions do not deadlock", () -> {
+			List<String> forward = Arrays.asList("test-a.fasta", "test-b.fasta", "test-c.fasta");
+			List<String> backward = Arrays.asList("test-c.fasta", "test-b.fasta", "test-a.fasta");
+			AtomicBoolean overlap = new AtomicBoolean();
+			AtomicBoolean inside = new AtomicBoolean();
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				List<String> order = t % 2 == 0 ? forward : backward;
+				threads[t] = new Thread(() -> {
+					for (int i = 0; i < 2000; i++) {
+						FileLockManager.Locks locks = manager.lock(Collections.emptyList(), order);
+						try (locks) {
+							if (!inside.compareAndSet(false, true)) {
+								overlap.set(true);
+							}
+							inside.set(false);
+						}
+					}
+				});
+				threads[t].setDaemon(true);
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join(30000);
+				isTrue(!thread.isAlive(), "threads finish");
+			}
+			isTrue(!overlap.get(), "writers never overlap");
+		});
+	}
+
+	// Runs an action in another thread and returns whether it finished in time.
+	private static boolean inOtherThread(Runnable action) throws InterruptedException {
+		Thread thread = new Thread(action);
+		thread.setDaemon(true);
+		thread.start();
+		thread.join(10000);
+		return !thread.isAlive();
+	}
+}
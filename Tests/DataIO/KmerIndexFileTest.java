@@ -0,0 +1,71 @@
+package dataio;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+import static testing.Check.test;
+
+import java.io.File;
+import java.util.Random;
+
+import alignment.Alignment;
+import alignment.Genome;
+
+/**
+ * Checks that a k-mer index file is only used for the version of the alignment
+ * file it was written for.
+ */
+public class KmerIndexFileTest {
+
+	public static void main(String[] args) {
+		Random random = new Random(6);
+
+		test("DataReader.readIndex reads the index of an unchanged file", () -> {
+			File directory = AlignmentFiles.temporaryDirectory();
+			try {
+				String filename = new File(directory, "alignment.txt").getPath();
+				Alignment alignment = AlignmentFiles.randomAlignment(random, 6, 300);
+				writeWithIndex(filename, alignment);
+
+				Alignment read = DataReader.getInstance().readAlignment(filename);
+				isTrue(DataReader.getInstance().readIndex(filename, read) != null, "index read");
+				equal(4, read.getIndex().getK(), "k");
+			} finally {
+				AlignmentFiles.delete(directory);
+			}
+		});
+
+		test("DataReader.readIndex rejects the index of a file of the same size and time", () -> {
+			File directory = AlignmentFiles.temporaryDirectory();
+			try {
+				String filename = new File(directory, "alignment.txt").getPath();
+				Alignment alignment = AlignmentFiles.randomAlignment(random, 6, 300);
+				writeWithIndex(filename, alignment);
+				File file = new File(filename);
+				long length = file.length();
+				long modified = file.lastModified();
+
+				// Replace one nucleotide, which keeps the size of the file.
+				Genome genome = alignment.getTopGenome();
+				char[] nucleotides = genome.getNucleotides();
+				nucleotides[0] = nucleotides[0] == 'A' ? 'C' : 'A';
+				genome.setNucleotides(nucleotides);
+				DataWriter.getInstance().write(filename, alignment::writeTo);
+				isTrue(file.setLastModified(modified), "setLastModified");
+				equal(length, file.length(), "length");
+
+				Alignment read = DataReader.getInstance().readAlignment(filename);
+				equal(null, DataReader.getInstance().readIndex(filename, read), "stale index");
+			} finally {
+				AlignmentFiles.delete(directory);
+			}
+		});
+	}
+
+	private static void writeWithIndex(String filename, Alignment alignment) throws Exception {
+		DataWriter writer = DataWriter.getInstance();
+		writer.write(filename, alignment::writeTo);
+		alignment.buildIndex(4);
+		writer.writeIndex(DataReader.getInstance().getIndexFilename(filename), alignment,
+				DataReader.getInstance().getFileChecksum(filename));
+	}
+}
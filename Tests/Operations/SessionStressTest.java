@@ -0,0 +1,148 @@
+package operations;
+
+import static testing.Check.equal;
+import static testing.Check.isTrue;
+import static testing.Check.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import dataio.DataReader;
+import dataio.DataWriter;
+import testing.Check;
+import users.Role;
+import users.User;
+
+/**
+ * Runs the repository-wide actions (promote, backup, clear and restore) over
+ * and over while the bioinformaticians write their own alignments in sessions
+ * of their own, and checks that every file of the repository can be read
+ * afterwards. The actions work in the current directory, so the test runs
+ * itself in a new process in a temporary copy of the repository.
+ */
+public class SessionStressTest {
+	private static final String[] FILES = { "config.properties", "team.txt", "hiv.fasta" };
+	private static final int ROUNDS = 6;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("run")) {
+			run();
+			System.exit(Check.getFailed() > 0 ? 1 : 0);
+		}
+
+		for (String settings : new String[] { "userstorage=delta", "userstorage=full\nbackupstore=backups" }) {
+			test("sessions against repository-wide actions with " + settings.replace('\n', ' '),
+					() -> inRepository(settings));
+		}
+	}
+
+	// Runs the test in a new process, in a temporary copy of the repository.
+	private static void inRepository(String settings) throws IOException, InterruptedException {
+		File directory = Files.createTempDirectory("msa-stress").toFile();
+		try {
+			for (String file : FILES) {
+				Files.copy(new File(file).toPath(), new File(directory, file).toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			Files.write(new File(directory, "config.properties").toPath(),
+					("\n" + settings + "\niothreads=2\nmetricsfile=\n").getBytes(StandardCharsets.ISO_8859_1),
+					StandardOpenOption.APPEND);
+
+			File output = new File(directory, "output.txt");
+			Process process = new ProcessBuilder(
+					new File(System.getProperty("java.home"), "bin/java").getPath(), "-cp",
+					new File(System.getProperty("java.class.path")).getAbsolutePath(),
+					SessionStressTest.class.getName(), "run")
+					.directory(directory).redirectErrorStream(true).redirectOutput(output).start();
+			int status = process.waitFor();
+			if (status != 0) {
+				for (String line : Files.readAllLines(output.toPath())) {
+					if (line.startsWith("FAIL") || line.contains("Exception") || line.startsWith("\tat ")) {
+						System.out.println("  " + line);
+					}
+				}
+			}
+			equal(0, status, "exit status");
+		} finally {
+			try (Stream<Path> paths = Files.walk(directory.toPath())) {
+				paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	// The body of the test, in the temporary copy of the repository.
+	private static void run() throws Exception {
+		DataReader reader = DataReader.getInstance();
+		DataWriter writer = DataWriter.getInstance();
+		ArrayList<User> users = reader.readUsers();
+		ArrayList<String> bioinformaticians = new ArrayList<>();
+		for (User user : users) {
+			if (user.getRole() == Role.BIOINFORMATICIAN) {
+				bioinformaticians.add(user.getFullname());
+			}
+		}
+
+		TeamLeaderActions leader = new TeamLeaderActions(reader, writer, users);
+		leader.setCurrentUser("Jozef Groenewegen");
+		leader.overwriteUserAlignments(bioinformaticians.toArray(new String[0]));
+
+		test("sessions finish without errors", () -> {
+			try (SessionExecutor sessions = new SessionExecutor()) {
+				for (String fullname : bioinformaticians) {
+					sessions.submit(() -> {
+						InformaticianActions actions = new InformaticianActions(reader, writer, users);
+						actions.setCurrentUser(fullname);
+						for (int round = 0; round < 3 * ROUNDS; round++) {
+							actions.retrieveAlignment();
+							if (actions.getCurrentAlignment() != null) {
+								actions.replaceSubsequenceInAlignment();
+								actions.writeDataToFile();
+								actions.writeReportToFile();
+							}
+						}
+					});
+				}
+				sessions.submit(() -> {
+					TeamLeaderActions leaderActions = new TeamLeaderActions(reader, writer, users);
+					leaderActions.setCurrentUser("Jozef Groenewegen");
+					SupportActions support = new SupportActions(reader, writer, users);
+					support.setCurrentUser("Jeff Stevenson");
+					for (int round = 0; round < ROUNDS; round++) {
+						leaderActions.promoteUserAlignment(bioinformaticians.get(round % bioinformaticians.size()));
+						support.backupRepository();
+						support.clearRepository();
+						support.restoreRepository();
+						leaderActions.writeDataToFile();
+					}
+				});
+				sessions.awaitAll();
+			}
+		});
+
+		test("every file of the repository can be read", () -> {
+			List<String> paths = new ArrayList<>();
+			paths.add(reader.getOptimalFilename());
+			paths.add("snip.alignment.txt");
+			for (User user : users) {
+				paths.add(user.getFirstname() + user.getLastname() + ".alignment.txt");
+			}
+			for (String path : paths) {
+				if (reader.fileExists(path)) {
+					isTrue(reader.readAlignment(path).size() > 0, path + " holds genomes");
+				}
+			}
+			isTrue(reader.fileExists(reader.getOptimalFilename()), "the optimal alignment exists");
+			String[] leftovers = new File(".").list((directory, name) -> name.endsWith(".tmp") || name.endsWith(".base"));
+			equal(0, leftovers.length, "temporary and retained files left behind");
+		});
+	}
+}
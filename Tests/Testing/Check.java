@@ -0,0 +1,101 @@
+package testing;
+
+import java.util.Objects;
+
+/**
+ * The Check class is a minimal test harness for the test programs of this
+ * project: each test program runs its tests through test(name, body) from its
+ * main method, and the checks below throw an AssertionError when they fail.
+ * The number of passed and failed tests is kept for the TestRunner.
+ */
+public final class Check {
+	private static int passed = 0;
+	private static int failed = 0;
+
+	/**
+	 * The body of a test.
+	 */
+	public interface Test {
+		public void run() throws Exception;
+	}
+
+	private Check() {
+	}
+
+	/**
+	 * Runs a test and reports it when it fails.
+	 *
+	 * @param name - the name of the test.
+	 * @param body - the body of the test.
+	 */
+	public static synchronized void test(String name, Test body) {
+		try {
+			body.run();
+			passed++;
+		} catch (Throwable ex) {
+			failed++;
+			System.out.println("FAIL " + name + ": " + ex);
+		}
+	}
+
+	/**
+	 * Checks that a condition holds.
+	 *
+	 * @param condition - the condition.
+	 * @param message - describes the condition.
+	 */
+	public static void isTrue(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	/**
+	 * Checks that two values are equal.
+	 *
+	 * @param expected - the expected value.
+	 * @param actual - the actual value.
+	 * @param message - describes the value.
+	 */
+	public static void equal(Object expected, Object actual, String message) {
+		if (!Objects.deepEquals(expected, actual)) {
+			throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+		}
+	}
+
+	/**
+	 * Checks that a body throws an exception of the given type.
+	 *
+	 * @param type - the type of the exception.
+	 * @param body - the code that should throw it.
+	 */
+	public static void raises(Class<? extends Throwable> type, Test body) {
+		try {
+			body.run();
+		} catch (Throwable ex) {
+			if (type.isInstance(ex)) {
+				return;
+			}
+			throw new AssertionError("expected " + type.getSimpleName() + " but got " + ex);
+		}
+		throw new AssertionError("expected " + type.getSimpleName());
+	}
+
+	/**
+	 * Returns the number of tests that passed.
+	 *
+	 * @return the number of passed tests.
+	 */
+	public static synchronized int getPassed() {
+		return passed;
+	}
+
+	/**
+	 * Returns the number of tests that failed.
+	 *
+	 * @return the number of failed tests.
+	 */
+	public static synchronized int getFailed() {
+		return failed;
+	}
+}
@@ -0,0 +1,44 @@
+package testing;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Runs the test programs of this project and exits with status 1 when one of
+ * their tests fails.
+ *
+ * Usage: java testing.TestRunner [class...]
+ */
+public class TestRunner {
+	private static final String[] TESTS = {
+			"alignment.PackedSequenceTest",
+			"alignment.PositionBitmapTest",
+			"alignment.SNPIndexTest",
+			"alignment.MultiPatternMatcherTest",
+			"alignment.ApplyEditsTest",
+			"alignment.SlotTableTest",
+			"dataio.BinaryAlignmentFileTest",
+			"dataio.DeltaAlignmentFileTest",
+			"dataio.BackupStoreTest",
+			"dataio.FileLockManagerTest",
+			"dataio.KmerIndexFileTest",
+			"dataio.AlignmentCacheTest",
+			"operations.SessionStressTest" };
+
+	public static void main(String[] args) throws ReflectiveOperationException {
+		for (String name : args.length > 0 ? args : TESTS) {
+			int failed = Check.getFailed();
+			try {
+				Class.forName(name).getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+			} catch (InvocationTargetException ex) {
+				Check.test(name, () -> {
+					throw new Exception(String.valueOf(ex.getCause()), ex.getCause());
+				});
+			}
+			System.out.println((Check.getFailed() == failed ? "ok   " : "FAIL ") + name);
+		}
+		System.out.println(Check.getPassed() + " passed, " + Check.getFailed() + " failed");
+		if (Check.getFailed() > 0) {
+			System.exit(1);
+		}
+	}
+}